@@ -0,0 +1,112 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * Runs the benchmarks and compares their scores with a baseline, failing when one of them is slower
+ * by more than the given percentage. All the benchmarks measure a time, lower is better.
+ *
+ * A benchmark only regresses when the lower bound of its confidence interval is above the tolerated score,
+ * so the noise of a single run does not fail the gate. When the baseline file does not exist, the scores
+ * are recorded in it and the gate passes: delete the file to accept new scores.
+ *
+ * Usage: <code>BenchmarkGate &lt;baseline file&gt; [max regression in percent, 10] [benchmark regex, PipelineBenchmark|SolverExtractionBenchmark]</code>
+ */
+public class BenchmarkGate {
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        if (args.length < 1) {
+            System.err.println("Usage: " + BenchmarkGate.class.getName() + " <baseline file> [max regression in percent] [benchmark regex]");
+            System.exit(2);
+        }
+        File baselineFile = new File(args[0]);
+        double maxRegression = args.length > 1 ? Double.parseDouble(args[1]) / 100 : 0.1;
+        String include = args.length > 2 ? args[2] : "PipelineBenchmark|SolverExtractionBenchmark";
+
+        Collection<RunResult> results = new Runner(new OptionsBuilder().include(include).build()).run();
+
+        Properties scores = new Properties();
+        for (RunResult result : results) {
+            scores.setProperty(getKey(result.getParams()), String.valueOf(result.getPrimaryResult().getScore()));
+        }
+        if (!baselineFile.exists()) {
+            store(scores, baselineFile);
+            System.out.println("No baseline, scores recorded in " + baselineFile);
+            return;
+        }
+
+        Properties baseline = new Properties();
+        try (InputStream in = new FileInputStream(baselineFile)) {
+            baseline.load(in);
+        }
+        int nbRegressions = 0;
+        for (RunResult result : results) {
+            String key = getKey(result.getParams());
+            String baselineScore = baseline.getProperty(key);
+            if (baselineScore == null) {
+                System.out.println("NEW        " + key);
+                continue;
+            }
+            Result primaryResult = result.getPrimaryResult();
+            double error = Double.isNaN(primaryResult.getScoreError()) ? 0 : primaryResult.getScoreError();
+            double tolerated = Double.parseDouble(baselineScore) * (1 + maxRegression);
+            double change = (primaryResult.getScore() / Double.parseDouble(baselineScore) - 1) * 100;
+            boolean regressed = primaryResult.getScore() - error > tolerated;
+            if (regressed) {
+                nbRegressions++;
+            }
+            System.out.println(String.format("%-10s %s: %.3f -> %.3f +- %.3f %s (%+.1f%%)", regressed ? "REGRESSION" : "OK", key,
+                    Double.parseDouble(baselineScore), primaryResult.getScore(), error, primaryResult.getScoreUnit(), change));
+        }
+        if (nbRegressions > 0) {
+            System.out.println(nbRegressions + " benchmarks are more than " + Math.round(maxRegression * 100) + "% slower than " + baselineFile);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return the benchmark method followed by its parameters, e.g. <code>PipelineBenchmark.classpath(modules=10)</code>
+     */
+    static String getKey(BenchmarkParams params) {
+        String benchmark = params.getBenchmark();
+        StringBuilder sb = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1));
+        if (!params.getParamsKeys().isEmpty()) {
+            sb.append('(');
+            boolean first = true;
+            for (String paramKey : new TreeSet<>(params.getParamsKeys())) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                sb.append(paramKey).append('=').append(params.getParam(paramKey));
+            }
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+
+    private static void store(Properties scores, File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            scores.store(out, "nopol-maven benchmark baseline");
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The nopol goal on <code>projects/example1</code>, as a user runs it. The plugin must be installed
+ * in the local repository and its test reports produced once by <code>mvn test</code> in the project.
+ *
+ * The project directory defaults to the one of the plugin sources, <code>-Dnopol.example</code> overrides it.
+ * The result cache is disabled so that each run repairs the project.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    private File projectDirectory;
+    private File logFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        projectDirectory = new File(System.getProperty("nopol.example", "../src/test/resources/projects/example1")).getCanonicalFile();
+        if (!new File(projectDirectory, "target/surefire-reports").isDirectory()) {
+            throw new IllegalStateException("No test reports in " + projectDirectory + ", run mvn test in it first");
+        }
+        logFile = File.createTempFile("nopol-example1", ".log");
+    }
+
+    @Benchmark
+    public int repairExample1() throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("os.name").toLowerCase().contains("win") ? "mvn.cmd" : "mvn");
+        command.add("-o");
+        command.add("-B");
+        command.add("fr.inria.spirals:nopol-maven:1.0-SNAPSHOT:nopol");
+        command.add("-DuseCache=false");
+        Process process = new ProcessBuilder(command)
+                .directory(projectDirectory)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile)
+                .start();
+        int exitValue = process.waitFor();
+        if (exitValue != 0) {
+            throw new IllegalStateException("The nopol goal failed with code " + exitValue + ", see " + logFile);
+        }
+        return exitValue;
+    }
+}
@@ -0,0 +1,121 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import fr.inria.lille.repair.common.config.NopolContext;
+import fr.inria.lille.repair.common.synth.StatementType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work the plugin does before the engine starts, on reactors of 1, 10 and 100 modules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class PipelineBenchmark {
+
+    private static final String MANIFEST_KEY = "benchmark";
+
+    @Param({"1", "10", "100"})
+    public int modules;
+
+    private SyntheticReactor reactor;
+    private List<TestCaseResult> testResults;
+    private List<URL> resolvedNopolClasspath;
+    private ClasspathManifest manifest;
+    private RepairJob job;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        reactor = new SyntheticReactor(Files.createTempDirectory("nopol-reactor").toFile(), modules);
+        testResults = NopolMojo.getTestResults(reactor.getProjects());
+
+        // what a transitive resolution returns: the shared jars once per path to them
+        resolvedNopolClasspath = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            resolvedNopolClasspath.addAll(NopolMojo.getClasspath(reactor.getProjects().subList(0, 1), Collections.<File>emptyList()));
+        }
+        manifest = new ClasspathManifest(new File(reactor.getDirectory(), "classpath"));
+        manifest.store(MANIFEST_KEY, ClasspathManifest.deduplicate(resolvedNopolClasspath), Collections.<File>emptyList());
+
+        List<String> failingTests = NopolMojo.getFailingTests(testResults);
+        job = new RepairJob("benchmark", NopolMojo.getSourceFolders(reactor.getProjects()).toArray(new File[0]),
+                NopolMojo.getClasspath(reactor.getProjects(), Collections.<File>emptyList()).toArray(new URL[0]),
+                failingTests.toArray(new String[0]));
+        job.setTestMethodsToIgnore(NopolMojo.getPassingTestMethods(testResults, failingTests));
+        job.setLocalizer(NopolContext.NopolLocalizer.GZOLTAR);
+        job.setSynthesis(NopolContext.NopolSynthesis.DYNAMOTH);
+        job.setType(StatementType.PRE_THEN_COND);
+        job.setSolver(NopolContext.NopolSolver.Z3);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reactor.delete();
+    }
+
+    @Benchmark
+    public List<TestCaseResult> reportParsing() {
+        return NopolMojo.getTestResults(reactor.getProjects());
+    }
+
+    @Benchmark
+    public List<String> failingTests() {
+        return NopolMojo.getFailingTests(testResults);
+    }
+
+    @Benchmark
+    public List<String> passingTestMethods() {
+        return NopolMojo.getPassingTestMethods(testResults, NopolMojo.getFailingTests(testResults));
+    }
+
+    @Benchmark
+    public List<URL> classpath() {
+        return NopolMojo.getClasspath(reactor.getProjects(), Collections.<File>emptyList());
+    }
+
+    /**
+     * The resolution itself needs a repository, so this measures what every run after the first one does.
+     */
+    @Benchmark
+    public List<URL> nopolClasspathManifest() {
+        return manifest.load(MANIFEST_KEY);
+    }
+
+    @Benchmark
+    public List<URL> nopolClasspathDeduplication() {
+        return ClasspathManifest.deduplicate(resolvedNopolClasspath);
+    }
+
+    @Benchmark
+    public List<File> sourceFolders() {
+        return NopolMojo.getSourceFolders(reactor.getProjects());
+    }
+
+    @Benchmark
+    public NopolContext createNopolContext() {
+        return job.toNopolContext();
+    }
+}
@@ -0,0 +1,67 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of the Z3 binary shipped in the Nopol jar, on a fresh cache and on a populated one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class SolverExtractionBenchmark {
+
+    private static final String RESOURCE_PATH = System.getProperty("os.name").toLowerCase().contains("mac")
+            ? "z3/z3_for_mac" : "z3/z3_for_linux";
+
+    private File directory;
+    private SolverBinaryCache warmCache;
+    private SolverBinaryCache coldCache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("nopol-z3").toFile();
+        warmCache = new SolverBinaryCache(new File(directory, "warm"));
+        warmCache.extract(getClass().getClassLoader(), RESOURCE_PATH);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpColdCache() throws IOException {
+        File coldDirectory = new File(directory, "cold");
+        SyntheticReactor.delete(coldDirectory);
+        coldCache = new SolverBinaryCache(coldDirectory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticReactor.delete(directory);
+    }
+
+    @Benchmark
+    public File extractCold() throws IOException {
+        return coldCache.extract(getClass().getClassLoader(), RESOURCE_PATH);
+    }
+
+    @Benchmark
+    public File extractCached() throws IOException {
+        return warmCache.extract(getClass().getClassLoader(), RESOURCE_PATH);
+    }
+}
@@ -0,0 +1,150 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A reactor laid out on disk like a built multi-module project: each module has its sources,
+ * its output directories and its surefire reports, and depends on shared jars and on the previous modules.
+ */
+public class SyntheticReactor {
+
+    static final int TEST_CLASSES_PER_MODULE = 20;
+    static final int TEST_METHODS_PER_CLASS = 10;
+    static final int SHARED_JARS = 40;
+
+    private final File directory;
+    private final List<MavenProject> projects = new ArrayList<>();
+
+    public SyntheticReactor(File directory, int nbModules) throws IOException {
+        this.directory = directory;
+        DefaultArtifactHandler jarHandler = new DefaultArtifactHandler("jar");
+        jarHandler.setAddedToClasspath(true);
+
+        List<Artifact> sharedJars = new ArrayList<>();
+        File repository = new File(directory, "repository");
+        for (int i = 0; i < SHARED_JARS; i++) {
+            Artifact artifact = new DefaultArtifact("org.example", "lib" + i, "1.0", Artifact.SCOPE_COMPILE, "jar", null, jarHandler);
+            artifact.setFile(createFile(new File(repository, "lib" + i + "-1.0.jar"), "jar"));
+            sharedJars.add(artifact);
+        }
+
+        List<Artifact> upstreamModules = new ArrayList<>();
+        for (int i = 0; i < nbModules; i++) {
+            String artifactId = "module" + i;
+            File moduleDirectory = new File(directory, artifactId);
+            File target = new File(moduleDirectory, "target");
+
+            Build build = new Build();
+            build.setDirectory(target.getAbsolutePath());
+            build.setSourceDirectory(new File(moduleDirectory, "src/main/java").getAbsolutePath());
+            build.setOutputDirectory(new File(target, "classes").getAbsolutePath());
+            build.setTestOutputDirectory(new File(target, "test-classes").getAbsolutePath());
+            Model model = new Model();
+            model.setGroupId("org.example");
+            model.setArtifactId(artifactId);
+            model.setVersion("1.0");
+            model.setBuild(build);
+
+            createFile(new File(build.getSourceDirectory(), "org/example/" + artifactId + "/Code.java"), "class Code {}");
+            new File(build.getOutputDirectory()).mkdirs();
+            new File(build.getTestOutputDirectory()).mkdirs();
+            writeReports(new File(target, "surefire-reports"), artifactId, i);
+
+            MavenProject project = new MavenProject(model);
+            project.setFile(new File(moduleDirectory, "pom.xml"));
+            Set<Artifact> artifacts = new LinkedHashSet<>(sharedJars);
+            artifacts.addAll(upstreamModules);
+            project.setArtifacts(artifacts);
+            projects.add(project);
+
+            Artifact moduleArtifact = new DefaultArtifact("org.example", artifactId, "1.0", Artifact.SCOPE_COMPILE, "jar", null, jarHandler);
+            moduleArtifact.setFile(new File(build.getOutputDirectory()));
+            upstreamModules.add(moduleArtifact);
+        }
+    }
+
+    public List<MavenProject> getProjects() {
+        return projects;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Writes one report per test class, the first class of every other module having a failing method.
+     */
+    private static void writeReports(File reportsDirectory, String artifactId, int moduleIndex) throws IOException {
+        reportsDirectory.mkdirs();
+        for (int c = 0; c < TEST_CLASSES_PER_MODULE; c++) {
+            String className = "org.example." + artifactId + ".Code" + c + "Test";
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(new File(reportsDirectory, "TEST-" + className + ".xml")), StandardCharsets.UTF_8)) {
+                writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+                writer.write("<testsuite name=\"" + className + "\" tests=\"" + TEST_METHODS_PER_CLASS + "\">\n");
+                writer.write("<properties><property name=\"java.version\" value=\"1.7\"/></properties>\n");
+                for (int m = 0; m < TEST_METHODS_PER_CLASS; m++) {
+                    writer.write("<testcase name=\"test" + m + "\" classname=\"" + className + "\" time=\"0.01\">");
+                    if (c == 0 && m == 0 && moduleIndex % 2 == 0) {
+                        writer.write("<failure message=\"expected:&lt;1&gt; but was:&lt;2&gt;\" type=\"java.lang.AssertionError\">");
+                        for (int line = 0; line < 50; line++) {
+                            writer.write("\tat org.example.Frame" + line + ".method(Frame" + line + ".java:" + line + ")\n");
+                        }
+                        writer.write("</failure>");
+                    }
+                    writer.write("<system-out>output of test" + m + "\n</system-out></testcase>\n");
+                }
+                writer.write("</testsuite>\n");
+            }
+        }
+    }
+
+    private static File createFile(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    public void delete() throws IOException {
+        delete(directory);
+    }
+
+    static void delete(File directory) throws IOException {
+        if (!directory.exists()) {
+            return;
+        }
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,72 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The projects of a batch, one per line: the project directory, optionally preceded by an identifier and a tab,
+ * e.g. the identifier of the bug in its dataset. Relative directories are relative to the manifest,
+ * blank lines and lines starting with <code>#</code> are ignored. The identifier defaults to the directory name.
+ */
+public final class BatchManifest {
+
+    private BatchManifest() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if two entries have the same identifier
+     */
+    public static List<Entry> read(File manifest) throws IOException {
+        File baseDirectory = manifest.getAbsoluteFile().getParentFile();
+        List<Entry> entries = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int tab = line.indexOf('\t');
+            String path = tab < 0 ? line : line.substring(tab + 1).trim();
+            File directory = new File(path);
+            if (!directory.isAbsolute()) {
+                directory = new File(baseDirectory, path);
+            }
+            String id = tab < 0 ? directory.getName() : line.substring(0, tab).trim();
+            if (!ids.add(id)) {
+                throw new IllegalArgumentException("Duplicate batch entry \"" + id + "\" in " + manifest);
+            }
+            entries.add(new Entry(id, directory));
+        }
+        return entries;
+    }
+
+    public static class Entry {
+
+        private final String id;
+        private final File directory;
+
+        public Entry(String id, File directory) {
+            this.id = id;
+            this.directory = directory;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public File getDirectory() {
+            return directory;
+        }
+
+        @Override
+        public String toString() {
+            return id + " (" + directory + ")";
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * The finished jobs of a batch, saved after each job so an interrupted batch resumes with the jobs not finished yet.
+ * Each job is stored as <code>id=status,patches,duration in ms</code>.
+ */
+public class BatchState {
+
+    private final File file;
+    private final Properties jobs;
+
+    public BatchState(File file) {
+        this.file = file;
+        this.jobs = new Properties();
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                jobs.load(in);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public synchronized boolean isDone(String id) {
+        return jobs.containsKey(id);
+    }
+
+    public synchronized int getNbDone() {
+        return jobs.size();
+    }
+
+    public synchronized void record(String id, RepairOutcome outcome) throws IOException {
+        jobs.setProperty(id, outcome.getStatus() + "," + outcome.getPatches().size() + "," + outcome.getDurationInMilliseconds());
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        File tmpFile = new File(parent, file.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmpFile)) {
+            jobs.store(out, "Finished jobs of the batch: status,patches,duration in ms");
+        }
+        if (!tmpFile.renameTo(file)) {
+            file.delete();
+            tmpFile.renameTo(file);
+        }
+    }
+
+    /**
+     * Writes the aggregate of the finished jobs among the entries, in the JSON format.
+     *
+     * @return the number of jobs with patches
+     */
+    public synchronized int writeSummary(List<BatchManifest.Entry> entries, File summaryFile) throws IOException {
+        Map<String, Integer> statuses = new TreeMap<>();
+        int nbFinished = 0;
+        int nbPatched = 0;
+        long duration = 0;
+        StringBuilder results = new StringBuilder();
+        for (BatchManifest.Entry entry : entries) {
+            String value = jobs.getProperty(entry.getId());
+            if (value == null) {
+                continue;
+            }
+            String[] fields = value.split(",");
+            String status = fields[0];
+            int nbPatches = fields.length > 1 ? (int) parseLong(fields[1]) : 0;
+            long jobDuration = fields.length > 2 ? parseLong(fields[2]) : 0;
+            Integer count = statuses.get(status);
+            statuses.put(status, count == null ? 1 : count + 1);
+            nbFinished++;
+            if (nbPatches > 0) {
+                nbPatched++;
+            }
+            duration += jobDuration;
+
+            if (results.length() > 0) {
+                results.append(',');
+            }
+            results.append('{');
+            RepairReport.appendField(results, "id", entry.getId()).append(',');
+            RepairReport.appendField(results, "directory", entry.getDirectory().getPath()).append(',');
+            RepairReport.appendField(results, "status", status).append(',');
+            RepairReport.appendField(results, "patches", nbPatches).append(',');
+            RepairReport.appendField(results, "durationInMilliseconds", jobDuration).append('}');
+        }
+
+        StringBuilder sb = new StringBuilder("{");
+        RepairReport.appendField(sb, "jobs", entries.size()).append(',');
+        RepairReport.appendField(sb, "finished", nbFinished).append(',');
+        RepairReport.appendField(sb, "patched", nbPatched).append(',');
+        RepairReport.appendField(sb, "durationInMilliseconds", duration).append(',');
+        RepairReport.appendString(sb, "statuses").append(":{");
+        boolean first = true;
+        for (Map.Entry<String, Integer> status : statuses.entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            RepairReport.appendField(sb, status.getKey(), status.getValue());
+        }
+        sb.append("},");
+        RepairReport.appendString(sb, "results").append(":[").append(results).append("]}\n");
+
+        File tmpFile = new File(summaryFile.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+            writer.write(sb.toString());
+        }
+        if (!tmpFile.renameTo(summaryFile)) {
+            summaryFile.delete();
+            tmpFile.renameTo(summaryFile);
+        }
+        return nbPatched;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The lines of the working tree of a git repository changed since a base revision, read from <code>git diff</code>.
+ * Lines removed without replacement mark the lines around them as changed, untracked files are changed as a whole.
+ */
+public class ChangedLines {
+
+    private static final Pattern HUNK = Pattern.compile("^@@ -\\d+(?:,\\d+)? \\+(\\d+)(?:,(\\d+))? @@");
+
+    private final File root;
+    // path relative to the root -> changed lines, empty for a whole file
+    private final Map<String, SortedSet<Integer>> lines;
+
+    ChangedLines(File root, Map<String, SortedSet<Integer>> lines) {
+        this.root = root;
+        this.lines = lines;
+    }
+
+    /**
+     * @param directory a directory of the working tree
+     * @param baseRevision any revision of git, e.g. <code>HEAD~1</code> or <code>origin/master</code>
+     * @throws IOException if git fails, e.g. the directory is not in a repository or the revision is unknown
+     */
+    public static ChangedLines compute(File directory, String baseRevision) throws IOException {
+        File root = new File(git(directory, "rev-parse", "--show-toplevel").trim());
+        // the prefixes whatever diff.noprefix or diff.mnemonicPrefix say, the paths of parse() expect them
+        Map<String, SortedSet<Integer>> lines = parse(git(root, "diff", "--no-color", "--no-ext-diff", "--no-renames", "--unified=0",
+                "--src-prefix=a/", "--dst-prefix=b/", baseRevision, "--"));
+        for (String untracked : git(root, "ls-files", "-z", "--others", "--exclude-standard").split("\0")) {
+            if (!untracked.isEmpty()) {
+                lines.put(untracked, new TreeSet<Integer>());
+            }
+        }
+        return new ChangedLines(root, lines);
+    }
+
+    /**
+     * @return the changed lines of each file of the unified diff, without the deleted files
+     */
+    static Map<String, SortedSet<Integer>> parse(String diff) {
+        Map<String, SortedSet<Integer>> result = new TreeMap<>();
+        SortedSet<Integer> current = null;
+        for (String line : diff.split("\n")) {
+            if (line.startsWith("+++ ")) {
+                String path = line.substring(4);
+                // the path ends with a tab when it has a space
+                if (path.endsWith("\t")) {
+                    path = path.substring(0, path.length() - 1);
+                }
+                path = unquote(path);
+                if (path.equals("/dev/null")) {
+                    current = null;
+                } else {
+                    current = new TreeSet<>();
+                    result.put(path.startsWith("b/") ? path.substring(2) : path, current);
+                }
+                continue;
+            }
+            Matcher matcher = HUNK.matcher(line);
+            if (current == null || !matcher.find()) {
+                continue;
+            }
+            int start = Integer.parseInt(matcher.group(1));
+            int count = matcher.group(2) == null ? 1 : Integer.parseInt(matcher.group(2));
+            if (count == 0) {
+                // removed lines, between the line start and the next one
+                current.add(Math.max(1, start));
+                current.add(start + 1);
+            }
+            for (int i = start; i < start + count; i++) {
+                current.add(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the path, without the double quotes and C escapes git puts around paths with special characters
+     */
+    static String unquote(String path) {
+        if (path.length() < 2 || path.charAt(0) != '"' || path.charAt(path.length() - 1) != '"') {
+            return path;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i = 1; i < path.length() - 1; i++) {
+            char c = path.charAt(i);
+            if (c != '\\' || i + 1 == path.length() - 1) {
+                byte[] encoded = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+                bytes.write(encoded, 0, encoded.length);
+                continue;
+            }
+            c = path.charAt(++i);
+            if (c >= '0' && c <= '7' && i + 2 < path.length() - 1) {
+                // an octal escaped byte of the UTF-8 path
+                bytes.write(Integer.parseInt(path.substring(i, i + 3), 8));
+                i += 2;
+            } else if (c == 't') {
+                bytes.write('\t');
+            } else if (c == 'n') {
+                bytes.write('\n');
+            } else {
+                bytes.write(c);
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the changed files, absolute
+     */
+    public List<File> getChangedFiles() {
+        List<File> files = new ArrayList<>();
+        for (String path : lines.keySet()) {
+            files.add(new File(root, path));
+        }
+        return files;
+    }
+
+    /**
+     * @return the number of changed lines, the lines of the untracked files excluded
+     */
+    public int getNbChangedLines() {
+        int nbLines = 0;
+        for (SortedSet<Integer> fileLines : lines.values()) {
+            nbLines += fileLines.size();
+        }
+        return nbLines;
+    }
+
+    /**
+     * Copies the changed Java files of each source folder to a subdirectory of <code>directory</code>.
+     *
+     * @return the subdirectories with at least one file, in the order of the source folders
+     * @see SourceView#create(File[], java.util.Collection, File)
+     */
+    public File[] createSourceView(File[] sourceFolders, File directory) throws IOException {
+        return SourceView.create(sourceFolders, getChangedFiles(), directory);
+    }
+
+    private static String git(File directory, String... arguments) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        // the paths in UTF-8 rather than quoted with octal escapes
+        command.add("-c");
+        command.add("core.quotePath=false");
+        command.addAll(Arrays.asList(arguments));
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(directory);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        Process process = builder.start();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream in = process.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                output.write(buffer, 0, read);
+            }
+        }
+        try {
+            if (process.waitFor() != 0) {
+                throw new IOException("git " + arguments[0] + " failed in " + directory + " with exit code " + process.exitValue());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroy();
+            throw new IOException("git " + arguments[0] + " interrupted", e);
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
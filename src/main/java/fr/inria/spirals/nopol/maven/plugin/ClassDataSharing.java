@@ -0,0 +1,249 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class data sharing archive of the worker JVMs: the classes of the plugin and of the Nopol engine are parsed and
+ * verified once, then mapped by every worker instead of being loaded again from the jars.
+ *
+ * An archive is keyed by the JVM and by the worker classpath, with the size and modification time of its entries,
+ * so a new classpath manifest or a new JDK gives a new archive. The first repair worker without archive creates it:
+ * from Java 13 the worker dumps the classes it loaded at its exit, on Java 10 to 12 it saves the list of these classes
+ * and a separate <code>java -Xshare:dump</code> archives them. Older JVMs, and classpaths with non empty directories,
+ * which cannot be archived, run without archive.
+ *
+ * The archives are in <code>&lt;directory&gt;/&lt;key&gt;.jsa</code>, the ones unused for 30 days are removed.
+ */
+public class ClassDataSharing {
+
+    private static final long MAX_AGE_IN_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+    // archives being created by a worker of this JVM
+    private static final Set<File> CREATING = new HashSet<>();
+
+    private final File directory;
+    private final String classpath;
+    private final int javaVersion;
+    private final String disabledReason;
+    private final File archive;
+
+    /**
+     * @param classpath the classpath of the workers, in the form of the <code>-cp</code> option
+     */
+    public ClassDataSharing(File directory, String classpath) {
+        this(directory, classpath, getJavaVersion(System.getProperty("java.specification.version")));
+    }
+
+    ClassDataSharing(File directory, String classpath, int javaVersion) {
+        this.directory = directory;
+        this.classpath = classpath;
+        this.javaVersion = javaVersion;
+        this.disabledReason = getDisabledReason(classpath, javaVersion);
+        this.archive = new File(directory, getKey(classpath) + ".jsa");
+    }
+
+    /**
+     * @return the feature version of Java, e.g. 8 for <code>1.8</code> or 17 for <code>17</code>
+     */
+    static int getJavaVersion(String specificationVersion) {
+        String version = specificationVersion.startsWith("1.") ? specificationVersion.substring(2) : specificationVersion;
+        int dot = version.indexOf('.');
+        try {
+            return Integer.parseInt(dot < 0 ? version : version.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return why the workers cannot use an archive, null if they can
+     */
+    static String getDisabledReason(String classpath, int javaVersion) {
+        if (javaVersion < 10) {
+            return "Java " + javaVersion + " has no application class data sharing";
+        }
+        for (String entry : classpath.split(File.pathSeparator)) {
+            String[] children = new File(entry).list();
+            if (children != null && children.length > 0) {
+                return "the classpath has the directory " + entry;
+            }
+        }
+        return null;
+    }
+
+    private static String getKey(String classpath) {
+        MessageDigest digest = Hashes.newDigest();
+        Hashes.update(digest, System.getProperty("java.home"));
+        Hashes.update(digest, System.getProperty("java.vm.version"));
+        for (String entry : classpath.split(File.pathSeparator)) {
+            File file = new File(entry);
+            Hashes.update(digest, entry + ":" + file.length() + ":" + file.lastModified());
+        }
+        return Hashes.toHex(digest.digest());
+    }
+
+    public File getArchive() {
+        return archive;
+    }
+
+    public boolean isEnabled() {
+        return disabledReason == null;
+    }
+
+    /**
+     * Starts the sharing for a worker about to be forked.
+     *
+     * @param training whether the worker loads the classes of a repair, and may create the missing archive
+     */
+    public Session start(boolean training) {
+        if (disabledReason != null) {
+            return new Session(Collections.<String>emptyList(), null, "disabled, " + disabledReason);
+        }
+        List<String> arguments = new ArrayList<>();
+        if (javaVersion < 11) {
+            arguments.add("-XX:+UseAppCDS");
+        }
+        if (archive.isFile()) {
+            // a stale or unreadable archive is ignored by the JVM rather than failing the worker
+            arguments.add("-Xshare:auto");
+            arguments.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+            archive.setLastModified(System.currentTimeMillis());
+            return new Session(arguments, null, "archive used");
+        }
+        synchronized (CREATING) {
+            if (!training || !CREATING.add(archive)) {
+                return new Session(Collections.<String>emptyList(), null, "no archive yet");
+            }
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            System.err.println("Unable to create the class data sharing directory " + directory);
+            synchronized (CREATING) {
+                CREATING.remove(archive);
+            }
+            return new Session(Collections.<String>emptyList(), null, "no archive");
+        }
+        File tmpFile = new File(directory, archive.getName() + "." + UUID.randomUUID() + ".tmp");
+        arguments.add(javaVersion >= 13 ? "-XX:ArchiveClassesAtExit=" + tmpFile.getAbsolutePath() : "-XX:DumpLoadedClassList=" + tmpFile.getAbsolutePath());
+        return new Session(arguments, tmpFile, "creating the archive");
+    }
+
+    /**
+     * Archives the classes of the class list in a tmp file, then moves it in place.
+     */
+    private boolean dump(File classList) throws IOException, InterruptedException {
+        File tmpFile = new File(directory, archive.getName() + "." + UUID.randomUUID() + ".tmp");
+        List<String> command = new ArrayList<>();
+        command.add(ForkedRepairLauncher.getJavaExecutable());
+        if (javaVersion < 11) {
+            command.add("-XX:+UseAppCDS");
+        }
+        command.addAll(Arrays.asList("-Xshare:dump", "-XX:SharedClassListFile=" + classList.getAbsolutePath(),
+                "-XX:SharedArchiveFile=" + tmpFile.getAbsolutePath(), "-cp", classpath));
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(new File(directory, archive.getName() + ".log"));
+        Process process = builder.start();
+        try {
+            if (process.waitFor() != 0 || !tmpFile.isFile()) {
+                tmpFile.delete();
+                return false;
+            }
+        } catch (InterruptedException e) {
+            process.destroy();
+            tmpFile.delete();
+            throw e;
+        }
+        return moveToArchive(tmpFile);
+    }
+
+    private boolean moveToArchive(File tmpFile) {
+        if (!tmpFile.renameTo(archive) && !(archive.delete() && tmpFile.renameTo(archive))) {
+            tmpFile.delete();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the archives of the other classpaths unused for 30 days.
+     */
+    private void removeOldArchives() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (!file.equals(archive) && file.isFile() && now - file.lastModified() > MAX_AGE_IN_MILLIS) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * The sharing of one worker: its JVM options, and the creation of the archive it may have started.
+     */
+    public class Session {
+
+        private final List<String> arguments;
+        // the archive or the class list dumped by the worker, null when it does not create the archive
+        private final File tmpFile;
+        private String status;
+
+        private Session(List<String> arguments, File tmpFile, String status) {
+            this.arguments = arguments;
+            this.tmpFile = tmpFile;
+            this.status = status;
+        }
+
+        /**
+         * @return the options of the worker JVM
+         */
+        public List<String> getArguments() {
+            return arguments;
+        }
+
+        /**
+         * Ends the creation of the archive once the worker exited.
+         *
+         * @param exitValue the exit value of the worker, null if it was killed
+         */
+        public void finish(Integer exitValue) throws InterruptedException {
+            if (tmpFile == null) {
+                return;
+            }
+            try {
+                boolean created = false;
+                if (exitValue != null && exitValue == 0 && tmpFile.isFile()) {
+                    created = javaVersion >= 13 ? moveToArchive(tmpFile) : dump(tmpFile);
+                }
+                status = created ? "archive created" : "archive not created";
+                if (created) {
+                    removeOldArchives();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                status = "archive not created";
+            } finally {
+                tmpFile.delete();
+                synchronized (CREATING) {
+                    CREATING.remove(archive);
+                }
+            }
+        }
+
+        public String getStatus() {
+            return status;
+        }
+    }
+}
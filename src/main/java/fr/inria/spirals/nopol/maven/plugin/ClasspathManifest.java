@@ -0,0 +1,120 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Resolved classpaths persisted as one file per key, one entry per line, followed by the checksums of the POMs
+ * the resolution read, one <code>#pom &lt;sha256&gt; &lt;path&gt;</code> line each.
+ * A manifest is only reused while all its entries still exist and its POMs are unchanged, e.g. the POM of
+ * a SNAPSHOT dependency updated with new dependencies makes it stale.
+ */
+public class ClasspathManifest {
+
+    private static final String POM_PREFIX = "#pom ";
+
+    private final File directory;
+
+    public ClasspathManifest(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the classpath stored for the key, or null when it is missing or stale
+     */
+    public List<URL> load(String key) {
+        File file = getFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            List<URL> classpath = new ArrayList<>();
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.startsWith(POM_PREFIX)) {
+                    int space = line.indexOf(' ', POM_PREFIX.length());
+                    if (space < 0) {
+                        return null;
+                    }
+                    File pom = new File(line.substring(space + 1));
+                    if (!pom.isFile() || !line.substring(POM_PREFIX.length(), space).equals(checksum(pom))) {
+                        return null;
+                    }
+                    continue;
+                }
+                File entry = new File(line);
+                if (!entry.exists()) {
+                    return null;
+                }
+                classpath.add(entry.toURI().toURL());
+            }
+            return classpath;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * @param poms the POMs read by the resolution of the classpath
+     */
+    public void store(String key, List<URL> classpath, List<File> poms) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            System.err.println("Unable to create the classpath manifest directory " + directory);
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (URL url : classpath) {
+            sb.append(new File(url.getPath()).getAbsolutePath()).append('\n');
+        }
+        try {
+            for (File pom : poms) {
+                if (pom.isFile()) {
+                    sb.append(POM_PREFIX).append(checksum(pom)).append(' ').append(pom.getAbsolutePath()).append('\n');
+                }
+            }
+            Path tmpFile = Files.createTempFile(directory.toPath(), key, ".tmp");
+            Files.write(tmpFile, sb.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmpFile, getFile(key).toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    static String checksum(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return Hashes.sha256(in);
+        }
+    }
+
+    public File getFile(String key) {
+        return new File(directory, key + ".classpath");
+    }
+
+    /**
+     * Removes the duplicated entries of a classpath, keeping the first occurrence of each.
+     */
+    public static List<URL> deduplicate(List<URL> classpath) {
+        List<URL> result = new ArrayList<>();
+        Set<String> paths = new HashSet<>();
+        for (URL url : classpath) {
+            if (paths.add(new File(url.getPath()).getAbsolutePath())) {
+                result.add(url);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,118 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import com.gzoltar.core.GZoltar;
+import com.gzoltar.core.components.Component;
+import com.gzoltar.core.components.Statement;
+import com.gzoltar.core.instr.testing.TestResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.URL;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Entry point of a forked JVM computing the {@link TestCoverage} of test classes with GZoltar.
+ * Only the classes of the packages found in the source folders are instrumented.
+ *
+ * Usage: <code>CoverageWorker &lt;request file&gt; &lt;coverage file&gt;</code>
+ */
+public class CoverageWorker {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: " + CoverageWorker.class.getName() + " <request file> <coverage file>");
+            System.exit(2);
+        }
+        Request request = RepairWorker.readObject(new File(args[0]), Request.class);
+        RepairWorker.setGzoltarDebug(request.gzoltarDebug);
+        TestCoverage coverage = computeCoverage(request);
+        RepairWorker.writeObject(new File(args[1]), coverage);
+        // GZoltar may leave non daemon threads behind
+        System.exit(0);
+    }
+
+    static TestCoverage computeCoverage(Request request) throws IOException {
+        GZoltar gzoltar = new GZoltar(request.workingDirectory.getAbsolutePath());
+        ArrayList<String> classpath = new ArrayList<>();
+        for (URL url : request.classpath) {
+            classpath.add(new File(url.getPath()).getAbsolutePath());
+        }
+        gzoltar.setClassPaths(classpath);
+        for (String packageName : getPackages(request.sourceFolders)) {
+            gzoltar.addPackageToInstrument(packageName);
+        }
+        for (String testClass : request.testClasses) {
+            gzoltar.addClassNotToInstrument(testClass);
+            gzoltar.addTestToExecute(testClass);
+        }
+        gzoltar.run();
+
+        TestCoverage coverage = new TestCoverage();
+        for (TestResult testResult : gzoltar.getTestResults()) {
+            List<String> statements = new ArrayList<>();
+            for (Component component : testResult.getCoveredComponents()) {
+                if (component instanceof Statement) {
+                    Statement statement = (Statement) component;
+                    statements.add(statement.getMethod().getParent().getLabel() + ":" + statement.getLineNumber());
+                }
+            }
+            coverage.addTest(testResult.getName(), statements);
+        }
+        System.out.println("Coverage of " + coverage.getNbTests() + " test methods computed.");
+        return coverage;
+    }
+
+    /**
+     * @return the packages containing Java files in the source folders
+     */
+    static Set<String> getPackages(File[] sourceFolders) throws IOException {
+        final Set<String> packages = new TreeSet<>();
+        for (final File sourceFolder : sourceFolders) {
+            if (!sourceFolder.isDirectory()) {
+                continue;
+            }
+            Files.walkFileTree(sourceFolder.toPath(), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (file.toString().endsWith(".java")) {
+                        Path relative = sourceFolder.toPath().relativize(file.getParent());
+                        packages.add(relative.toString().replace(File.separatorChar, '.'));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        return packages;
+    }
+
+    /**
+     * The test classes to run and what is needed to load them.
+     */
+    public static class Request implements Serializable {
+
+        private static final long serialVersionUID = 2L;
+
+        private final File workingDirectory;
+        private final File[] sourceFolders;
+        private final URL[] classpath;
+        private final String[] testClasses;
+        private final boolean gzoltarDebug;
+
+        public Request(File workingDirectory, File[] sourceFolders, URL[] classpath, String[] testClasses, boolean gzoltarDebug) {
+            this.workingDirectory = workingDirectory;
+            this.sourceFolders = sourceFolders;
+            this.classpath = classpath;
+            this.testClasses = testClasses;
+            this.gzoltarDebug = gzoltarDebug;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Content hashes of the files of a list of roots, files or directories, so another host can rebuild them
+ * from a cache of file contents indexed by hash, receiving only the contents it does not have yet.
+ *
+ * The cache holds the contents in <code>objects/&lt;hash&gt;</code> and the rebuilt roots in
+ * <code>roots/&lt;key&gt;/&lt;root name&gt;</code>, the key being the hash of the names and contents of the root.
+ */
+public class FileManifest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // absolute path, size and modification time -> hash, the jars of the classpath are hashed once per JVM
+    private static final Map<String, String> HASHES = new HashMap<>();
+
+    private final List<Root> roots;
+
+    private FileManifest(List<Root> roots) {
+        this.roots = roots;
+    }
+
+    /**
+     * @throws IOException if a file of the roots cannot be read
+     */
+    public static FileManifest of(List<File> files) throws IOException {
+        List<Root> roots = new ArrayList<>();
+        for (File file : files) {
+            Root root = new Root(file.getName(), file.isDirectory(), file.exists());
+            if (file.isDirectory()) {
+                addFiles(root, file, "");
+            } else if (file.isFile()) {
+                root.add("", hash(file), file.canExecute());
+            }
+            roots.add(root);
+        }
+        return new FileManifest(roots);
+    }
+
+    private static void addFiles(Root root, File directory, String prefix) throws IOException {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            String path = prefix + child.getName();
+            if (child.isDirectory()) {
+                addFiles(root, child, path + "/");
+            } else {
+                root.add(path, hash(child), child.canExecute());
+            }
+        }
+    }
+
+    private static String hash(File file) throws IOException {
+        String key = file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+        synchronized (HASHES) {
+            String hash = HASHES.get(key);
+            if (hash != null) {
+                return hash;
+            }
+        }
+        String hash;
+        try (InputStream in = new FileInputStream(file)) {
+            hash = Hashes.sha256(in);
+        }
+        synchronized (HASHES) {
+            HASHES.put(key, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * @return the hashes of the contents of all the files, without duplicates
+     */
+    public Set<String> getHashes() {
+        Set<String> hashes = new LinkedHashSet<>();
+        for (Root root : roots) {
+            hashes.addAll(root.hashes);
+        }
+        return hashes;
+    }
+
+    /**
+     * @param files the roots the manifest was built from
+     * @return the file of each content hash
+     */
+    public Map<String, File> getFiles(List<File> files) {
+        Map<String, File> result = new HashMap<>();
+        for (int i = 0; i < roots.size(); i++) {
+            Root root = roots.get(i);
+            for (int j = 0; j < root.paths.size(); j++) {
+                String path = root.paths.get(j);
+                result.put(root.hashes.get(j), path.isEmpty() ? files.get(i) : new File(files.get(i), path));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the hashes of the contents missing from the cache
+     */
+    public List<String> getMissingHashes(File cacheDirectory) {
+        List<String> missing = new ArrayList<>();
+        for (String hash : getHashes()) {
+            if (!new File(cacheDirectory, "objects/" + hash).isFile()) {
+                missing.add(hash);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Adds a content to the cache of this host.
+     *
+     * @throws IOException if the content does not match the hash
+     */
+    public static void store(File cacheDirectory, String hash, byte[] content) throws IOException {
+        if (!hash.equals(Hashes.sha256(new ByteArrayInputStream(content)))) {
+            throw new IOException("Corrupted content " + hash);
+        }
+        File objects = new File(cacheDirectory, "objects");
+        if (!objects.exists() && !objects.mkdirs()) {
+            throw new IOException("Unable to create " + objects);
+        }
+        File tmpFile = new File(objects, hash + "." + UUID.randomUUID() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmpFile)) {
+            out.write(content);
+        }
+        if (!tmpFile.renameTo(new File(objects, hash))) {
+            // stored by another request in the meantime
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * Rebuilds the roots from the cache of this host, reusing the roots rebuilt for previous requests.
+     *
+     * @return the local copy of each root, in order. A root missing on the original host is missing here too.
+     * @throws IOException if a content is missing from the cache, or if a name or a path would escape its root
+     */
+    public List<File> materialize(File cacheDirectory) throws IOException {
+        File objects = new File(cacheDirectory, "objects");
+        File rootsDirectory = new File(cacheDirectory, "roots");
+        List<File> files = new ArrayList<>();
+        for (Root root : roots) {
+            checkPath(root.name);
+            if (root.name.contains("/") || root.name.contains("\\")) {
+                throw new IOException("Invalid root name \"" + root.name + "\"");
+            }
+            for (String path : root.paths) {
+                if (!path.isEmpty()) {
+                    checkPath(path);
+                }
+            }
+            File rootDirectory = new File(rootsDirectory, root.getKey());
+            files.add(new File(rootDirectory, root.name));
+            if (!root.exists || rootDirectory.isDirectory()) {
+                continue;
+            }
+            File tmpDirectory = new File(rootsDirectory, root.getKey() + "." + UUID.randomUUID() + ".tmp");
+            File tmpRoot = new File(tmpDirectory, root.name);
+            for (int i = 0; i < root.paths.size(); i++) {
+                File file = root.paths.get(i).isEmpty() ? tmpRoot : new File(tmpRoot, root.paths.get(i));
+                if (!file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+                    throw new IOException("Unable to create " + file.getParentFile());
+                }
+                File object = new File(objects, root.hashes.get(i));
+                if (!object.isFile()) {
+                    throw new IOException("Missing content " + root.hashes.get(i) + " of " + root.name);
+                }
+                Files.copy(object.toPath(), file.toPath());
+                if (root.executables.get(i)) {
+                    file.setExecutable(true);
+                }
+            }
+            if (root.directory) {
+                tmpRoot.mkdirs();
+            }
+            if (!tmpDirectory.renameTo(rootDirectory)) {
+                // rebuilt by another request in the meantime
+                SourceView.delete(tmpDirectory);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * @throws IOException if the path, from another host, is absolute or goes up
+     */
+    static void checkPath(String path) throws IOException {
+        if (path.startsWith("/") || path.startsWith("\\") || new File(path).isAbsolute()) {
+            throw new IOException("Invalid absolute path \"" + path + "\"");
+        }
+        for (String segment : path.split("[/\\\\]")) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+                throw new IOException("Invalid path \"" + path + "\"");
+            }
+        }
+    }
+
+    private static class Root implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final boolean directory;
+        private final boolean exists;
+        // relative to the root, empty for a file root
+        private final List<String> paths = new ArrayList<>();
+        private final List<String> hashes = new ArrayList<>();
+        private final List<Boolean> executables = new ArrayList<>();
+
+        Root(String name, boolean directory, boolean exists) {
+            this.name = name;
+            this.directory = directory;
+            this.exists = exists;
+        }
+
+        void add(String path, String hash, boolean executable) {
+            paths.add(path);
+            hashes.add(hash);
+            executables.add(executable);
+        }
+
+        String getKey() {
+            return Hashes.sha256(name + ":" + directory + ":" + exists + ":" + paths + ":" + hashes + ":" + executables);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a {@link RepairJob} in a separate JVM through {@link RepairWorker}, a coverage analysis through {@link CoverageWorker},
+ * or the validation of a patch through {@link ValidationWorker}.
+ * The worker output goes either to the console or to a log file next to the job file.
+ * The progress saved by a repair worker is mirrored in a {@link RepairProgress} of this JVM, and logged
+ * when the worker output goes to its log file.
+ * With class data sharing enabled, the workers map the classes of a {@link ClassDataSharing} archive, created by the first
+ * repair worker, and the startup time of each repair worker is logged.
+ */
+public class ForkedRepairLauncher {
+
+    private static final long POLL_INTERVAL_IN_MILLIS = 200;
+    private static final long PROGRESS_READ_INTERVAL_IN_MILLIS = 1000;
+    private static final long KILL_TIMEOUT_IN_MILLIS = 10000;
+    private static final long KILL_POLL_INTERVAL_IN_MILLIS = 20;
+
+    private final String classpath;
+    private final File workDirectory;
+    private final boolean inheritOutput;
+    private final List<String> jvmArguments;
+    private ClassDataSharing classDataSharing;
+
+    public ForkedRepairLauncher(List<URL> classpath, File workDirectory, boolean inheritOutput) {
+        this(classpath, workDirectory, inheritOutput, new ArrayList<String>());
+    }
+
+    /**
+     * @param jvmArguments the options of the worker JVMs, e.g. the maximum heap size
+     */
+    public ForkedRepairLauncher(List<URL> classpath, File workDirectory, boolean inheritOutput, List<String> jvmArguments) {
+        this.classpath = toClasspathString(classpath);
+        this.workDirectory = workDirectory;
+        this.inheritOutput = inheritOutput;
+        this.jvmArguments = jvmArguments;
+    }
+
+    public File getWorkDirectory() {
+        return workDirectory;
+    }
+
+    /**
+     * Forks the next workers with the class data sharing archive of their classpath, kept in the directory.
+     */
+    public void enableClassDataSharing(File directory) {
+        this.classDataSharing = new ClassDataSharing(directory, classpath);
+    }
+
+    /**
+     * Forks a worker for the job and waits at most <code>timeoutInMillis</code> for its outcome.
+     * A worker running out of time is killed and reported with the TIMEOUT status.
+     */
+    public RepairOutcome launch(RepairJob job, long timeoutInMillis) throws IOException, InterruptedException {
+        String fileName = getFileName(job.getName());
+        File jobFile = new File(workDirectory, fileName + ".job");
+        File outcomeFile = new File(workDirectory, fileName + ".outcome");
+        File logFile = new File(workDirectory, fileName + ".log");
+        File progressFile = new File(workDirectory, fileName + ".progress");
+        progressFile.delete();
+
+        long start = System.currentTimeMillis();
+        RepairProgress progress = new RepairProgress(job.getName(), TimeUnit.MINUTES.toMillis(job.getMaxTimeInMinutes()), job.getNbSuspiciousStatements());
+        progress.register();
+        ClassDataSharing.Session sharing = startSharing(true);
+        Integer exitValue;
+        try {
+            exitValue = run(RepairWorker.class, job, jobFile, outcomeFile, logFile, timeoutInMillis,
+                    progressFile, progress, TimeUnit.SECONDS.toMillis(job.getProgressIntervalInSeconds()), sharing);
+        } finally {
+            progress.stop();
+        }
+        if (exitValue == null) {
+            return RepairOutcome.failure(job.getName(), "TIMEOUT", System.currentTimeMillis() - start, "Worker killed after " + timeoutInMillis + " ms" + getLogHint(logFile));
+        }
+        if (exitValue != 0 || !outcomeFile.exists()) {
+            return RepairOutcome.failure(job.getName(), "ERROR", System.currentTimeMillis() - start, "Worker exited with code " + exitValue + getLogHint(logFile));
+        }
+        RepairOutcome outcome;
+        try {
+            outcome = RepairWorker.readObject(outcomeFile, RepairOutcome.class);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+        if (sharing != null) {
+            System.out.println(getStartupLine(job.getName(), outcome.getMetrics(), sharing.getStatus()));
+        }
+        return outcome;
+    }
+
+    /**
+     * @return the time from the start of the worker JVM to its main method and the setup of the engine, the time
+     * class data sharing reduces
+     */
+    static String getStartupLine(String name, RepairMetrics metrics, String sharingStatus) {
+        long[] startup = metrics == null ? null : metrics.getPhases().get("worker-startup");
+        long[] setup = metrics == null ? null : metrics.getPhases().get("engine-setup");
+        return name + ": worker started in " + (startup == null ? "?" : startup[0]) + " ms, engine set up in "
+                + (setup == null ? "?" : setup[0]) + " ms, class data sharing: " + sharingStatus;
+    }
+
+    private ClassDataSharing.Session startSharing(boolean training) {
+        return classDataSharing == null ? null : classDataSharing.start(training);
+    }
+
+    /**
+     * Forks a {@link CoverageWorker} and waits at most <code>timeoutInMillis</code> for the coverage.
+     *
+     * @return the coverage, null if the worker failed or ran out of time
+     */
+    public TestCoverage computeCoverage(CoverageWorker.Request request, String name, long timeoutInMillis) throws IOException, InterruptedException {
+        String fileName = getFileName(name);
+        File requestFile = new File(workDirectory, fileName + ".coverage-request");
+        File coverageFile = new File(workDirectory, fileName + ".coverage");
+        File logFile = new File(workDirectory, fileName + ".coverage.log");
+
+        Integer exitValue = run(CoverageWorker.class, request, requestFile, coverageFile, logFile, timeoutInMillis, null, null, 0, startSharing(false));
+        if (exitValue == null || exitValue != 0 || !coverageFile.exists()) {
+            System.err.println("Unable to compute the test coverage" + (exitValue == null ? ", killed after " + timeoutInMillis + " ms" : "") + getLogHint(logFile));
+            return null;
+        }
+        try {
+            return RepairWorker.readObject(coverageFile, TestCoverage.class);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Forks a {@link ValidationWorker} and waits at most <code>timeoutInMillis</code> for the validation of the candidate.
+     * A worker running out of time is killed and reported with the TIMEOUT status.
+     */
+    public PatchValidation validate(ValidationWorker.Request request, String name, long timeoutInMillis) throws IOException, InterruptedException {
+        String fileName = getFileName(name);
+        File requestFile = new File(workDirectory, fileName + ".validation-request");
+        File validationFile = new File(workDirectory, fileName + ".validation");
+        File logFile = new File(workDirectory, fileName + ".validation.log");
+
+        long start = System.currentTimeMillis();
+        Integer exitValue = run(ValidationWorker.class, request, requestFile, validationFile, logFile, timeoutInMillis, null, null, 0, startSharing(false));
+        if (exitValue == null) {
+            return PatchValidation.failure(request.getCandidate(), PatchValidation.Status.TIMEOUT, System.currentTimeMillis() - start, "Worker killed after " + timeoutInMillis + " ms" + getLogHint(logFile));
+        }
+        if (exitValue != 0 || !validationFile.exists()) {
+            return PatchValidation.failure(request.getCandidate(), PatchValidation.Status.ERROR, System.currentTimeMillis() - start, "Worker exited with code " + exitValue + getLogHint(logFile));
+        }
+        try {
+            return RepairWorker.readObject(validationFile, PatchValidation.class);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Runs the main class with the serialized input and the output files as arguments, followed by the progress file if any.
+     * While the worker runs, the progress it saves is mirrored in <code>progress</code>.
+     * The class data sharing of the worker, if any, is finished once it exited.
+     *
+     * @param progressIntervalInMillis the interval between two progress lines, when the worker output goes to its log file
+     * @return the exit value of the worker, null if it was killed after the timeout
+     */
+    private Integer run(Class<?> mainClass, Object input, File inputFile, File outputFile, File logFile, long timeoutInMillis,
+            File progressFile, RepairProgress progress, long progressIntervalInMillis, ClassDataSharing.Session sharing) throws IOException, InterruptedException {
+        Integer exitValue = null;
+        try {
+            exitValue = run(mainClass, input, inputFile, outputFile, logFile, timeoutInMillis, progressFile, progress, progressIntervalInMillis,
+                    sharing == null ? Collections.<String>emptyList() : sharing.getArguments());
+            return exitValue;
+        } finally {
+            if (sharing != null) {
+                sharing.finish(exitValue);
+            }
+        }
+    }
+
+    private Integer run(Class<?> mainClass, Object input, File inputFile, File outputFile, File logFile, long timeoutInMillis,
+            File progressFile, RepairProgress progress, long progressIntervalInMillis, List<String> sharingArguments) throws IOException, InterruptedException {
+        if (!workDirectory.exists() && !workDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + workDirectory);
+        }
+        outputFile.delete();
+        RepairWorker.writeObject(inputFile, input);
+
+        List<String> command = new ArrayList<>();
+        command.add(getJavaExecutable());
+        command.addAll(jvmArguments);
+        command.addAll(sharingArguments);
+        command.add("-cp");
+        command.add(classpath);
+        command.add(mainClass.getName());
+        command.add(inputFile.getAbsolutePath());
+        command.add(outputFile.getAbsolutePath());
+        if (progressFile != null) {
+            command.add(progressFile.getAbsolutePath());
+        }
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        if (inheritOutput) {
+            builder.inheritIO();
+        } else {
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(logFile);
+        }
+
+        long start = System.currentTimeMillis();
+        long nextProgress = start + PROGRESS_READ_INTERVAL_IN_MILLIS;
+        long nextProgressLine = start + progressIntervalInMillis;
+        Process process = builder.start();
+        try {
+            while (!hasExited(process)) {
+                long now = System.currentTimeMillis();
+                if (now - start > timeoutInMillis) {
+                    kill(process);
+                    return null;
+                }
+                if (progress != null && now >= nextProgress) {
+                    Properties saved = RepairProgress.read(progressFile);
+                    if (saved != null) {
+                        progress.update(saved);
+                    }
+                    nextProgress = now + PROGRESS_READ_INTERVAL_IN_MILLIS;
+                    if (!inheritOutput && progressIntervalInMillis > 0 && now >= nextProgressLine) {
+                        System.out.println(progress);
+                        nextProgressLine += progressIntervalInMillis;
+                    }
+                }
+                Thread.sleep(POLL_INTERVAL_IN_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            kill(process);
+            throw e;
+        }
+        return process.exitValue();
+    }
+
+    /**
+     * Kills the worker and waits at most {@value #KILL_TIMEOUT_IN_MILLIS} ms for its exit, so that a killed worker
+     * no longer runs, nor holds its files, once its caller moves on, e.g. to the next attempt or to the next job.
+     * An interrupt while waiting is kept for the caller.
+     */
+    static void kill(Process process) {
+        process.destroy();
+        long deadline = System.currentTimeMillis() + KILL_TIMEOUT_IN_MILLIS;
+        boolean interrupted = false;
+        while (!hasExited(process) && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(KILL_POLL_INTERVAL_IN_MILLIS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (!hasExited(process)) {
+            System.err.println("Worker still running " + KILL_TIMEOUT_IN_MILLIS + " ms after it was killed");
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String getFileName(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private String getLogHint(File logFile) {
+        return inheritOutput ? "" : ", see " + logFile;
+    }
+
+    private static boolean hasExited(Process process) {
+        try {
+            process.exitValue();
+            return true;
+        } catch (IllegalThreadStateException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the classpath in the form of the <code>-cp</code> option, without duplicates
+     */
+    static String toClasspathString(List<URL> classpath) {
+        Set<String> entries = new LinkedHashSet<>();
+        for (URL url : classpath) {
+            entries.add(new File(url.getPath()).getAbsolutePath());
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String entry : entries) {
+            if (sb.length() > 0) {
+                sb.append(File.pathSeparator);
+            }
+            sb.append(entry);
+        }
+        return sb.toString();
+    }
+
+    static String getJavaExecutable() {
+        return System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    }
+}
@@ -0,0 +1,65 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 helpers shared by the caches of the plugin.
+ */
+final class Hashes {
+
+    private Hashes() {
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Adds a string to the digest, terminated so that consecutive values cannot collide.
+     */
+    static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Adds the whole stream to the digest and closes it.
+     */
+    static void update(MessageDigest digest, InputStream stream) throws IOException {
+        byte[] buffer = new byte[8192];
+        try (InputStream in = stream) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    static String sha256(InputStream stream) throws IOException {
+        MessageDigest digest = newDigest();
+        update(digest, stream);
+        return toHex(digest.digest());
+    }
+
+    static String sha256(String value) {
+        MessageDigest digest = newDigest();
+        update(digest, value);
+        return toHex(digest.digest());
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
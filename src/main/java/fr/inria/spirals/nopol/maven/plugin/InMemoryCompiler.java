@@ -0,0 +1,139 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles one compilation unit in memory against an existing classpath, so a patched class
+ * can be loaded without writing or rebuilding anything.
+ */
+public class InMemoryCompiler {
+
+    private final URL[] classpath;
+    private final int complianceLevel;
+    private final Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+    private String messages = "";
+
+    public InMemoryCompiler(URL[] classpath, int complianceLevel) {
+        this.classpath = classpath;
+        this.complianceLevel = complianceLevel;
+    }
+
+    /**
+     * @param className the name of the top level class of the compilation unit
+     * @return true if the compilation succeeded, the messages of the compiler are given by {@link #getMessages()}
+     * @throws IllegalStateException if the JVM has no compiler
+     */
+    public boolean compile(String className, String source) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No Java compiler, the JVM must be a JDK");
+        }
+        String level = complianceLevel < 9 ? "1." + complianceLevel : String.valueOf(complianceLevel);
+        List<String> options = Arrays.asList("-nowarn", "-source", level, "-target", level,
+                "-cp", ForkedRepairLauncher.toClasspathString(Arrays.asList(classpath)));
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(diagnostics, null, null);
+             JavaFileManager fileManager = new ClassesFileManager(standardFileManager)) {
+            JavaFileObject compilationUnit = new SourceFile(className, source);
+            boolean success = compiler.getTask(null, fileManager, diagnostics, options, null, Collections.singletonList(compilationUnit)).call();
+            StringBuilder sb = new StringBuilder();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    sb.append("line ").append(diagnostic.getLineNumber()).append(": ").append(diagnostic.getMessage(null)).append('\n');
+                }
+            }
+            messages = sb.toString();
+            return success;
+        }
+    }
+
+    public String getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return the bytecode of the compiled classes, by binary name
+     */
+    public Map<String, byte[]> getClasses() {
+        Map<String, byte[]> result = new HashMap<>();
+        for (Map.Entry<String, ByteArrayOutputStream> entry : classes.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toByteArray());
+        }
+        return result;
+    }
+
+    /**
+     * @return a class loader of the classpath where the compiled classes replace the ones of the classpath
+     */
+    public URLClassLoader newClassLoader(ClassLoader parent) {
+        final Map<String, byte[]> compiledClasses = getClasses();
+        return new URLClassLoader(classpath, parent) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                byte[] bytecode = compiledClasses.get(name);
+                if (bytecode != null) {
+                    return defineClass(name, bytecode, 0, bytecode.length);
+                }
+                return super.findClass(name);
+            }
+        };
+    }
+
+    private static class SourceFile extends SimpleJavaFileObject {
+
+        private final String source;
+
+        SourceFile(String className, String source) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    /**
+     * Keeps the class files produced by the compiler in memory.
+     */
+    private class ClassesFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        ClassesFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, final String className, JavaFileObject.Kind kind, FileObject sibling) {
+            return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    classes.put(className, out);
+                    return out;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.DefaultProjectBuildingRequest;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectBuilder;
+import org.apache.maven.project.ProjectBuildingException;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.maven.project.ProjectBuildingResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Repairs the projects of a manifest in one invocation: the Nopol classpath is resolved and the solver extracted once,
+ * each project is loaded with its POM and its surefire reports, then repaired in a forked worker,
+ * at most <code>workers</code> at a time. The state of the batch is saved after each job, a new invocation
+ * with the same batch directory resumes with the jobs not finished yet.
+ *
+ * @see BatchManifest
+ */
+@Mojo( name = "batch", aggregator = true, requiresProject = false, threadSafe = true)
+public class NopolBatchMojo extends NopolMojo {
+
+    static final String STATE_FILE = "batch.properties";
+    static final String SUMMARY_FILE = "summary.json";
+
+    /**
+     * The projects to repair, one directory per line, optionally preceded by an identifier and a tab.
+     * The projects must have been tested, the failing tests are read from their surefire reports.
+     */
+    @Parameter( property = "manifest", required = true )
+    private File manifest;
+
+    /**
+     * Directory of the state of the batch, of its summary and of the results of each job, with the diffs of its
+     * validated patches in <code>&lt;id&gt;/patches</code>, relative to the directory of its project.
+     */
+    @Parameter( defaultValue = "${basedir}/nopol-batch", property = "batchDir", required = true )
+    private File batchDirectory;
+
+    /**
+     * Maximum heap of each worker, e.g. <code>2g</code>. By default, the one of the JVM.
+     */
+    @Parameter( property = "jobMemory" )
+    private String jobMemory;
+
+    /**
+     * Run all the jobs of the manifest again, ignoring the saved state of the batch.
+     */
+    @Parameter( defaultValue = "false", property = "restartBatch" )
+    private boolean restartBatch;
+
+    @Parameter( defaultValue = "${session}", readonly = true )
+    private MavenSession session;
+
+    @Component
+    private ProjectBuilder projectBuilder;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        long start = System.currentTimeMillis();
+        final List<BatchManifest.Entry> entries;
+        try {
+            entries = BatchManifest.read(manifest);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new MojoExecutionException("Unable to read the batch manifest " + manifest, e);
+        }
+        File stateFile = new File(batchDirectory, STATE_FILE);
+        if (restartBatch) {
+            stateFile.delete();
+        }
+        final BatchState state = new BatchState(stateFile);
+
+        List<BatchManifest.Entry> todo = new ArrayList<>();
+        for (BatchManifest.Entry entry : entries) {
+            if (!state.isDone(entry.getId())) {
+                todo.add(entry);
+            }
+        }
+        if (todo.size() < entries.size()) {
+            System.out.println("Resuming the batch, " + (entries.size() - todo.size()) + " of " + entries.size() + " jobs already finished.");
+        }
+
+        final List<URL> nopolClasspath = getNopolClasspath();
+        List<String> jvmArguments = new ArrayList<>();
+        if (jobMemory != null && !jobMemory.trim().isEmpty()) {
+            jvmArguments.add("-Xmx" + jobMemory.trim());
+        }
+        final ForkedRepairLauncher launcher = newLauncher(nopolClasspath, new File(batchDirectory, "jobs"), false, jvmArguments);
+        int nbWorkers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        final int timeout = jobTimeout > 0 ? jobTimeout : maxTime;
+        // one extra minute for the JVM startup and the model building before Nopol checks its own budget
+        final long timeoutInMillis = TimeUnit.MINUTES.toMillis(timeout + 1);
+        final AtomicInteger nbFinished = new AtomicInteger(entries.size() - todo.size());
+
+        System.out.println("Running " + todo.size() + " repair jobs with " + nbWorkers + " workers.");
+        ExecutorService executor = Executors.newFixedThreadPool(nbWorkers);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            // the projects are loaded in this thread, while the workers repair the ones loaded before
+            for (final BatchManifest.Entry entry : todo) {
+                final long jobStart = System.currentTimeMillis();
+                final RepairMetrics jobMetrics = new RepairMetrics();
+                RepairMetrics.Phase phase = jobMetrics.start("project-loading");
+                final List<TestCaseResult> testResults = new ArrayList<>();
+                RepairJob job = null;
+                RepairOutcome outcome = null;
+                try {
+                    List<MavenProject> projects = buildProjects(entry.getDirectory());
+                    testResults.addAll(getTestResults(projects));
+                    if (getFailingTests(testResults).isEmpty()) {
+                        outcome = RepairOutcome.failure(entry.getId(), "NO_FAILING_TEST", 0, null);
+                    } else {
+                        job = createRepairJob(entry.getId(), testResults, getClasspath(projects), getSourceFolders(projects));
+                        Integer complianceLevel = getComplianceLevel(projects.get(0));
+                        if (complianceLevel != null) {
+                            job.setComplianceLevel(complianceLevel);
+                        }
+                        job.setSourceEncoding(projects.get(0).getProperties().getProperty("project.build.sourceEncoding"));
+                        job.setMaxTimeInMinutes(timeout);
+                        getTimeouts().apply(job, testResults);
+                    }
+                } catch (ProjectBuildingException | RuntimeException e) {
+                    outcome = RepairOutcome.failure(entry.getId(), "ERROR", 0, "Unable to load the project: " + e.getMessage());
+                }
+                phase.stop();
+                if (outcome != null) {
+                    finish(entry, null, outcome, testResults, jobMetrics, jobStart, state, nbFinished.incrementAndGet(), entries.size());
+                    continue;
+                }
+
+                final RepairJob repairJob = job;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        RepairMetrics.Phase phase = jobMetrics.start("repair");
+                        RepairOutcome outcome = launch(launcher, repairJob, timeoutInMillis);
+                        phase.stop();
+                        // the diffs apply to the project of the entry
+                        validatePatches(repairJob, outcome, nopolClasspath, entry.getDirectory(), new File(getJobDirectory(entry), "patches"));
+                        finish(entry, repairJob, outcome, testResults, jobMetrics, jobStart, state, nbFinished.incrementAndGet(), entries.size());
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Batch interrupted, it resumes at the next invocation", e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Batch failed, it resumes at the next invocation", e.getCause());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to save the state of the batch", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try {
+            File summaryFile = new File(batchDirectory, SUMMARY_FILE);
+            int nbPatched = state.writeSummary(entries, summaryFile);
+            System.out.println("-----");
+            System.out.println(todo.size() + " repair jobs executed after: " + (System.currentTimeMillis() - start) + " ms, "
+                    + nbPatched + " of " + entries.size() + " projects with patches, see " + summaryFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write the batch summary", e);
+        }
+    }
+
+    /**
+     * Writes the results of the job in its directory of the batch and saves the state of the batch.
+     */
+    private void finish(BatchManifest.Entry entry, RepairJob job, RepairOutcome outcome, List<TestCaseResult> testResults,
+            RepairMetrics jobMetrics, long jobStart, BatchState state, int nbFinished, int nbJobs) throws IOException {
+        RepairReport report = new RepairReport(getJobDirectory(entry), jobStart);
+        report.add(outcome, job == null ? 0 : countTestMethods(job, testResults));
+        report.write(jobMetrics, System.currentTimeMillis() - jobStart);
+        state.record(entry.getId(), outcome);
+        synchronized (this) {
+            System.out.println("----- [" + nbFinished + "/" + nbJobs + "] " + entry);
+            printResults(outcome);
+        }
+    }
+
+    /**
+     * @return the directory of the results of the job of the entry
+     */
+    private File getJobDirectory(BatchManifest.Entry entry) {
+        return new File(batchDirectory, entry.getId().replaceAll("[^A-Za-z0-9._-]", "_"));
+    }
+
+    /**
+     * @return the project of the directory and its modules, with their dependencies resolved
+     */
+    private List<MavenProject> buildProjects(File directory) throws ProjectBuildingException {
+        ProjectBuildingRequest request = new DefaultProjectBuildingRequest(session.getProjectBuildingRequest());
+        request.setResolveDependencies(true);
+        List<ProjectBuildingResult> results = projectBuilder.build(Collections.singletonList(new File(directory, "pom.xml")), true, request);
+        List<MavenProject> projects = new ArrayList<>();
+        for (ProjectBuildingResult result : results) {
+            projects.add(result.getProject());
+        }
+        return projects;
+    }
+
+    /**
+     * @return the compliance level of the <code>maven.compiler.source</code> property of the project, null if it has none
+     */
+    static Integer getComplianceLevel(MavenProject project) {
+        String source = project.getProperties().getProperty("maven.compiler.source");
+        if (source == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(source.startsWith("1.") ? source.substring(2) : source);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
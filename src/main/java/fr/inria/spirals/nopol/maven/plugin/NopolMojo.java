@@ -1,57 +1,65 @@
 package fr.inria.spirals.nopol.maven.plugin;
 
-import com.google.common.io.ByteStreams;
-import fr.inria.lille.commons.synthesis.smt.solver.SolverFactory;
 import fr.inria.lille.repair.common.config.NopolContext;
-import fr.inria.lille.repair.common.patch.Patch;
 import fr.inria.lille.repair.common.synth.StatementType;
-import fr.inria.lille.repair.nopol.NoPol;
-import fr.inria.lille.repair.nopol.NopolResult;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.DependencyResolutionRequiredException;
 import org.apache.maven.artifact.factory.ArtifactFactory;
 import org.apache.maven.artifact.repository.ArtifactRepository;
-import org.apache.maven.model.Dependency;
-import org.apache.maven.model.Model;
-import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.artifact.resolver.ArtifactResolutionRequest;
+import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
+import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
-import org.apache.maven.plugin.surefire.log.api.NullConsoleLogger;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
-import org.apache.maven.plugins.surefire.report.ReportTestSuite;
-import org.apache.maven.plugins.surefire.report.SurefireReportParser;
 import org.apache.maven.project.MavenProject;
-import org.apache.maven.reporting.MavenReportException;
+import org.apache.maven.repository.RepositorySystem;
 
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.lang.reflect.Field;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 @Mojo( name = "nopol", aggregator = true,
         defaultPhase = LifecyclePhase.TEST,
-        requiresDependencyResolution = ResolutionScope.TEST)
+        requiresDependencyResolution = ResolutionScope.TEST, threadSafe = true)
 public class NopolMojo extends AbstractMojo {
 
     private static String HARDCODED_NOPOL_VERSION = "0.2-SNAPSHOT";
 
+    private static final Object IN_PROCESS_LOCK = new Object();
+
     @Parameter(property = "java.version", defaultValue = "-1")
     protected String javaVersion;
 
@@ -61,6 +69,12 @@ public class NopolMojo extends AbstractMojo {
     @Parameter(property = "maven.compile.source", defaultValue = "-1")
     protected String oldSource;
 
+    /**
+     * Encoding of the source files, the default one of the platform if it is not set.
+     */
+    @Parameter(defaultValue = "${project.build.sourceEncoding}")
+    protected String sourceEncoding;
+
     @Component
     private ArtifactFactory artifactFactory;
 
@@ -73,17 +87,50 @@ public class NopolMojo extends AbstractMojo {
     @Parameter(defaultValue="${localRepository}")
     private ArtifactRepository localRepository;
 
+    @Parameter(defaultValue="${project.remoteArtifactRepositories}", readonly=true)
+    private List<ArtifactRepository> remoteRepositories;
+
+    @Component
+    private RepositorySystem repositorySystem;
+
     @Parameter( defaultValue = "${project.build.directory}/nopol", property = "outputDir", required = true )
     private File outputDirectory;
 
+    /**
+     * Directory of the result cache and of the machine readable results, <code>results.jsonl</code> and <code>nopol.prom</code>.
+     */
     @Parameter( defaultValue = "${project.build.directory}/nopol", property = "resultDir", required = true )
     private File resultDirectory;
 
+    /**
+     * Directory shared by all the builds of the machine, holding the extracted solver binaries.
+     */
+    @Parameter( defaultValue = "${user.home}/.nopol", property = "nopolCacheDir", required = true )
+    private File cacheDirectory;
+
     @Parameter( defaultValue = "pre_then_cond", property = "type", required = true )
     private String type;
 
     @Parameter( defaultValue = "10", property = "maxTime", required = true )
-    private int maxTime;
+    protected int maxTime;
+
+    /**
+     * Multiple of the duration of the tests in the surefire reports given to each test execution of the engine.
+     */
+    @Parameter( defaultValue = "10", property = "testTimeoutFactor" )
+    private double testTimeoutFactor;
+
+    /**
+     * Minimum test execution timeout in seconds.
+     */
+    @Parameter( defaultValue = "10", property = "minTestTimeout" )
+    private int minTestTimeout;
+
+    /**
+     * Maximum test execution timeout in seconds.
+     */
+    @Parameter( defaultValue = "300", property = "maxTestTimeout" )
+    private int maxTestTimeout;
 
     @Parameter( defaultValue = "gzoltar", property = "localizer", required = true )
     private String localizer;
@@ -94,95 +141,1114 @@ public class NopolMojo extends AbstractMojo {
     @Parameter( defaultValue = "z3", property = "solver", required = true )
     private String solver;
 
+    /**
+     * Run the engine in a forked JVM. When false, the engine runs in the Maven JVM,
+     * one module at a time, as it relies on the global <code>java.class.path</code> property.
+     */
+    @Parameter( defaultValue = "true", property = "fork" )
+    private boolean fork;
+
+    /**
+     * Configurations to race against each other in forked workers, separated by commas. Each configuration is made of
+     * colon separated values of synthesis, type, localizer and solver, e.g. <code>dynamoth:pre_then_cond,smt:z3:conditional</code>,
+     * the values not given are the ones of the other parameters. At most <code>workers</code> configurations run at a time,
+     * the race stops at the first patch, and the configurations that won before on the project start first.
+     */
+    @Parameter( property = "portfolio" )
+    private String portfolio;
+
+    /**
+     * Repair each failing test class in its own forked JVM, several at a time, and merge their results in one report.
+     * The build fails when <code>fork</code> is false or <code>daemon</code> or <code>nodes</code> is set. When
+     * <code>portfolio</code> is set, the portfolio race runs instead and this parameter is ignored.
+     */
+    @Parameter( defaultValue = "false", property = "parallel" )
+    private boolean parallel;
+
+    /**
+     * Number of concurrent workers in parallel mode, 0 means one per available core.
+     */
+    @Parameter( defaultValue = "0", property = "workers" )
+    protected int workers;
+
+    /**
+     * Time budget of each parallel job in minutes, 0 means maxTime.
+     */
+    @Parameter( defaultValue = "0", property = "jobTimeout" )
+    protected int jobTimeout;
+
+    /**
+     * Repair each module with failing tests on its own, with only its sources and classpath,
+     * instead of one repair over the sources of the whole reactor. The modules are repaired in forked workers,
+     * the build fails when <code>fork</code> is false or <code>daemon</code>, <code>portfolio</code> or <code>nodes</code> is set.
+     */
+    @Parameter( defaultValue = "false", property = "perModule" )
+    private boolean perModule;
+
+    /**
+     * Also run the passing test methods of the failing test classes when the patches are validated, the validation
+     * then happens even without <code>verifyPatches</code>. The engine only executes the failing test methods anyway.
+     */
+    @Parameter( defaultValue = "false", property = "validateWithPassingTests" )
+    private boolean validateWithPassingTests;
+
+    /**
+     * Also validate the patches with the passing tests covering the statements executed by the failing tests,
+     * selected with a coverage analysis of the tests cached in the result directory.
+     * Their classes run after the failing ones, fastest first, and their non covering methods are ignored.
+     * Only the test classes whose bytecode or executed classes changed since the previous run are analysed again,
+     * and the statements ranked by suspiciousness are written next to the cached coverage.
+     */
+    @Parameter( defaultValue = "false", property = "selectCoveringTests" )
+    private boolean selectCoveringTests;
+
+    /**
+     * Maximum number of candidate patches collected from one run of the engine. Above 1, the engine does not stop
+     * at the first patch, and the candidates are validated concurrently in forked JVMs against the tests of the job,
+     * then ranked by test verdict and patch size.
+     */
+    @Parameter( defaultValue = "1", property = "maxPatches" )
+    private int maxPatches;
+
+    /**
+     * Apply each patch found to a copy of its source file, recompile this compilation unit in memory and run the tests
+     * of the job against it, even when a single patch is requested. The unified diffs of the patches are written
+     * in the <code>patches</code> directory of the result directory.
+     */
+    @Parameter( defaultValue = "false", property = "verifyPatches" )
+    private boolean verifyPatches;
+
+    /**
+     * Time budget of the validation of the candidate patches of a job, in minutes.
+     */
+    @Parameter( defaultValue = "5", property = "validationTime" )
+    private int validationTime;
+
+    /**
+     * Show the output of the GZoltar processes instrumenting the tests.
+     */
+    @Parameter( defaultValue = "true", property = "gzoltarDebug" )
+    private boolean gzoltarDebug;
+
+    /**
+     * Interval in seconds between two progress lines of a running repair, 0 to disable them.
+     * The progress is also exposed by the <code>fr.inria.spirals.nopol:type=RepairProgress</code> MBeans.
+     */
+    @Parameter( defaultValue = "30", property = "progressInterval" )
+    private int progressInterval;
+
+    /**
+     * Base revision of git, e.g. <code>HEAD~1</code> or <code>origin/master</code>. When set, a forked repair first runs
+     * on the source files changed since the revision only, then on all the sources if it found no patch.
+     */
+    @Parameter( property = "changedSince" )
+    private String changedSince;
+
+    /**
+     * Give a forked repair only the compilation units holding a suspicious statement, found from the coverage of the
+     * failing tests with an index of the units cached by content in the cache directory. The engine then parses and
+     * models these units only, the compiled classes of the others staying on the classpath.
+     */
+    @Parameter( defaultValue = "false", property = "lazySources" )
+    private boolean lazySources;
+
+    /**
+     * Repair nodes, comma separated <code>host:port</code> of running {@link RepairNode}s, a node being listed once per
+     * unit it runs at a time. When set, the job is split in work units on shards of its source files, raced on the nodes
+     * until the first fix.
+     */
+    @Parameter( property = "nodes" )
+    private String nodes;
+
+    /**
+     * File holding the token shared with the repair nodes.
+     */
+    @Parameter( defaultValue = "${user.home}/.nopol/node.token", property = "nodeTokenFile" )
+    private File nodeTokenFile;
+
+    /**
+     * Maximum number of source files of a work unit of the repair nodes.
+     */
+    @Parameter( defaultValue = "10", property = "filesPerShard" )
+    private int filesPerShard;
+
+    /**
+     * Fork the workers with a class data sharing archive of the plugin and engine classes, created by the first repair
+     * and recreated when the classpath changes, in the cache directory. Needs Java 10 or later.
+     */
+    @Parameter( defaultValue = "true", property = "classDataSharing" )
+    private boolean classDataSharing;
+
+    /**
+     * Reuse the result of a previous run when the sources, the classpath, the tests and the configuration are unchanged.
+     */
+    @Parameter( defaultValue = "true", property = "useCache" )
+    private boolean useCache;
+
+    /**
+     * Maximum size of the result cache in megabytes.
+     */
+    @Parameter( defaultValue = "100", property = "cacheMaxSize" )
+    private int cacheMaxSize;
+
+    /**
+     * Maximum age of a result cache entry in days.
+     */
+    @Parameter( defaultValue = "30", property = "cacheMaxAge" )
+    private int cacheMaxAge;
+
+    /**
+     * Run the repair in a long-lived local worker process, started on first use and reused by the next runs.
+     */
+    @Parameter( defaultValue = "false", property = "daemon" )
+    private boolean daemon;
+
+    /**
+     * Loopback port of the repair daemon.
+     */
+    @Parameter( defaultValue = "8917", property = "daemonPort" )
+    private int daemonPort;
+
+    /**
+     * Minutes without job after which the repair daemon stops.
+     */
+    @Parameter( defaultValue = "30", property = "daemonIdleTimeout" )
+    private int daemonIdleTimeout;
+
+    /**
+     * Number of jobs after which the repair daemon is replaced by a fresh one.
+     */
+    @Parameter( defaultValue = "20", property = "daemonMaxJobs" )
+    private int daemonMaxJobs;
+
+    private final RepairMetrics metrics = new RepairMetrics();
+    private Semaphore validationSlots;
+
+    private final List<TestCaseResult> reactorTestResults = new ArrayList<>();
+
+    // job name -> statements, most suspicious first, when the coverage was computed
+    private final Map<String, Map<String, Double>> suspiciousStatements = new HashMap<>();
+
+    private long startTime;
 
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
-        final List<String> failingTestCases = getFailingTests();
-        final List<URL> dependencies = getClasspath();
-        final List<File> sourceFolders = getSourceFolders();
+        startTime = System.currentTimeMillis();
+        if (perModule) {
+            List<String> unsupported = getUnsupportedParameters(fork, daemon, nodes, portfolio);
+            if (!unsupported.isEmpty()) {
+                throw new MojoExecutionException("perModule repairs the modules in forked workers and cannot be combined with " + StringUtils.join(unsupported, ", "));
+            }
+            executePerModule();
+            return;
+        }
+        // the portfolio takes precedence over parallel, which is then ignored
+        if (parallel && (portfolio == null || portfolio.trim().isEmpty())) {
+            List<String> unsupported = getUnsupportedParameters(fork, daemon, nodes, null);
+            if (!unsupported.isEmpty()) {
+                throw new MojoExecutionException("parallel repairs the failing test classes in forked workers and cannot be combined with " + StringUtils.join(unsupported, ", "));
+            }
+        }
 
-        System.out.println(failingTestCases.size() + " detected failing test classes. (" + StringUtils.join(failingTestCases,":") + ")");
+        RepairMetrics.Phase phase = metrics.start("test-discovery");
+        final List<TestCaseResult> testResults = getTestResults(reactorProjects);
+        final List<String> failingTestCases = getFailingTests(testResults);
+        reactorTestResults.addAll(testResults);
+        phase.stop();
 
+        phase = metrics.start("classpath-resolution");
+        final List<URL> dependencies = getClasspath(reactorProjects);
+        final List<File> sourceFolders = getSourceFolders(reactorProjects);
         final List<URL> nopolClasspath = getNopolClasspath();
-        final String systemClasspath = System.getProperty("java.class.path");
+        phase.stop();
 
-        final StringBuilder sb = new StringBuilder(systemClasspath);
-        if (sb.lastIndexOf(":") != sb.length() - 1) {
-            sb.append(":");
+        System.out.println(failingTestCases.size() + " detected failing test classes. (" + StringUtils.join(failingTestCases,":") + ")");
+
+        final RepairJob failingTestsJob = createRepairJob(project.getArtifactId(), testResults, dependencies, sourceFolders);
+
+        phase = metrics.start("cache-lookup");
+        final String fingerprint = getInputsFingerprint(failingTestsJob);
+        phase.stop();
+
+        if (parallel && failingTestCases.size() > 1 && (portfolio == null || portfolio.trim().isEmpty())) {
+            executeInParallel(failingTestsJob, testResults, nopolClasspath, fingerprint);
+            return;
+        }
+
+        final RepairJob job = selectCoveringTests(failingTestsJob, testResults, nopolClasspath);
+
+        if (portfolio != null && !portfolio.trim().isEmpty()) {
+            executePortfolio(job, nopolClasspath, fingerprint);
+            return;
+        }
+
+        phase = metrics.start("cache-lookup");
+        RepairOutcome cachedOutcome = getCachedOutcome(fingerprint, job, nopolClasspath);
+        phase.stop();
+        if (cachedOutcome != null) {
+            printResults(cachedOutcome);
+            writeResults(Collections.singletonList(job), Collections.singletonList(cachedOutcome));
+            return;
+        }
+
+        if (nodes != null && !nodes.trim().isEmpty()) {
+            executeDistributed(job, nopolClasspath, fingerprint);
+            return;
+        }
+
+        if (daemon) {
+            RepairDaemonClient client = new RepairDaemonClient(getWorkerClasspath(nopolClasspath),
+                    new File(cacheDirectory, "daemon"), daemonPort, daemonIdleTimeout, daemonMaxJobs);
+            try {
+                phase = metrics.start("repair");
+                RepairOutcome outcome = client.repair(job);
+                phase.stop();
+                validatePatches(job, outcome, nopolClasspath);
+                cacheOutcome(fingerprint, job, outcome);
+                printResults(outcome);
+                writeResults(Collections.singletonList(job), Collections.singletonList(outcome));
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to run the repair in the daemon", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Repair interrupted", e);
+            }
+            return;
         }
-        for (int i = 0; i < nopolClasspath.size(); i++) {
-            URL url = nopolClasspath.get(i);
-            if (!systemClasspath.contains(url.getPath())) {
+
+        if (!fork) {
+            executeInProcess(job, nopolClasspath, fingerprint);
+            return;
+        }
+
+        // the engine gets its own JVM and classpath, nothing global to this JVM is modified
+        ForkedRepairLauncher launcher = newLauncher(nopolClasspath, true);
+        try {
+            phase = metrics.start("repair");
+            RepairOutcome outcome = launch(launcher, job, TimeUnit.MINUTES.toMillis(maxTime + 1));
+            phase.stop();
+            validatePatches(job, outcome, nopolClasspath);
+            cacheOutcome(fingerprint, job, outcome);
+            printResults(outcome);
+            writeResults(Collections.singletonList(job), Collections.singletonList(outcome));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to run the repair in a forked JVM", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Repair interrupted", e);
+        }
+    }
+
+    /**
+     * Runs the engine in the Maven JVM. The engine reads its classpath from the
+     * <code>java.class.path</code> property, so the runs are serialized.
+     */
+    private void executeInProcess(RepairJob job, List<URL> nopolClasspath, String fingerprint) {
+        synchronized (IN_PROCESS_LOCK) {
+            final String systemClasspath = System.getProperty("java.class.path");
+
+            final StringBuilder sb = new StringBuilder(systemClasspath);
+            for (URL url : nopolClasspath) {
+                if (systemClasspath.contains(url.getPath())) {
+                    continue;
+                }
+                sb.append(File.pathSeparator).append(url.getPath());
+            }
+
+            try {
+                System.setProperty("java.class.path", sb.toString());
+                RepairMetrics.Phase phase = metrics.start("repair");
+                RepairOutcome outcome = RepairWorker.repair(job);
+                phase.stop();
+                validatePatches(job, outcome, nopolClasspath);
+                cacheOutcome(fingerprint, job, outcome);
+                printResults(outcome);
+                writeResults(Collections.singletonList(job), Collections.singletonList(outcome));
+            } finally {
+                System.setProperty("java.class.path", systemClasspath);
+            }
+        }
+    }
+
+    /**
+     * @return one job per failing test class of the given job, named after the class, with the configuration of the job
+     */
+    static List<RepairJob> splitByTestClass(RepairJob job) {
+        List<RepairJob> result = new ArrayList<>();
+        for (String failingTest : job.getFailingTests()) {
+            result.add(job.forTests(failingTest, new String[] {failingTest}));
+        }
+        return result;
+    }
+
+    private void executeInParallel(RepairJob job, List<TestCaseResult> testResults, List<URL> nopolClasspath, String fingerprint) throws MojoExecutionException {
+        List<RepairJob> jobs = new ArrayList<>();
+        Map<RepairJob, String> fingerprints = new HashMap<>();
+        for (RepairJob subJob : splitByTestClass(job)) {
+            getTimeouts().apply(subJob, reactorTestResults);
+            subJob = selectCoveringTests(subJob, testResults, nopolClasspath);
+            jobs.add(subJob);
+            // all the jobs share the sources and the classpath
+            fingerprints.put(subJob, fingerprint);
+        }
+        System.out.println("Repairing " + jobs.size() + " failing test classes in parallel.");
+        executeJobs(jobs, fingerprints, nopolClasspath);
+    }
+
+    /**
+     * Races the configurations of the portfolio on the job. A configuration whose result is cached is not run again.
+     * The configurations share the time budget of the repair: run <code>workers</code> at a time, each gets its share
+     * of <code>maxTime</code>, at least one minute, and the race stops after <code>maxTime</code> anyway.
+     * The race stops at the first configuration with a patch passing its validation, if the patches are validated.
+     */
+    private void executePortfolio(RepairJob job, final List<URL> nopolClasspath, String fingerprint) throws MojoExecutionException {
+        List<String> configurations = new ArrayList<>();
+        for (String configuration : portfolio.split(",")) {
+            configuration = configuration.trim().toLowerCase();
+            if (!configuration.isEmpty() && !configurations.contains(configuration)) {
+                configurations.add(configuration);
+            }
+        }
+        PortfolioHistory history = new PortfolioHistory(new File(cacheDirectory, "portfolio"), project.getGroupId() + "_" + project.getArtifactId());
+        configurations = history.rank(configurations);
+        int nbWorkers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        int nbSlots = Math.max(1, Math.min(nbWorkers, configurations.size()));
+        int timeShare = Math.max(1, maxTime * nbSlots / Math.max(1, configurations.size()));
+        System.out.println("Racing " + configurations.size() + " configurations, " + timeShare + " minutes each: " + StringUtils.join(configurations, ", "));
+
+        List<RepairJob> jobs = new ArrayList<>();
+        List<RepairJob> cachedJobs = new ArrayList<>();
+        List<RepairOutcome> cachedOutcomes = new ArrayList<>();
+        Map<RepairJob, String> jobConfigurations = new HashMap<>();
+        for (String configuration : configurations) {
+            RepairJob configuredJob;
+            try {
+                configuredJob = job.withConfiguration(configuration);
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Portfolio configuration \""+configuration+"\" is wrong: "+e.getMessage());
+            }
+            configuredJob.setMaxTimeInMinutes(timeShare);
+            getTimeouts().apply(configuredJob, reactorTestResults);
+            if (configuredJob.getSynthesis() == NopolContext.NopolSynthesis.SMT && configuredJob.getSolver() == NopolContext.NopolSolver.Z3
+                    && configuredJob.getSolverPath() == null) {
+                RepairMetrics.Phase phase = metrics.start("solver-setup");
+                configuredJob.setSolverPath(this.loadZ3AndGivePath());
+                phase.stop();
+            }
+            jobConfigurations.put(configuredJob, configuration);
+
+            RepairOutcome cachedOutcome = getCachedOutcome(fingerprint, configuredJob, nopolClasspath);
+            if (cachedOutcome != null && isValidatedFix(cachedOutcome)) {
+                printResults(cachedOutcome);
+                writeResults(Collections.singletonList(configuredJob), Collections.singletonList(cachedOutcome));
+                return;
+            }
+            if (cachedOutcome != null) {
+                cachedJobs.add(configuredJob);
+                cachedOutcomes.add(cachedOutcome);
+            } else {
+                jobs.add(configuredJob);
+            }
+        }
+
+        ForkedRepairLauncher launcher = newLauncher(nopolClasspath, false);
+        RepairPortfolio repairPortfolio = new RepairPortfolio(launcher, nbWorkers, TimeUnit.MINUTES.toMillis(timeShare + 1),
+                TimeUnit.MINUTES.toMillis(maxTime + 1)) {
+            @Override
+            protected boolean isFix(RepairJob job, RepairOutcome outcome) {
+                validatePatches(job, outcome, nopolClasspath);
+                return isValidatedFix(outcome);
+            }
+        };
+        long start = System.currentTimeMillis();
+        List<RepairOutcome> outcomes;
+        try {
+            RepairMetrics.Phase phase = metrics.start("repair");
+            outcomes = repairPortfolio.race(jobs);
+            phase.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Portfolio repair interrupted", e);
+        }
+        long duration = System.currentTimeMillis() - start;
+        RepairOutcome winner = null;
+        for (int i = 0; i < jobs.size(); i++) {
+            cacheOutcome(fingerprint, jobs.get(i), outcomes.get(i));
+            if (winner == null && isValidatedFix(outcomes.get(i))) {
+                winner = outcomes.get(i);
+            }
+        }
+        if (winner != null) {
+            String configuration = jobConfigurations.get(jobs.get(outcomes.indexOf(winner)));
+            history.recordWin(configuration);
+            System.out.println("Configuration " + configuration + " found a patch after " + duration + " ms.");
+        } else {
+            System.out.println("No configuration found a patch.");
+        }
+
+        jobs.addAll(cachedJobs);
+        outcomes.addAll(cachedOutcomes);
+        printResults(outcomes, duration);
+        writeResults(jobs, outcomes);
+    }
+
+    /**
+     * Races the work units of the job on the repair nodes. A unit stops the race with patches passing their validation,
+     * if any, and its outcome is cached as the one of the job.
+     *
+     * @see RepairCluster
+     */
+    private void executeDistributed(final RepairJob job, final List<URL> nopolClasspath, String fingerprint) throws MojoExecutionException {
+        List<RepairJob> units;
+        String token;
+        try {
+            Map<String, Double> ranking;
+            synchronized (suspiciousStatements) {
+                ranking = suspiciousStatements.get(job.getName());
+            }
+            units = RepairCluster.split(job, ranking, filesPerShard, new File(outputDirectory, "shards"));
+            token = RepairNode.readToken(nodeTokenFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to prepare the work units of the repair nodes", e);
+        }
+        List<InetSocketAddress> nodeAddresses;
+        try {
+            nodeAddresses = RepairCluster.parseNodes(nodes);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Repair nodes \"" + nodes + "\" are wrong: " + e.getMessage());
+        }
+        if (units.isEmpty()) {
+            units = Collections.singletonList(job);
+        }
+        System.out.println("Racing " + units.size() + " work units of at most " + filesPerShard + " source files on " + nodeAddresses.size() + " repair nodes.");
+
+        RepairCluster cluster = new RepairCluster(nodeAddresses, token, TimeUnit.MINUTES.toMillis(maxTime + 1)) {
+            @Override
+            protected boolean isFix(RepairJob unit, RepairOutcome outcome) {
+                // the patches are validated against all the sources of the job, under the name of the unit so that the
+                // validations of concurrent units do not share their files and diffs
+                validatePatches(job.forSourceFolders(unit.getName(), job.getSourceFolders()), outcome, nopolClasspath);
+                return isValidatedFix(outcome);
+            }
+        };
+        long start = System.currentTimeMillis();
+        List<RepairOutcome> outcomes;
+        try {
+            RepairMetrics.Phase phase = metrics.start("repair");
+            outcomes = cluster.race(units);
+            phase.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Distributed repair interrupted", e);
+        }
+        long duration = System.currentTimeMillis() - start;
+
+        RepairOutcome winner = null;
+        for (RepairOutcome outcome : outcomes) {
+            if (winner == null && isValidatedFix(outcome)) {
+                winner = outcome;
+            }
+        }
+        if (winner != null) {
+            System.out.println(winner.getJobName() + " found a patch after " + duration + " ms.");
+            cacheOutcome(fingerprint, job, winner);
+        } else {
+            System.out.println("No work unit found a patch.");
+        }
+        printResults(outcomes, duration);
+        writeResults(units, outcomes);
+    }
+
+    /**
+     * @return whether the outcome has patches and, if they were validated, one of them passed its validation
+     */
+    private static boolean isValidatedFix(RepairOutcome outcome) {
+        if (outcome.getValidations() == null) {
+            return outcome.hasPatches();
+        }
+        for (PatchValidation validation : outcome.getValidations()) {
+            if (validation.isPassed()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Repairs each module with failing tests separately. Modules without failing tests are skipped,
+     * and each job only gets the sources of its module and the test classpath of the module,
+     * which contains the outputs of the upstream modules.
+     */
+    private void executePerModule() throws MojoExecutionException {
+        List<RepairJob> jobs = new ArrayList<>();
+        Map<RepairJob, String> fingerprints = new HashMap<>();
+        Map<RepairJob, List<TestCaseResult>> moduleTestResults = new HashMap<>();
+        RepairMetrics.Phase discovery = metrics.start("test-discovery");
+        Map<MavenProject, List<TestCaseResult>> reactorModuleTestResults = getModuleTestResults(reactorProjects);
+        discovery.stop();
+        for (Map.Entry<MavenProject, List<TestCaseResult>> entry : reactorModuleTestResults.entrySet()) {
+            MavenProject module = entry.getKey();
+            List<MavenProject> modules = Collections.singletonList(module);
+            List<TestCaseResult> testResults = entry.getValue();
+            List<String> failingTestCases = getFailingTests(testResults);
+            reactorTestResults.addAll(testResults);
+            if (failingTestCases.isEmpty()) {
                 continue;
             }
-            sb.append(url.getPath());
-            if (i < nopolClasspath.size() - 1) {
-                sb.append(":");
+            System.out.println(module.getArtifactId() + ": " + failingTestCases.size() + " detected failing test classes. (" + StringUtils.join(failingTestCases,":") + ")");
+            RepairMetrics.Phase phase = metrics.start("classpath-resolution");
+            List<URL> classpath = getClasspath(modules);
+            List<File> sourceFolders = getSourceFolders(modules);
+            phase.stop();
+            RepairJob job = createRepairJob(module.getArtifactId(), testResults, classpath, sourceFolders);
+            jobs.add(job);
+            moduleTestResults.put(job, testResults);
+            phase = metrics.start("cache-lookup");
+            fingerprints.put(job, getInputsFingerprint(job));
+            phase.stop();
+        }
+        System.out.println(jobs.size() + " of " + reactorProjects.size() + " modules have failing tests.");
+        if (jobs.isEmpty()) {
+            return;
+        }
+        RepairMetrics.Phase phase = metrics.start("classpath-resolution");
+        List<URL> nopolClasspath = getNopolClasspath();
+        phase.stop();
+        if (selectCoveringTests) {
+            for (int i = 0; i < jobs.size(); i++) {
+                RepairJob job = jobs.get(i);
+                RepairJob selected = selectCoveringTests(job, moduleTestResults.get(job), nopolClasspath);
+                fingerprints.put(selected, fingerprints.remove(job));
+                jobs.set(i, selected);
             }
         }
+        // the reactor order is a topological order of the modules, jobs start in that order
+        executeJobs(jobs, fingerprints, nopolClasspath);
+    }
+
+    /**
+     * Runs the jobs in forked workers, at most <code>workers</code> at a time, in the given order,
+     * and prints the merged report.
+     */
+    private void executeJobs(List<RepairJob> jobs, final Map<RepairJob, String> fingerprints, final List<URL> nopolClasspath) throws MojoExecutionException {
+        int nbWorkers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        int timeout = jobTimeout > 0 ? jobTimeout : maxTime;
+        // one extra minute for the JVM startup and the model building before Nopol checks its own budget
+        final long timeoutInMillis = TimeUnit.MINUTES.toMillis(timeout + 1);
+        final ForkedRepairLauncher launcher = newLauncher(nopolClasspath, false);
 
+        System.out.println("Running " + jobs.size() + " repair jobs with " + nbWorkers + " workers.");
+        long start = System.currentTimeMillis();
+
+        ExecutorService executor = Executors.newFixedThreadPool(nbWorkers);
+        List<Future<RepairOutcome>> futures = new ArrayList<>();
         try {
-            setGzoltarDebug(true);
-            System.setProperty("java.class.path", sb.toString());
-            NopolContext nopolContext = createNopolContext(failingTestCases, dependencies, sourceFolders);
-            final NoPol nopol = new NoPol(nopolContext);
-            NopolResult result = nopol.build();
-            printResults(result);
+            for (final RepairJob job : jobs) {
+                job.setMaxTimeInMinutes(timeout);
+                getTimeouts().apply(job, reactorTestResults);
+                futures.add(executor.submit(new Callable<RepairOutcome>() {
+                    @Override
+                    public RepairOutcome call() throws Exception {
+                        String fingerprint = fingerprints.get(job);
+                        RepairOutcome outcome = getCachedOutcome(fingerprint, job, nopolClasspath);
+                        if (outcome == null) {
+                            outcome = launch(launcher, job, timeoutInMillis);
+                            validatePatches(job, outcome, nopolClasspath);
+                            cacheOutcome(fingerprint, job, outcome);
+                        }
+                        return outcome;
+                    }
+                }));
+            }
+
+            RepairMetrics.Phase phase = metrics.start("repair");
+            List<RepairOutcome> outcomes = new ArrayList<>();
+            for (Future<RepairOutcome> future : futures) {
+                outcomes.add(future.get());
+            }
+            phase.stop();
+            printResults(outcomes, System.currentTimeMillis() - start);
+            writeResults(jobs, outcomes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Parallel repair interrupted", e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Parallel repair failed", e.getCause());
         } finally {
-            System.setProperty("java.class.path", systemClasspath);
+            executor.shutdownNow();
         }
     }
 
-    private void printResults(NopolResult result) {
-        System.out.println("Nopol executed after: "+result.getDurationInMilliseconds()+" ms.");
-        System.out.println("Status: "+result.getNopolStatus());
-        System.out.println("Angelic values: "+result.getNbAngelicValues());
-        System.out.println("Nb statements: "+result.getNbStatements());
-        if (result.getPatches().size() > 0) {
-            for (Patch p : result.getPatches()) {
-                System.out.println("Obtained patch: "+p.asString());
+    /**
+     * Runs the job in a forked worker. With <code>changedSince</code>, the job first runs on the source files
+     * changed since the base revision, then on all its sources if it found no patch. With <code>lazySources</code>,
+     * all its sources are the units of its suspicious statements, unless the repair of these units fails.
+     * The attempts share the timeout, a fallback only gets the time left and is skipped when none is left.
+     */
+    RepairOutcome launch(ForkedRepairLauncher launcher, RepairJob job, long timeoutInMillis) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutInMillis;
+        RepairOutcome outcome = null;
+        RepairJob changesJob = restrictToChanges(job, launcher.getWorkDirectory());
+        if (changesJob != null) {
+            outcome = launcher.launch(changesJob, timeoutInMillis);
+            if (outcome.hasPatches()) {
+                return outcome;
+            }
+            System.out.println(job.getName() + ": no patch in the changed sources (" + outcome.getStatus() + "), repairing with all the sources.");
+        }
+        RepairJob unitsJob = restrictToSuspiciousUnits(job, launcher.getWorkDirectory());
+        if (unitsJob != null && deadline > System.currentTimeMillis()) {
+            outcome = launcher.launch(unitsJob, deadline - System.currentTimeMillis());
+            if (!"ERROR".equals(outcome.getStatus())) {
+                return outcome;
             }
+            System.out.println(job.getName() + ": the repair of the suspicious units failed, repairing with all the sources.");
         }
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            System.out.println(job.getName() + ": no time left to repair with all the sources.");
+            return outcome != null ? outcome : RepairOutcome.failure(job.getName(), "TIMEOUT", timeoutInMillis, "No time left after " + timeoutInMillis + " ms");
+        }
+        return launcher.launch(job, remaining);
     }
 
-    private NopolContext createNopolContext(List<String> failingTestCases,
-            List<URL> dependencies, List<File> sourceFolders) {
-        NopolContext nopolContext = new NopolContext(sourceFolders.toArray(new File[0]), dependencies.toArray(new URL[0]), failingTestCases.toArray(new String[0]), Collections.<String>emptyList());
-        nopolContext.setComplianceLevel(getComplianceLevel());
-        nopolContext.setTimeoutTestExecution(300);
-        nopolContext.setMaxTimeEachTypeOfFixInMinutes(15);
-        nopolContext.setMaxTimeInMinutes(maxTime);
-        nopolContext.setLocalizer(this.resolveLocalizer());
-        nopolContext.setSynthesis(this.resolveSynthesis());
-        nopolContext.setType(this.resolveType());
-        nopolContext.setOnlyOneSynthesisResult(true);
-        nopolContext.setJson(true);
+    /**
+     * @return the job, under the same name, on a copy of the compilation units of its suspicious statements,
+     * null if <code>lazySources</code> is not set, if the statements are unknown or if no unit holds them
+     */
+    private RepairJob restrictToSuspiciousUnits(RepairJob job, File workDirectory) {
+        if (!lazySources) {
+            return null;
+        }
+        Map<String, Double> ranking;
+        synchronized (suspiciousStatements) {
+            ranking = suspiciousStatements.get(job.getName());
+        }
+        if (ranking == null || ranking.isEmpty()) {
+            return null;
+        }
+        try {
+            SourceIndex index = new SourceIndex(new File(cacheDirectory, "sources"), job.getComplianceLevel());
+            List<File> units = index.getUnits(job.getSourceFolders(), ranking.keySet());
+            String name = job.getName() + "-units";
+            File[] sourceView = SourceView.create(job.getSourceFolders(), units, new File(workDirectory, name.replaceAll("[^A-Za-z0-9._-]", "_")));
+            if (sourceView.length == 0) {
+                return null;
+            }
+            System.out.println(job.getName() + ": " + units.size() + " compilation units hold the " + ranking.size()
+                    + " suspicious statements, " + index.getNbParsedUnits() + " units indexed again.");
+            return job.forSourceFolders(job.getName(), sourceView);
+        } catch (IOException e) {
+            System.err.println("Unable to index the compilation units, repairing with all the sources: " + e.getMessage());
+            return null;
+        }
+    }
 
-        NopolContext.NopolSolver solver = this.resolveSolver();
-        nopolContext.setSolver(solver);
+    /**
+     * @return the job on a copy of its source files changed since <code>changedSince</code>, null if it is not set,
+     * if no source file changed or if the changes cannot be read
+     */
+    private RepairJob restrictToChanges(RepairJob job, File workDirectory) {
+        if (changedSince == null || changedSince.trim().isEmpty()) {
+            return null;
+        }
+        File gitDirectory = null;
+        for (File sourceFolder : job.getSourceFolders()) {
+            if (sourceFolder.isDirectory()) {
+                gitDirectory = sourceFolder;
+                break;
+            }
+        }
+        if (gitDirectory == null) {
+            return null;
+        }
+        try {
+            ChangedLines changes = ChangedLines.compute(gitDirectory, changedSince.trim());
+            String name = job.getName() + "-changes";
+            File[] sourceView = changes.createSourceView(job.getSourceFolders(), new File(workDirectory, name.replaceAll("[^A-Za-z0-9._-]", "_")));
+            if (sourceView.length == 0) {
+                System.out.println(job.getName() + ": no source file changed since " + changedSince + ", repairing with all the sources.");
+                return null;
+            }
+            System.out.println(job.getName() + ": " + changes.getNbChangedLines() + " lines changed since " + changedSince
+                    + " in " + changes.getChangedFiles().size() + " files, repairing their source files first.");
+            return job.forSourceFolders(name, sourceView);
+        } catch (IOException e) {
+            System.err.println("Unable to read the changes since " + changedSince + ", repairing with all the sources: " + e.getMessage());
+            return null;
+        }
+    }
 
-        if (nopolContext.getSynthesis() == NopolContext.NopolSynthesis.SMT) {
-            if (solver == NopolContext.NopolSolver.Z3) {
-                String z3Path = this.loadZ3AndGivePath();
-                SolverFactory.setSolver(solver, z3Path);
-                nopolContext.setSolverPath(z3Path);
-            } else {
-                SolverFactory.setSolver(solver, null);
+    /**
+     * Adds the passing tests covering the statements executed by the failing tests of the job, when enabled.
+     * The coverage is also computed for <code>lazySources</code>, which needs the suspicious statements.
+     *
+     * @see TestCoverage#selectTests(RepairJob, List)
+     */
+    private RepairJob selectCoveringTests(RepairJob job, List<TestCaseResult> testResults, List<URL> nopolClasspath) {
+        if (!selectCoveringTests && !lazySources) {
+            return job;
+        }
+        RepairMetrics.Phase phase = metrics.start("coverage");
+        TestCoverage coverage = getTestCoverage(job, testResults, nopolClasspath);
+        phase.stop();
+        if (coverage == null || !selectCoveringTests) {
+            return job;
+        }
+        RepairJob selected = coverage.selectTests(job, testResults);
+        getTimeouts().apply(selected, testResults);
+        System.out.println(job.getName() + ": " + (selected.getFailingTests().length - job.getFailingTests().length)
+                + " passing test classes covering the suspicious statements will validate the patches.");
+        return selected;
+    }
+
+    /**
+     * The coverage of all the test classes of the results, cached by sources and classpath in the result directory.
+     * Only the outdated test classes of the cached coverage are run.
+     *
+     * @see TestCoverage#getOutdatedTestClasses(java.util.Collection, URL[])
+     */
+    private TestCoverage getTestCoverage(RepairJob job, List<TestCaseResult> testResults, List<URL> nopolClasspath) {
+        Set<String> testClasses = new TreeSet<>();
+        for (TestCaseResult testResult : testResults) {
+            testClasses.add(testResult.getClassName());
+        }
+        String key = Hashes.sha256(Arrays.toString(job.getSourceFolders()) + ":" + Arrays.toString(job.getClasspath()));
+        File coverageDirectory = new File(resultDirectory, "coverage");
+        File coverageFile = new File(coverageDirectory, key + ".coverage");
+        TestCoverage coverage = new TestCoverage();
+        if (coverageFile.exists()) {
+            try {
+                coverage = RepairWorker.readObject(coverageFile, TestCoverage.class);
+            } catch (IOException | ClassNotFoundException e) {
+                coverageFile.delete();
+            }
+        }
+
+        Set<String> outdated = coverage.getOutdatedTestClasses(testClasses, job.getClasspath());
+        if (!outdated.isEmpty()) {
+            System.out.println("Computing the coverage of " + outdated.size() + " of " + testClasses.size() + " test classes.");
+            ForkedRepairLauncher launcher = newLauncher(nopolClasspath, false);
+            CoverageWorker.Request request = new CoverageWorker.Request(new File(outputDirectory, "coverage"),
+                    job.getSourceFolders(), job.getClasspath(), outdated.toArray(new String[0]), gzoltarDebug);
+            try {
+                TestCoverage update = launcher.computeCoverage(request, job.getName(), TimeUnit.MINUTES.toMillis(maxTime));
+                if (update == null) {
+                    return null;
+                }
+                coverage.update(update, outdated, job.getClasspath());
+                if (coverageDirectory.exists() || coverageDirectory.mkdirs()) {
+                    File tmpFile = new File(coverageFile.getPath() + ".tmp");
+                    RepairWorker.writeObject(tmpFile, coverage);
+                    if (!tmpFile.renameTo(coverageFile)) {
+                        coverageFile.delete();
+                        tmpFile.renameTo(coverageFile);
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        } else {
+            System.out.println("Coverage of the " + testClasses.size() + " test classes unchanged since the previous run.");
+        }
+        Map<String, Double> suspiciousStatements = coverage.getSuspiciousStatements(testResults);
+        writeSuspiciousStatements(suspiciousStatements, new File(coverageDirectory, key + ".suspicious"));
+        job.setNbSuspiciousStatements(suspiciousStatements.size());
+        synchronized (this.suspiciousStatements) {
+            this.suspiciousStatements.put(job.getName(), suspiciousStatements);
+        }
+        return coverage;
+    }
+
+    /**
+     * Writes one statement per line, most suspicious first, with its suspiciousness.
+     */
+    private static void writeSuspiciousStatements(Map<String, Double> suspiciousStatements, File file) {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Double> entry : suspiciousStatements.entrySet()) {
+                writer.write(String.format(Locale.ROOT, "%.6f %s%n", entry.getValue(), entry.getKey()));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if (!tmpFile.renameTo(file)) {
+            file.delete();
+            tmpFile.renameTo(file);
+        }
+    }
+
+    /**
+     * Validates and ranks the candidate patches of the outcome when several are requested or when they must be verified,
+     * and writes their diffs.
+     *
+     * @see PatchValidator
+     */
+    void validatePatches(RepairJob job, RepairOutcome outcome, List<URL> nopolClasspath) {
+        validatePatches(job, outcome, nopolClasspath, project.getBasedir(), new File(resultDirectory, "patches"));
+    }
+
+    /**
+     * @param baseDirectory the directory the paths of the diffs are relative to, the one of the repaired project
+     * @param patchesDirectory the directory of the diffs
+     */
+    void validatePatches(RepairJob job, RepairOutcome outcome, List<URL> nopolClasspath, File baseDirectory, File patchesDirectory) {
+        List<PatchCandidate> candidates = outcome.getCandidates();
+        if (job.getMaxPatches() <= 1 && !verifyPatches && job.getTestMethodsToValidate().isEmpty() || candidates.isEmpty()) {
+            return;
+        }
+        if (candidates.size() > job.getMaxPatches()) {
+            candidates = candidates.subList(0, job.getMaxPatches());
+        }
+        System.out.println("Validating " + candidates.size() + " candidate patches of " + job.getName() + " with at most " + getNbWorkers() + " workers.");
+        RepairMetrics.Phase phase = metrics.start("validation");
+        ForkedRepairLauncher launcher = newLauncher(nopolClasspath, false);
+        PatchValidator validator = new PatchValidator(launcher, baseDirectory, new File(cacheDirectory, "sources"), getValidationSlots(), TimeUnit.MINUTES.toMillis(validationTime));
+        try {
+            outcome.setValidations(validator.validate(job, new ArrayList<>(candidates)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            phase.stop();
+        }
+        writeDiffs(job, outcome.getValidations(), patchesDirectory);
+    }
+
+    private int getNbWorkers() {
+        return workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return the permits of the validation workers, shared by the jobs validated concurrently
+     */
+    private synchronized Semaphore getValidationSlots() {
+        if (validationSlots == null) {
+            validationSlots = new Semaphore(getNbWorkers());
+        }
+        return validationSlots;
+    }
+
+    /**
+     * Writes the diff of each validated patch in <code>&lt;job&gt;-&lt;rank&gt;.diff</code> of the patches directory,
+     * in the encoding of the source files so that it applies to them.
+     */
+    private void writeDiffs(RepairJob job, List<PatchValidation> validations, File patchesDirectory) {
+        if (!patchesDirectory.exists() && !patchesDirectory.mkdirs()) {
+            System.err.println("Unable to create " + patchesDirectory);
+            return;
+        }
+        for (int i = 0; i < validations.size(); i++) {
+            String diff = validations.get(i).getDiff();
+            if (diff == null) {
+                continue;
+            }
+            File diffFile = new File(patchesDirectory, job.getName().replaceAll("[^A-Za-z0-9._-]", "_") + "-" + (i + 1) + ".diff");
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(diffFile), job.getSourceCharset())) {
+                writer.write(diff);
+            } catch (IOException e) {
+                e.printStackTrace();
             }
         }
-        return nopolContext;
+        System.out.println("Diffs of the patches of " + job.getName() + " written in " + patchesDirectory);
     }
 
-    private void setGzoltarDebug(boolean debugValue) {
+    RepairTimeouts getTimeouts() {
+        return new RepairTimeouts(testTimeoutFactor, minTestTimeout, maxTestTimeout);
+    }
+
+    private RepairResultCache getResultCache() {
+        return new RepairResultCache(new File(resultDirectory, "cache"),
+                cacheMaxSize * 1024L * 1024L, TimeUnit.DAYS.toMillis(cacheMaxAge));
+    }
+
+    /**
+     * @return the fingerprint of the sources and classpath of the job, null if the cache is disabled
+     */
+    private String getInputsFingerprint(RepairJob job) {
+        if (!useCache) {
+            return null;
+        }
         try {
-            Field debug = com.gzoltar.core.agent.Launcher.class.getDeclaredField("debug");
-            debug.setAccessible(true);
-            debug.setBoolean(null, debugValue);
-        } catch (NoSuchFieldException | IllegalAccessException e) {
+            String fingerprint = RepairResultCache.fingerprint(job.getSourceFolders(), job.getClasspath());
+            // the sources repaired first depend on the base revision
+            return changedSince == null || changedSince.trim().isEmpty() ? fingerprint : Hashes.sha256(fingerprint + ":" + changedSince.trim());
+        } catch (IOException e) {
             e.printStackTrace();
+            return null;
         }
     }
 
+    /**
+     * @return the cached outcome of the job, null if none. An outcome cached without validations, e.g. by a run without
+     * <code>verifyPatches</code>, has its patches validated if needed, and is cached again with the validations.
+     */
+    private RepairOutcome getCachedOutcome(String fingerprint, RepairJob job, List<URL> nopolClasspath) {
+        if (fingerprint == null) {
+            return null;
+        }
+        RepairOutcome outcome = getResultCache().get(RepairResultCache.keyOf(fingerprint, job));
+        if (outcome != null) {
+            System.out.println("Reusing the cached result of " + job.getName() + ", sources, classpath, tests and configuration are unchanged.");
+            if (outcome.getValidations() == null) {
+                validatePatches(job, outcome, nopolClasspath);
+                if (outcome.getValidations() != null) {
+                    cacheOutcome(fingerprint, job, outcome);
+                }
+            }
+        }
+        return outcome;
+    }
+
+    private void cacheOutcome(String fingerprint, RepairJob job, RepairOutcome outcome) {
+        if (fingerprint != null) {
+            getResultCache().put(RepairResultCache.keyOf(fingerprint, job), outcome);
+        }
+    }
+
+    private ForkedRepairLauncher newLauncher(List<URL> nopolClasspath, boolean inheritOutput) {
+        return newLauncher(nopolClasspath, new File(outputDirectory, "jobs"), inheritOutput, new ArrayList<String>());
+    }
+
+    /**
+     * @return a launcher of workers with the plugin and engine classpath, sharing their classes when enabled
+     */
+    ForkedRepairLauncher newLauncher(List<URL> nopolClasspath, File workDirectory, boolean inheritOutput, List<String> jvmArguments) {
+        ForkedRepairLauncher launcher = new ForkedRepairLauncher(getWorkerClasspath(nopolClasspath), workDirectory, inheritOutput, jvmArguments);
+        if (classDataSharing) {
+            launcher.enableClassDataSharing(new File(cacheDirectory, "cds"));
+        }
+        return launcher;
+    }
+
+    /**
+     * The classpath of a forked worker: the plugin itself and the Nopol engine.
+     */
+    List<URL> getWorkerClasspath(List<URL> nopolClasspath) {
+        List<URL> classpath = new ArrayList<>();
+        ClassLoader classLoader = getClass().getClassLoader();
+        if (classLoader instanceof URLClassLoader) {
+            Collections.addAll(classpath, ((URLClassLoader) classLoader).getURLs());
+        }
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            try {
+                classpath.add(new File(entry).toURI().toURL());
+            } catch (MalformedURLException e) {
+                e.printStackTrace();
+            }
+        }
+        classpath.addAll(nopolClasspath);
+        return classpath;
+    }
+
+    /**
+     * Writes the outcomes, the phases of the run and their test counts in the result directory.
+     */
+    private void writeResults(List<RepairJob> jobs, List<RepairOutcome> outcomes) {
+        metrics.recordPeakHeap();
+        RepairReport report = new RepairReport(resultDirectory, startTime);
+        for (int i = 0; i < jobs.size(); i++) {
+            report.add(outcomes.get(i), countTestMethods(jobs.get(i)));
+        }
+        try {
+            report.write(metrics, System.currentTimeMillis() - startTime);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private int countTestMethods(RepairJob job) {
+        return countTestMethods(job, reactorTestResults);
+    }
+
+    /**
+     * @return the number of test methods of the failing test classes of the job that the engine executes
+     */
+    static int countTestMethods(RepairJob job, List<TestCaseResult> testResults) {
+        Set<String> classes = new HashSet<>(job.getFailingTestList());
+        Set<String> ignored = new HashSet<>(job.getTestMethodsToIgnore());
+        int count = 0;
+        for (TestCaseResult testResult : testResults) {
+            if (classes.contains(testResult.getClassName()) && !ignored.contains(testResult.getId())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    void printResults(RepairOutcome result) {
+        System.out.println("Nopol executed after: "+result.getDurationInMilliseconds()+" ms.");
+        System.out.println("Status: "+result.getStatus());
+        System.out.println("Angelic values: "+result.getNbAngelicValues());
+        System.out.println("Nb statements: "+result.getNbStatements());
+        if (result.getError() != null) {
+            System.out.println("Error: "+result.getError());
+        }
+        if (result.getValidations() != null) {
+            for (int i = 0; i < result.getValidations().size(); i++) {
+                System.out.println("Candidate patch #" + (i + 1) + ": " + result.getValidations().get(i));
+            }
+        } else if (result.getPatches().size() > 0) {
+            for (String p : result.getPatches()) {
+                System.out.println("Obtained patch: "+p);
+            }
+        }
+    }
+
+    private void printResults(List<RepairOutcome> outcomes, long durationInMilliseconds) {
+        int nbPatched = 0;
+        for (RepairOutcome outcome : outcomes) {
+            System.out.println("----- " + outcome.getJobName());
+            printResults(outcome);
+            if (outcome.hasPatches()) {
+                nbPatched++;
+            }
+        }
+        System.out.println("-----");
+        System.out.println(outcomes.size() + " repair jobs executed after: " + durationInMilliseconds + " ms, " + nbPatched + " with patches.");
+    }
+
+    RepairJob createRepairJob(String name, List<TestCaseResult> testResults,
+            List<URL> dependencies, List<File> sourceFolders) {
+        List<String> failingTestCases = getFailingTests(testResults);
+        RepairJob job = new RepairJob(name, sourceFolders.toArray(new File[0]), dependencies.toArray(new URL[0]), failingTestCases.toArray(new String[0]));
+        List<String> passingTestMethods = getPassingTestMethods(testResults, failingTestCases);
+        job.setTestMethodsToIgnore(passingTestMethods);
+        if (validateWithPassingTests) {
+            System.out.println(passingTestMethods.size() + " passing test methods of the failing test classes will only validate the patches.");
+            job.setTestMethodsToValidate(passingTestMethods);
+        } else {
+            System.out.println(passingTestMethods.size() + " passing test methods of the failing test classes will not be executed.");
+        }
+        job.setComplianceLevel(getComplianceLevel());
+        job.setSourceEncoding(sourceEncoding);
+        job.setMaxTimeInMinutes(maxTime);
+        job.setLocalizer(this.resolveLocalizer());
+        job.setSynthesis(this.resolveSynthesis());
+        job.setType(this.resolveType());
+        getTimeouts().apply(job, testResults);
+        System.out.println("Test execution timeout: " + job.getTimeoutTestExecution() + " s, time for each type of fix: " + job.getMaxTimeEachTypeOfFixInMinutes() + " min.");
+        job.setOnlyOneSynthesisResult(maxPatches <= 1);
+        job.setMaxPatches(Math.max(1, maxPatches));
+        job.setGzoltarDebug(gzoltarDebug);
+        job.setProgressIntervalInSeconds(progressInterval);
+
+        NopolContext.NopolSolver solver = this.resolveSolver();
+        job.setSolver(solver);
+
+        if (job.getSynthesis() == NopolContext.NopolSynthesis.SMT && solver == NopolContext.NopolSolver.Z3) {
+            RepairMetrics.Phase phase = metrics.start("solver-setup");
+            job.setSolverPath(this.loadZ3AndGivePath());
+            phase.stop();
+        }
+        return job;
+    }
+
     private int getComplianceLevel() {
         int complianceLevel = 7;
         if (!source.equals("-1")) {
@@ -231,122 +1297,225 @@ public class NopolMojo extends AbstractMojo {
         boolean isMac = System.getProperty("os.name").toLowerCase().contains("mac");
 
         String resourcePath = (isMac)? "z3/z3_for_mac" : "z3/z3_for_linux";
-        InputStream in = this.getClass().getClassLoader().getResourceAsStream(resourcePath);
 
         try {
-            Path tempFilePath = Files.createTempFile("nopol", "z3");
-            byte[] content = ByteStreams.toByteArray(in);
-            Files.write(tempFilePath, content);
-
-            tempFilePath.toFile().setExecutable(true);
-            return tempFilePath.toString();
+            SolverBinaryCache solverCache = new SolverBinaryCache(new File(cacheDirectory, "z3"));
+            return solverCache.extract(this.getClass().getClassLoader(), resourcePath).getAbsolutePath();
         } catch (IOException e) {
             e.printStackTrace();
         }
         return null;
     }
 
-    private File getSurefireReportsDirectory( MavenProject subProject ) {
+    private static File getSurefireReportsDirectory( MavenProject subProject ) {
         String buildDir = subProject.getBuild().getDirectory();
         return new File( buildDir + "/surefire-reports" );
     }
 
-    private List<String> getFailingTests() {
-        List<String> result = new ArrayList<>();
+    static List<TestCaseResult> getTestResults(List<MavenProject> projects) {
+        List<File> surefireReportsDirectories = new ArrayList<>();
+        for (MavenProject mavenProject : projects) {
+            surefireReportsDirectories.add(getSurefireReportsDirectory(mavenProject));
+        }
 
-        for (MavenProject mavenProject : reactorProjects) {
-            File surefireReportsDirectory = getSurefireReportsDirectory(mavenProject);
-            SurefireReportParser parser = new SurefireReportParser(Collections.singletonList(surefireReportsDirectory), Locale.ENGLISH, new NullConsoleLogger());
+        SurefireReportScanner scanner = new SurefireReportScanner(Runtime.getRuntime().availableProcessors());
+        try {
+            return scanner.scan(surefireReportsDirectories);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
 
-            try {
-                List<ReportTestSuite> testSuites = parser.parseXMLReportFiles();
-                for (ReportTestSuite reportTestSuite : testSuites) {
-                    if (reportTestSuite.getNumberOfErrors()+reportTestSuite.getNumberOfFailures() > 0) {
-                        result.add(reportTestSuite.getFullClassName());
-                    }
-                }
-            } catch (MavenReportException e) {
-                e.printStackTrace();;
-            }
+    /**
+     * @return the test results of each module, read from its own surefire reports, in the order of the modules
+     */
+    static Map<MavenProject, List<TestCaseResult>> getModuleTestResults(List<MavenProject> modules) {
+        Map<MavenProject, List<TestCaseResult>> result = new LinkedHashMap<>();
+        for (MavenProject module : modules) {
+            result.put(module, getTestResults(Collections.singletonList(module)));
+        }
+        return result;
+    }
 
+    /**
+     * @return the parameters, among the ones selecting how a single job runs, that are set to something else than
+     * a forked worker run by this Maven JVM
+     */
+    static List<String> getUnsupportedParameters(boolean fork, boolean daemon, String nodes, String portfolio) {
+        List<String> result = new ArrayList<>();
+        if (!fork) {
+            result.add("fork=false");
+        }
+        if (daemon) {
+            result.add("daemon");
+        }
+        if (nodes != null && !nodes.trim().isEmpty()) {
+            result.add("nodes");
         }
+        if (portfolio != null && !portfolio.trim().isEmpty()) {
+            result.add("portfolio");
+        }
+        return result;
+    }
 
+    /**
+     * @return the classes containing at least one failing test method, in report order
+     */
+    static List<String> getFailingTests(List<TestCaseResult> testResults) {
+        Set<String> result = new LinkedHashSet<>();
+        for (TestCaseResult testResult : testResults) {
+            if (testResult.isFailing()) {
+                result.add(testResult.getClassName());
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * @return the passing test methods, in the <code>Class#method</code> form, of the given test classes
+     */
+    static List<String> getPassingTestMethods(List<TestCaseResult> testResults, List<String> testClasses) {
+        Set<String> classes = new HashSet<>(testClasses);
+        List<String> result = new ArrayList<>();
+        for (TestCaseResult testResult : testResults) {
+            if (!testResult.isFailing() && classes.contains(testResult.getClassName())) {
+                result.add(testResult.getId());
+            }
+        }
         return result;
     }
 
-    private List<URL> getNopolClasspath() {
-        List<URL> classpath = new ArrayList<>();
+    /**
+     * The Nopol engine and its runtime dependencies, resolved transitively by Maven.
+     * The result is persisted in a manifest keyed by the checksum of the Nopol POM, with the checksums of the POMs
+     * of the resolved artifacts, so that later runs do not resolve anything while these POMs are unchanged.
+     */
+    List<URL> getNopolClasspath() {
         Artifact artifactPom = artifactFactory.createArtifact("fr.inria.lille.adam","nopol", HARDCODED_NOPOL_VERSION, null, "pom");
-        Artifact artifactJar = artifactFactory.createArtifact("fr.inria.lille.adam","nopol", HARDCODED_NOPOL_VERSION, null, "jar");
         File filePom = new File(localRepository.getBasedir() + "/" + localRepository.pathOf(artifactPom));
-        File fileJar = new File(localRepository.getBasedir() + "/" + localRepository.pathOf(artifactJar));
+        ClasspathManifest manifest = new ClasspathManifest(new File(cacheDirectory, "classpath"));
 
-        if (filePom.exists()) {
-            MavenXpp3Reader pomReader = new MavenXpp3Reader();
-            try (FileReader reader = new FileReader(filePom)) {
-                Model model = pomReader.read(reader);
-
-                List<Dependency> dependencies = model.getDependencies();
-                for (Dependency dependency : dependencies) {
-                    if (!dependency.isOptional() && dependency.getScope() == null && dependency.getVersion() != null) {
-                        Artifact artifact = artifactFactory.createArtifact(dependency.getGroupId(),dependency.getArtifactId(), dependency.getVersion(), null, dependency.getType());
-                        File jarFile = new File(localRepository.getBasedir() + "/" + localRepository.pathOf(artifact));
-
-                        classpath.add(jarFile.toURI().toURL());
-                    } else if ("system".equals(dependency.getScope())) {
-                        String path = dependency.getSystemPath().replace("${java.home}", System.getProperty("java.home"));
-                        File jarFile = new File(path);
-                        if (jarFile.exists()) {
-                            classpath.add(jarFile.toURI().toURL());
-                        }
-                    }
+        String key = getNopolClasspathKey(filePom);
+        if (key != null) {
+            List<URL> classpath = manifest.load(key);
+            if (classpath != null) {
+                return classpath;
+            }
+        }
+
+        List<URL> classpath = new ArrayList<>();
+        Artifact artifactJar = repositorySystem.createArtifact("fr.inria.lille.adam", "nopol", HARDCODED_NOPOL_VERSION, "jar");
+        ArtifactResolutionRequest request = new ArtifactResolutionRequest()
+                .setArtifact(artifactJar)
+                .setResolveRoot(true)
+                .setResolveTransitively(true)
+                .setResolutionFilter(new ScopeArtifactFilter(Artifact.SCOPE_RUNTIME))
+                .setLocalRepository(localRepository)
+                .setRemoteRepositories(remoteRepositories);
+        ArtifactResolutionResult result = repositorySystem.resolve(request);
+        if (result.hasExceptions()) {
+            for (Exception e : result.getExceptions()) {
+                System.err.println("Error occured, dependency will be passed: "+e.getMessage());
+            }
+        }
+        List<File> poms = new ArrayList<>();
+        poms.add(filePom);
+        for (Artifact artifact : result.getArtifacts()) {
+            Artifact pom = artifactFactory.createArtifact(artifact.getGroupId(), artifact.getArtifactId(), artifact.getBaseVersion(), null, "pom");
+            poms.add(new File(localRepository.getBasedir() + "/" + localRepository.pathOf(pom)));
+            if (artifact.getFile() != null && artifact.getFile().exists()) {
+                try {
+                    classpath.add(artifact.getFile().toURI().toURL());
+                } catch (MalformedURLException e) {
+                    e.printStackTrace();
                 }
-                classpath.add(fileJar.toURI().toURL());
-            } catch (Exception e) {
+            }
+        }
+        File toolsJar = getToolsJar();
+        if (toolsJar != null) {
+            try {
+                classpath.add(toolsJar.toURI().toURL());
+            } catch (MalformedURLException e) {
                 e.printStackTrace();
-                System.err.println("Error occured, dependency will be passed: "+e.getMessage());
             }
         }
+        classpath = ClasspathManifest.deduplicate(classpath);
+
+        key = getNopolClasspathKey(filePom);
+        if (key != null && result.isSuccess() && !result.hasExceptions()) {
+            manifest.store(key, classpath, poms);
+        }
         return classpath;
     }
 
-    private List<URL> getClasspath() {
-        List<URL> classpath = new ArrayList<>();
-        for (MavenProject mavenProject : reactorProjects) {
+    private String getNopolClasspathKey(File filePom) {
+        if (!filePom.exists()) {
+            return null;
+        }
+        try {
+            return Hashes.sha256(HARDCODED_NOPOL_VERSION + ":" + localRepository.getBasedir() + ":"
+                    + ClasspathManifest.checksum(filePom));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static File getToolsJar() {
+        File jarFile = new File(System.getProperty("java.home") + "/../lib/tools.jar");
+        return jarFile.exists() ? jarFile : null;
+    }
+
+    /**
+     * The test classpath of the projects followed by the Nopol jar and tools.jar.
+     */
+    List<URL> getClasspath(List<MavenProject> projects) {
+        List<File> extraEntries = new ArrayList<>();
+        Artifact artifactJar = artifactFactory.createArtifact("fr.inria.lille.adam","nopol", HARDCODED_NOPOL_VERSION, null, "jar");
+        File fileJar = new File(localRepository.getBasedir() + "/" + localRepository.pathOf(artifactJar));
+        if (fileJar.exists()) {
+            extraEntries.add(fileJar);
+        }
+        File toolsJar = getToolsJar();
+        if (toolsJar != null) {
+            extraEntries.add(toolsJar);
+        }
+        return getClasspath(projects, extraEntries);
+    }
+
+    /**
+     * The test classpath of the projects then the extra entries, without duplicates, in reactor order.
+     */
+    static List<URL> getClasspath(List<MavenProject> projects, List<File> extraEntries) {
+        Set<String> classpath = new LinkedHashSet<>();
+        for (MavenProject mavenProject : projects) {
             try {
                 for (String s : (List<String>)mavenProject.getTestClasspathElements()) {
-                    File f = new File(s);
-                    classpath.add(f.toURI().toURL());
+                    classpath.add(new File(s).getAbsolutePath());
                 }
             } catch (DependencyResolutionRequiredException e) {
                 continue;
-            } catch (MalformedURLException e) {
-                e.printStackTrace();
             }
         }
+        for (File extraEntry : extraEntries) {
+            classpath.add(extraEntry.getAbsolutePath());
+        }
 
-        Artifact artifactJar = artifactFactory.createArtifact("fr.inria.lille.adam","nopol", HARDCODED_NOPOL_VERSION, null, "jar");
-        File fileJar = new File(localRepository.getBasedir() + "/" + localRepository.pathOf(artifactJar));
-
-        try {
-            if (fileJar.exists()) {
-                classpath.add(fileJar.toURI().toURL());
-            }
-            String path = System.getProperty("java.home") + "/../lib/tools.jar";
-            File jarFile = new File(path);
-            if (jarFile.exists()) {
-                classpath.add(jarFile.toURI().toURL());
+        List<URL> result = new ArrayList<>();
+        for (String entry : classpath) {
+            try {
+                result.add(new File(entry).toURI().toURL());
+            } catch (MalformedURLException e) {
+                e.printStackTrace();
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("Error occured, dependency will be passed: "+e.getMessage());
         }
-        return new ArrayList<>(classpath);
+        return result;
     }
 
-    private List<File> getSourceFolders() {
+    static List<File> getSourceFolders(List<MavenProject> projects) {
         Set<File> sourceFolder = new HashSet<>();
-        for (MavenProject mavenProject : reactorProjects) {
+        for (MavenProject mavenProject : projects) {
             File sourceDirectory = new File(mavenProject.getBuild().getSourceDirectory());
             if (sourceDirectory.exists()) {
                 sourceFolder.add(sourceDirectory);
@@ -0,0 +1,190 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import fr.inria.lille.repair.common.patch.Patch;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serializable location and expression of a patch of the engine, enough to apply it to the source file
+ * outside of the engine: a conditional patch replaces the condition of the <code>if</code> of its line,
+ * a precondition patch guards the statement starting on its line.
+ */
+public class PatchCandidate implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Pattern IF = Pattern.compile("\\bif\\s*\\(");
+
+    private final String className;
+    private final int lineNumber;
+    private final String type;
+    private final String expression;
+
+    public PatchCandidate(String className, int lineNumber, String type, String expression) {
+        this.className = className;
+        this.lineNumber = lineNumber;
+        this.type = type;
+        this.expression = expression;
+    }
+
+    public static PatchCandidate from(Patch patch) {
+        return new PatchCandidate(patch.getRootClassName(), patch.getLineNumber(), String.valueOf(patch.getType()), patch.asString());
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * @return the size of the patch, the length of its expression without blanks
+     */
+    public int getSize() {
+        return expression.replaceAll("\\s", "").length();
+    }
+
+    /**
+     * @return the name of the top level class of the compilation unit of the patch
+     */
+    public String getSourceClassName() {
+        return className.contains("$") ? className.substring(0, className.indexOf('$')) : className;
+    }
+
+    /**
+     * @return the path of the source file of the class relative to its source folder
+     */
+    public String getSourcePath() {
+        return getSourceClassName().replace('.', File.separatorChar) + ".java";
+    }
+
+    /**
+     * @return the source with the patch applied
+     * @throws IllegalArgumentException if the line of the patch cannot hold it
+     */
+    public String apply(String source) {
+        int lineStart = getLineStart(source, lineNumber);
+        int lineEnd = source.indexOf('\n', lineStart);
+        if (lineEnd < 0) {
+            lineEnd = source.length();
+        }
+        if ("CONDITIONAL".equals(type)) {
+            int conditionStart = getCondition(source, lineStart, lineEnd);
+            if (conditionStart < 0) {
+                throw new IllegalArgumentException("No if statement at line " + lineNumber + " of " + className);
+            }
+            int conditionEnd = getClosingParenthesis(source, conditionStart);
+            return source.substring(0, conditionStart) + expression + source.substring(conditionEnd);
+        }
+        if ("PRECONDITION".equals(type)) {
+            int statementStart = lineStart;
+            while (statementStart < lineEnd && Character.isWhitespace(source.charAt(statementStart))) {
+                statementStart++;
+            }
+            if (statementStart == lineEnd) {
+                throw new IllegalArgumentException("No statement at line " + lineNumber + " of " + className);
+            }
+            return source.substring(0, statementStart) + "if (" + expression + ") " + source.substring(statementStart);
+        }
+        throw new IllegalArgumentException("Unsupported patch type " + type);
+    }
+
+    private static int getLineStart(String source, int lineNumber) {
+        int index = 0;
+        for (int line = 1; line < lineNumber; line++) {
+            index = source.indexOf('\n', index) + 1;
+            if (index == 0) {
+                throw new IllegalArgumentException("No line " + lineNumber);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the index after the opening parenthesis of the first <code>if</code> between <code>start</code> and
+     * <code>end</code> that is not in a comment or a literal, -1 if there is none
+     */
+    private static int getCondition(String source, int start, int end) {
+        Matcher matcher = IF.matcher(source).useTransparentBounds(true);
+        // the line may start in a comment opened on a previous line
+        int i = 0;
+        while (i < end) {
+            int next = skipCommentOrLiteral(source, i);
+            if (next != i) {
+                i = next;
+            } else if (i >= start && matcher.region(i, end).lookingAt()) {
+                return matcher.end();
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the parenthesis closing the one before <code>start</code>, skipping the comments and the literals
+     */
+    private static int getClosingParenthesis(String source, int start) {
+        int depth = 1;
+        int i = start;
+        while (i < source.length()) {
+            int next = skipCommentOrLiteral(source, i);
+            if (next != i) {
+                i = next;
+                continue;
+            }
+            char c = source.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+            i++;
+        }
+        throw new IllegalArgumentException("Unbalanced parentheses");
+    }
+
+    /**
+     * @return the index after the comment or the literal starting at <code>i</code>, <code>i</code> if none starts there
+     */
+    private static int skipCommentOrLiteral(String source, int i) {
+        char c = source.charAt(i);
+        if (c == '"' || c == '\'') {
+            // the literal, with its escaped characters
+            int j = i + 1;
+            for (; j < source.length() && source.charAt(j) != c; j++) {
+                if (source.charAt(j) == '\\') {
+                    j++;
+                }
+            }
+            return Math.min(j + 1, source.length());
+        }
+        if (source.startsWith("//", i)) {
+            int end = source.indexOf('\n', i);
+            return end < 0 ? source.length() : end;
+        }
+        if (source.startsWith("/*", i)) {
+            int end = source.indexOf("*/", i + 2);
+            return end < 0 ? source.length() : end + 2;
+        }
+        return i;
+    }
+
+    @Override
+    public String toString() {
+        return className + ":" + lineNumber + ": " + expression;
+    }
+}
@@ -0,0 +1,110 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Verdict of the tests of a job on the sources patched with one candidate.
+ */
+public class PatchValidation implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * In the order of the ranking.
+     */
+    public enum Status {
+        PASSED, FAILED, NOT_APPLICABLE, COMPILATION_ERROR, TIMEOUT, ERROR
+    }
+
+    private final PatchCandidate candidate;
+    private final Status status;
+    private final int nbTests;
+    private final int nbFailures;
+    private final long durationInMilliseconds;
+    private final String message;
+    private String diff;
+
+    public PatchValidation(PatchCandidate candidate, Status status, int nbTests, int nbFailures, long durationInMilliseconds, String message) {
+        this.candidate = candidate;
+        this.status = status;
+        this.nbTests = nbTests;
+        this.nbFailures = nbFailures;
+        this.durationInMilliseconds = durationInMilliseconds;
+        this.message = message;
+    }
+
+    public static PatchValidation failure(PatchCandidate candidate, Status status, long durationInMilliseconds, String message) {
+        return new PatchValidation(candidate, status, 0, 0, durationInMilliseconds, message);
+    }
+
+    /**
+     * Sorts the validations by status, then by number of failing tests, then by patch size.
+     * The sort is stable, equal candidates stay in the order of the engine.
+     */
+    public static List<PatchValidation> rank(List<PatchValidation> validations) {
+        List<PatchValidation> result = new ArrayList<>(validations);
+        Collections.sort(result, new Comparator<PatchValidation>() {
+            @Override
+            public int compare(PatchValidation v1, PatchValidation v2) {
+                int compare = v1.status.compareTo(v2.status);
+                if (compare == 0) {
+                    compare = Integer.compare(v1.nbFailures, v2.nbFailures);
+                }
+                if (compare == 0) {
+                    compare = Integer.compare(v1.candidate.getSize(), v2.candidate.getSize());
+                }
+                return compare;
+            }
+        });
+        return result;
+    }
+
+    public PatchCandidate getCandidate() {
+        return candidate;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isPassed() {
+        return status == Status.PASSED;
+    }
+
+    public int getNbTests() {
+        return nbTests;
+    }
+
+    public int getNbFailures() {
+        return nbFailures;
+    }
+
+    public long getDurationInMilliseconds() {
+        return durationInMilliseconds;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the unified diff of the patch, null if it could not be applied
+     */
+    public String getDiff() {
+        return diff;
+    }
+
+    void setDiff(String diff) {
+        this.diff = diff;
+    }
+
+    @Override
+    public String toString() {
+        String result = status + (status == Status.FAILED ? " (" + nbFailures + "/" + nbTests + " tests failing)" : "") + " " + candidate;
+        return message == null ? result : result + " - " + message;
+    }
+}
@@ -0,0 +1,84 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates the candidate patches of a job in forked {@link ValidationWorker}s, all of them within a shared time budget,
+ * and ranks them. A worker is only forked with a permit of the slots, shared by the validators of concurrent jobs
+ * so that they fork at most as many workers as the slots together.
+ */
+public class PatchValidator {
+
+    private final ForkedRepairLauncher launcher;
+    private final File baseDirectory;
+    private final File sourceIndexDirectory;
+    private final Semaphore slots;
+    private final long budgetInMillis;
+
+    /**
+     * @param baseDirectory the directory the paths of the diffs are relative to
+     * @param sourceIndexDirectory the directory of the {@link SourceIndex} finding the units whose name is not the one of their class
+     */
+    public PatchValidator(ForkedRepairLauncher launcher, File baseDirectory, File sourceIndexDirectory, Semaphore slots, long budgetInMillis) {
+        this.launcher = launcher;
+        this.baseDirectory = baseDirectory;
+        this.sourceIndexDirectory = sourceIndexDirectory;
+        this.slots = slots;
+        this.budgetInMillis = budgetInMillis;
+    }
+
+    /**
+     * @return the validations, ranked
+     * @see PatchValidation#rank(List)
+     */
+    public List<PatchValidation> validate(final RepairJob job, List<PatchCandidate> candidates) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + budgetInMillis;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, candidates.size()));
+        List<Future<PatchValidation>> futures = new ArrayList<>();
+        List<PatchValidation> validations = new ArrayList<>();
+        try {
+            for (int i = 0; i < candidates.size(); i++) {
+                final PatchCandidate candidate = candidates.get(i);
+                final String name = job.getName() + "-candidate-" + (i + 1);
+                futures.add(executor.submit(new Callable<PatchValidation>() {
+                    @Override
+                    public PatchValidation call() throws Exception {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            return PatchValidation.failure(candidate, PatchValidation.Status.TIMEOUT, 0, "Validation budget exhausted");
+                        }
+                        if (!slots.tryAcquire(remaining, TimeUnit.MILLISECONDS)) {
+                            return PatchValidation.failure(candidate, PatchValidation.Status.TIMEOUT, 0, "Validation budget exhausted waiting for a worker");
+                        }
+                        try {
+                            ValidationWorker.Request request = new ValidationWorker.Request(job, candidate, baseDirectory, sourceIndexDirectory);
+                            return launcher.validate(request, name, deadline - System.currentTimeMillis());
+                        } finally {
+                            slots.release();
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    validations.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    validations.add(PatchValidation.failure(candidates.get(i), PatchValidation.Status.ERROR, 0, String.valueOf(e.getCause())));
+                }
+            }
+        } finally {
+            // interrupting a validation kills its worker
+            executor.shutdownNow();
+        }
+        return PatchValidation.rank(validations);
+    }
+}
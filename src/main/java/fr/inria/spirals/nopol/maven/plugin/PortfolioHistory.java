@@ -0,0 +1,87 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Number of races won by each configuration of a portfolio on a project, one properties file per project,
+ * so the next races start with the configurations that found patches before.
+ */
+public class PortfolioHistory {
+
+    private final File file;
+
+    public PortfolioHistory(File directory, String projectId) {
+        this.file = new File(directory, projectId.replaceAll("[^A-Za-z0-9._-]", "_") + ".properties");
+    }
+
+    /**
+     * @return the configurations sorted by decreasing number of wins, in the given order for equal numbers
+     */
+    public List<String> rank(List<String> configurations) {
+        final Properties wins = load();
+        List<String> result = new ArrayList<>(configurations);
+        // the sort is stable
+        Collections.sort(result, new Comparator<String>() {
+            @Override
+            public int compare(String c1, String c2) {
+                return Integer.compare(getWins(wins, c2), getWins(wins, c1));
+            }
+        });
+        return result;
+    }
+
+    public int getWins(String configuration) {
+        return getWins(load(), configuration);
+    }
+
+    public synchronized void recordWin(String configuration) {
+        Properties wins = load();
+        wins.setProperty(configuration, String.valueOf(getWins(wins, configuration) + 1));
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            System.err.println("Unable to create the portfolio history directory " + parent);
+            return;
+        }
+        File tmpFile = new File(parent, file.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmpFile)) {
+            wins.store(out, "Races won by each configuration");
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if (!tmpFile.renameTo(file)) {
+            file.delete();
+            tmpFile.renameTo(file);
+        }
+    }
+
+    private Properties load() {
+        Properties wins = new Properties();
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                wins.load(in);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return wins;
+    }
+
+    private static int getWins(Properties wins, String configuration) {
+        try {
+            return Integer.parseInt(wins.getProperty(configuration, "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coordinator of {@link RepairNode}s: the work units of a job, each on a shard of its source files, are handed out
+ * to the nodes over TCP as the nodes become free. The race stops at the first unit whose outcome is a fix:
+ * the connections of the other units are closed, which kills their workers, and the units not started are dropped.
+ *
+ * A node failing is not given units anymore, its unit is handed to another node once.
+ */
+public class RepairCluster {
+
+    public static final String CANCELLED = RepairPortfolio.CANCELLED;
+
+    private static final int CONNECT_TIMEOUT_IN_MILLIS = 10000;
+    private static final long KILL_TIMEOUT_IN_MILLIS = 10000;
+    private static final int MAX_ATTEMPTS = 2;
+
+    private final List<InetSocketAddress> nodes;
+    private final String token;
+    private final long timeoutInMillis;
+
+    public RepairCluster(List<InetSocketAddress> nodes, String token, long timeoutInMillis) {
+        this.nodes = nodes;
+        this.token = token;
+        this.timeoutInMillis = timeoutInMillis;
+    }
+
+    /**
+     * @param nodes comma separated <code>host:port</code>
+     * @throws IllegalArgumentException if a node has no port
+     */
+    public static List<InetSocketAddress> parseNodes(String nodes) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String node : nodes.split(",")) {
+            node = node.trim();
+            if (node.isEmpty()) {
+                continue;
+            }
+            int colon = node.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("\"" + node + "\" is not host:port");
+            }
+            try {
+                addresses.add(InetSocketAddress.createUnresolved(node.substring(0, colon), Integer.parseInt(node.substring(colon + 1))));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("\"" + node + "\" is not host:port");
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * Splits the job in work units on shards of at most <code>filesPerShard</code> source files. With a ranking
+     * of the statements, only the files of the suspicious statements are kept, the most suspicious ones dealt first
+     * so that each unit starts with a file as suspicious as possible.
+     *
+     * @param suspiciousStatements the statements, <code>Class:line</code>, most suspicious first, null if unknown
+     * @param directory where the sources of the shards are copied
+     */
+    public static List<RepairJob> split(RepairJob job, Map<String, Double> suspiciousStatements, int filesPerShard, File directory) throws IOException {
+        List<File> files = SourceView.getJavaFiles(job.getSourceFolders());
+        if (suspiciousStatements != null) {
+            List<File> rankedFiles = rankFiles(job.getSourceFolders(), suspiciousStatements);
+            if (!rankedFiles.isEmpty()) {
+                files = rankedFiles;
+            }
+        }
+        int nbShards = Math.max(1, (files.size() + filesPerShard - 1) / Math.max(1, filesPerShard));
+        List<List<File>> shards = new ArrayList<>();
+        for (int i = 0; i < nbShards; i++) {
+            shards.add(new ArrayList<File>());
+        }
+        for (int i = 0; i < files.size(); i++) {
+            shards.get(i % nbShards).add(files.get(i));
+        }
+        List<RepairJob> units = new ArrayList<>();
+        for (int i = 0; i < nbShards; i++) {
+            File[] sourceFolders = SourceView.create(job.getSourceFolders(), shards.get(i), new File(directory, String.valueOf(i + 1)));
+            if (sourceFolders.length > 0) {
+                units.add(job.forSourceFolders(job.getName() + "-shard-" + (i + 1), sourceFolders));
+            }
+        }
+        return units;
+    }
+
+    /**
+     * @return the source files of the statements, in the order of their most suspicious statement
+     */
+    static List<File> rankFiles(File[] sourceFolders, Map<String, Double> suspiciousStatements) {
+        Map<String, File> files = new LinkedHashMap<>();
+        for (String statement : suspiciousStatements.keySet()) {
+            String className = TestCoverage.getClassName(statement);
+            if (className.contains("$")) {
+                className = className.substring(0, className.indexOf('$'));
+            }
+            if (files.containsKey(className)) {
+                continue;
+            }
+            String path = className.replace('.', File.separatorChar) + ".java";
+            for (File sourceFolder : sourceFolders) {
+                File file = new File(sourceFolder, path);
+                if (file.isFile()) {
+                    files.put(className, file);
+                    break;
+                }
+            }
+        }
+        return new ArrayList<>(files.values());
+    }
+
+    /**
+     * @return whether the outcome of the unit stops the race, by default when it has patches
+     */
+    protected boolean isFix(RepairJob unit, RepairOutcome outcome) {
+        return outcome.hasPatches();
+    }
+
+    /**
+     * @param units the units, in the order they must be handed out
+     * @return the outcomes in the order of the units, with the CANCELLED status for the units stopped by the fix
+     */
+    public List<RepairOutcome> race(final List<RepairJob> units) throws InterruptedException {
+        final long start = System.currentTimeMillis();
+        final Queue<Integer> queue = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < units.size(); i++) {
+            queue.add(i);
+        }
+        final RepairOutcome[] outcomes = new RepairOutcome[units.size()];
+        final Map<Integer, Integer> attempts = new HashMap<>();
+        final Set<Socket> sockets = Collections.synchronizedSet(new HashSet<Socket>());
+        final AtomicBoolean stopped = new AtomicBoolean();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, nodes.size()));
+        List<Callable<Void>> nodeTasks = new ArrayList<>();
+        for (final InetSocketAddress node : nodes) {
+            nodeTasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    Integer index;
+                    while ((index = queue.poll()) != null) {
+                        if (stopped.get()) {
+                            return null;
+                        }
+                        RepairJob unit = units.get(index);
+                        RepairOutcome outcome;
+                        try {
+                            outcome = send(node, unit, sockets);
+                        } catch (SocketTimeoutException e) {
+                            outcome = RepairOutcome.failure(unit.getName(), "TIMEOUT", System.currentTimeMillis() - start, "Node " + node + " gave no outcome after " + timeoutInMillis + " ms");
+                        } catch (IOException | ClassNotFoundException e) {
+                            if (stopped.get()) {
+                                return null;
+                            }
+                            synchronized (attempts) {
+                                Integer nbAttempts = attempts.get(index);
+                                attempts.put(index, nbAttempts == null ? 1 : nbAttempts + 1);
+                                if (attempts.get(index) < MAX_ATTEMPTS) {
+                                    queue.add(index);
+                                } else {
+                                    outcomes[index] = RepairOutcome.failure(unit.getName(), "ERROR", System.currentTimeMillis() - start, "Node " + node + " failed: " + e);
+                                }
+                            }
+                            System.err.println("Repair node " + node + " failed, no more units for it: " + e);
+                            return null;
+                        }
+                        outcomes[index] = outcome;
+                        if (isFix(unit, outcome)) {
+                            stopped.set(true);
+                            // the nodes kill the workers of the closed connections
+                            synchronized (sockets) {
+                                for (Socket socket : sockets) {
+                                    try {
+                                        socket.close();
+                                    } catch (IOException e) {
+                                        // already closed
+                                    }
+                                }
+                            }
+                            return null;
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        try {
+            executor.invokeAll(nodeTasks);
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(KILL_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        List<RepairOutcome> result = new ArrayList<>();
+        for (int i = 0; i < outcomes.length; i++) {
+            if (outcomes[i] == null) {
+                // an error keeps the outcome out of the result cache
+                outcomes[i] = stopped.get()
+                        ? RepairOutcome.failure(units.get(i).getName(), CANCELLED, System.currentTimeMillis() - start, "Stopped, another unit found a fix")
+                        : RepairOutcome.failure(units.get(i).getName(), "ERROR", System.currentTimeMillis() - start, "No repair node available");
+            }
+            result.add(outcomes[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Sends the unit to the node with the contents it is missing, and waits for its outcome.
+     */
+    private RepairOutcome send(InetSocketAddress node, RepairJob unit, Set<Socket> sockets) throws IOException, ClassNotFoundException {
+        RepairNode.Request request = RepairNode.Request.of(unit);
+        Socket socket = new Socket();
+        sockets.add(socket);
+        try {
+            socket.connect(new InetSocketAddress(node.getHostString(), node.getPort()), CONNECT_TIMEOUT_IN_MILLIS);
+            OutputStream output = new BufferedOutputStream(socket.getOutputStream());
+            Tokens.write(output, token);
+            ObjectOutputStream out = new ObjectOutputStream(output);
+            out.writeObject(request);
+            out.flush();
+
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+            @SuppressWarnings("unchecked")
+            List<String> missing = (List<String>) in.readObject();
+            if (!missing.isEmpty()) {
+                Map<String, File> files = request.getInputs().getFiles(RepairNode.Request.getInputFiles(unit));
+                for (String hash : missing) {
+                    out.writeObject(Files.readAllBytes(files.get(hash).toPath()));
+                    // do not keep a back reference to every content
+                    out.reset();
+                }
+                out.flush();
+            }
+            socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, timeoutInMillis));
+            return (RepairOutcome) in.readObject();
+        } finally {
+            sockets.remove(socket);
+            socket.close();
+        }
+    }
+}
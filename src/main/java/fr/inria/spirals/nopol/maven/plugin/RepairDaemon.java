@@ -0,0 +1,265 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived repair worker listening on a loopback socket, so repeated runs do not pay
+ * the JVM startup, the engine class loading and the JIT warm-up again.
+ *
+ * A client sends the token published in the daemon file, as a plain string, then either a {@link RepairJob}
+ * or {@link #SHUTDOWN}. While a job runs, each line the engine prints is sent back as a
+ * String; the last message is the {@link RepairOutcome}. The daemon exits after being idle
+ * for the given time, and after the given number of jobs to bound its heap growth. A job running
+ * for more than its maximum time plus one minute stops the daemon.
+ *
+ * Usage: <code>RepairDaemon &lt;daemon file&gt; &lt;port&gt; &lt;idle timeout in minutes&gt; &lt;max jobs&gt; [classpath key]</code>
+ */
+public class RepairDaemon {
+
+    public static final String SHUTDOWN = "shutdown";
+
+    private static final int HANDSHAKE_TIMEOUT_IN_MILLIS = 10000;
+
+    // modules of a parallel reactor build queue their jobs on the same daemon
+    private static final int BACKLOG = 50;
+
+    static final String TOKEN = "token";
+    static final String PORT = "port";
+    static final String CLASSPATH_KEY = "classpath";
+
+    private final File daemonFile;
+    private final ServerSocket serverSocket;
+    private final String token;
+    private final int maxJobs;
+
+    RepairDaemon(File daemonFile, ServerSocket serverSocket, String token, int maxJobs) {
+        this.daemonFile = daemonFile;
+        this.serverSocket = serverSocket;
+        this.token = token;
+        this.maxJobs = maxJobs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("Usage: " + RepairDaemon.class.getName() + " <daemon file> <port> <idle timeout in minutes> <max jobs> [classpath key]");
+            System.exit(2);
+        }
+        File daemonFile = new File(args[0]);
+        int port = Integer.parseInt(args[1]);
+        long idleTimeout = TimeUnit.MINUTES.toMillis(Integer.parseInt(args[2]));
+        int maxJobs = Integer.parseInt(args[3]);
+        String classpathKey = args.length > 4 ? args[4] : "";
+
+        ServerSocket serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+        serverSocket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, idleTimeout));
+
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        String token = Hashes.toHex(random);
+        publish(daemonFile, serverSocket.getLocalPort(), token, classpathKey);
+
+        RepairDaemon repairDaemon = new RepairDaemon(daemonFile, serverSocket, token, maxJobs);
+        try {
+            repairDaemon.serve();
+        } finally {
+            repairDaemon.retire();
+        }
+        // the engine may leave non daemon threads behind
+        System.exit(0);
+    }
+
+    private static void publish(File daemonFile, int port, String token, String classpathKey) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(PORT, String.valueOf(port));
+        properties.setProperty(TOKEN, token);
+        properties.setProperty(CLASSPATH_KEY, classpathKey);
+
+        File parent = daemonFile.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        File tmpFile = new File(parent, daemonFile.getName() + ".tmp");
+        tmpFile.delete();
+        tmpFile.createNewFile();
+        // the token protects the daemon from the other users of the machine
+        tmpFile.setReadable(false, false);
+        tmpFile.setReadable(true, true);
+        try (OutputStream out = new FileOutputStream(tmpFile)) {
+            properties.store(out, "Nopol repair daemon");
+        }
+        if (!tmpFile.renameTo(daemonFile)) {
+            daemonFile.delete();
+            tmpFile.renameTo(daemonFile);
+        }
+    }
+
+    void serve() throws IOException {
+        int nbJobs = 0;
+        while (nbJobs < maxJobs) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketTimeoutException e) {
+                System.out.println("Repair daemon idle, stopping.");
+                return;
+            }
+            try (Socket client = socket) {
+                // a silent client must not block the daemon
+                client.setSoTimeout(HANDSHAKE_TIMEOUT_IN_MILLIS);
+                InputStream input = new BufferedInputStream(client.getInputStream());
+                if (!Tokens.check(input, token)) {
+                    System.err.println("Rejected a client with a wrong token.");
+                    continue;
+                }
+                ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(client.getOutputStream()));
+                out.flush();
+                ObjectInputStream in = new ObjectInputStream(input);
+                Object request = in.readObject();
+                client.setSoTimeout(0);
+                if (SHUTDOWN.equals(request)) {
+                    out.writeObject(SHUTDOWN);
+                    out.flush();
+                    return;
+                }
+                if (!(request instanceof RepairJob)) {
+                    System.err.println("Unexpected request: " + request);
+                    continue;
+                }
+                nbJobs++;
+                RepairOutcome outcome = run((RepairJob) request, out);
+                if (nbJobs >= maxJobs) {
+                    // the next client must start a new daemon instead of waiting on this one
+                    retire();
+                }
+                out.writeObject(outcome);
+                out.flush();
+            } catch (ClassNotFoundException | IOException e) {
+                e.printStackTrace();
+            }
+        }
+        System.out.println("Repair daemon executed " + nbJobs + " jobs, stopping to be recycled.");
+    }
+
+    /**
+     * Stops accepting clients and unpublishes the daemon.
+     */
+    private void retire() throws IOException {
+        daemonFile.delete();
+        serverSocket.close();
+    }
+
+    /**
+     * Runs the job while sending everything printed on the standard outputs to the client.
+     */
+    private RepairOutcome run(final RepairJob job, ObjectOutputStream out) {
+        // a hung engine cannot be stopped, the daemon stops instead, at the time the client gives up
+        Timer watchdog = new Timer("nopol-daemon-watchdog", true);
+        watchdog.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                System.err.println(job.getName() + " still running after " + (job.getMaxTimeInMinutes() + 1) + " minutes, stopping the repair daemon.");
+                daemonFile.delete();
+                Runtime.getRuntime().halt(1);
+            }
+        }, TimeUnit.MINUTES.toMillis(job.getMaxTimeInMinutes() + 1));
+        PrintStream systemOut = System.out;
+        PrintStream systemErr = System.err;
+        LineForwardingStream stream = new LineForwardingStream(out, systemOut);
+        PrintStream forward = new PrintStream(stream, true);
+        System.setOut(forward);
+        System.setErr(forward);
+        try {
+            return repair(job);
+        } finally {
+            watchdog.cancel();
+            forward.flush();
+            stream.flushPendingLine();
+            System.setOut(systemOut);
+            System.setErr(systemErr);
+        }
+    }
+
+    /**
+     * Runs the engine on the job, in this JVM.
+     */
+    protected RepairOutcome repair(RepairJob job) {
+        return RepairWorker.repair(job);
+    }
+
+    /**
+     * Sends each complete line as a String message, falls back to the daemon log once the client is gone.
+     */
+    private static class LineForwardingStream extends OutputStream {
+
+        private final ObjectOutputStream out;
+        private final PrintStream fallback;
+        private byte[] buffer = new byte[256];
+        private int size;
+        private boolean connected = true;
+
+        LineForwardingStream(ObjectOutputStream out, PrintStream fallback) {
+            this.out = out;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (b == '\n') {
+                flushLine();
+                return;
+            }
+            if (size == buffer.length) {
+                byte[] larger = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, larger, 0, size);
+                buffer = larger;
+            }
+            buffer[size++] = (byte) b;
+        }
+
+        /**
+         * Sends the last line even if it is not terminated. PrintStream flushes after every print,
+         * so {@link #flush()} cannot be used for that without splitting lines.
+         */
+        synchronized void flushPendingLine() {
+            if (size > 0) {
+                flushLine();
+            }
+        }
+
+        private void flushLine() {
+            String line = new String(buffer, 0, size, StandardCharsets.UTF_8);
+            size = 0;
+            if (connected) {
+                try {
+                    out.writeObject(line);
+                    // do not keep a back reference to every line of a long repair
+                    out.reset();
+                    out.flush();
+                    return;
+                } catch (IOException e) {
+                    connected = false;
+                }
+            }
+            fallback.println(line);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends repair jobs to the local {@link RepairDaemon}, starting one when none is running
+ * or when the running one was started with another classpath.
+ */
+public class RepairDaemonClient {
+
+    private static final long STARTUP_TIMEOUT_IN_MILLIS = 60000;
+    private static final long STOP_TIMEOUT_IN_MILLIS = 90000;
+
+    private final List<URL> classpath;
+    private final File daemonDirectory;
+    private final int port;
+    private final int idleTimeoutInMinutes;
+    private final int maxJobs;
+
+    public RepairDaemonClient(List<URL> classpath, File daemonDirectory, int port, int idleTimeoutInMinutes, int maxJobs) {
+        this.classpath = classpath;
+        this.daemonDirectory = daemonDirectory;
+        this.port = port;
+        this.idleTimeoutInMinutes = idleTimeoutInMinutes;
+        this.maxJobs = maxJobs;
+    }
+
+    /**
+     * Runs the job in the daemon, printing the engine output as it arrives. Without outcome after the maximum time
+     * of the job plus one minute, the daemon stops itself and the outcome has the TIMEOUT status.
+     */
+    public RepairOutcome repair(RepairJob job) throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        long timeoutInMillis = TimeUnit.MINUTES.toMillis(job.getMaxTimeInMinutes() + 1);
+        Properties daemon = getDaemon(false);
+        Socket socket;
+        try {
+            socket = connect(daemon);
+        } catch (ConnectException e) {
+            // stale daemon file: the daemon stopped without removing it
+            daemon = getDaemon(true);
+            socket = connect(daemon);
+        }
+        try {
+            OutputStream output = new BufferedOutputStream(socket.getOutputStream());
+            Tokens.write(output, daemon.getProperty(RepairDaemon.TOKEN));
+            ObjectOutputStream out = new ObjectOutputStream(output);
+            out.writeObject(job);
+            out.flush();
+
+            socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, timeoutInMillis));
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+            while (true) {
+                // the engine output does not extend the time of the job
+                long remaining = start + timeoutInMillis - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new SocketTimeoutException();
+                }
+                socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, remaining));
+                Object message = in.readObject();
+                if (message instanceof RepairOutcome) {
+                    return (RepairOutcome) message;
+                }
+                System.out.println(message);
+            }
+        } catch (SocketTimeoutException e) {
+            socket.close();
+            waitForStop(daemon);
+            return RepairOutcome.failure(job.getName(), "TIMEOUT", System.currentTimeMillis() - start,
+                    "No outcome from the repair daemon after " + timeoutInMillis + " ms, see " + getLogFile());
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Waits for a daemon running a hung job to stop itself, so the next run starts a new one.
+     */
+    private void waitForStop(Properties daemon) throws InterruptedException {
+        File daemonFile = getDaemonFile();
+        long start = System.currentTimeMillis();
+        while (System.currentTimeMillis() - start < STOP_TIMEOUT_IN_MILLIS) {
+            Properties current = readDaemonFile(daemonFile);
+            if (current == null || !daemon.getProperty(RepairDaemon.TOKEN).equals(current.getProperty(RepairDaemon.TOKEN))) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        System.err.println("The repair daemon did not stop, see " + getLogFile());
+    }
+
+    /**
+     * @return the description of a daemon running with the classpath, starting one if needed
+     */
+    private Properties getDaemon(boolean restart) throws IOException, InterruptedException {
+        String classpathKey = getClasspathKey();
+        File daemonFile = getDaemonFile();
+        Properties daemon = readDaemonFile(daemonFile);
+        if (daemon != null && !restart) {
+            if (classpathKey.equals(daemon.getProperty(RepairDaemon.CLASSPATH_KEY))) {
+                return daemon;
+            }
+            System.out.println("The repair daemon runs with another classpath, restarting it.");
+            shutdown(daemon);
+        }
+        daemonFile.delete();
+        Process process = startDaemon(daemonFile, classpathKey);
+
+        long start = System.currentTimeMillis();
+        while (System.currentTimeMillis() - start < STARTUP_TIMEOUT_IN_MILLIS) {
+            daemon = readDaemonFile(daemonFile);
+            if (daemon != null) {
+                return daemon;
+            }
+            try {
+                int exitValue = process.exitValue();
+                // another build may have started a daemon on the same port in the meantime
+                daemon = readDaemonFile(daemonFile);
+                if (daemon != null) {
+                    return daemon;
+                }
+                throw new IOException("The repair daemon stopped with code " + exitValue + ", see " + getLogFile());
+            } catch (IllegalThreadStateException e) {
+                // still starting
+            }
+            Thread.sleep(100);
+        }
+        throw new IOException("The repair daemon did not start, see " + getLogFile());
+    }
+
+    private static Socket connect(Properties daemon) throws IOException {
+        return new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(daemon.getProperty(RepairDaemon.PORT)));
+    }
+
+    private Process startDaemon(File daemonFile, String classpathKey) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(ForkedRepairLauncher.getJavaExecutable());
+        command.add("-cp");
+        command.add(ForkedRepairLauncher.toClasspathString(classpath));
+        command.add(RepairDaemon.class.getName());
+        command.add(daemonFile.getAbsolutePath());
+        command.add(String.valueOf(port));
+        command.add(String.valueOf(idleTimeoutInMinutes));
+        command.add(String.valueOf(maxJobs));
+        command.add(classpathKey);
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(ProcessBuilder.Redirect.appendTo(getLogFile()));
+        Process process = builder.start();
+        System.out.println("Repair daemon started on port " + port + ", log in " + getLogFile());
+        return process;
+    }
+
+    private void shutdown(Properties daemon) {
+        try (Socket socket = connect(daemon)) {
+            OutputStream output = new BufferedOutputStream(socket.getOutputStream());
+            Tokens.write(output, daemon.getProperty(RepairDaemon.TOKEN));
+            ObjectOutputStream out = new ObjectOutputStream(output);
+            out.writeObject(RepairDaemon.SHUTDOWN);
+            out.flush();
+            new ObjectInputStream(socket.getInputStream()).readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            // already gone
+        }
+    }
+
+    private static Properties readDaemonFile(File daemonFile) {
+        if (!daemonFile.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(daemonFile)) {
+            properties.load(in);
+            return properties;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private String getClasspathKey() {
+        Set<String> entries = new LinkedHashSet<>();
+        for (URL url : classpath) {
+            File file = new File(url.getPath());
+            entries.add(file.getAbsolutePath() + ":" + file.lastModified());
+        }
+        return Hashes.sha256(entries.toString());
+    }
+
+    private File getDaemonFile() {
+        return new File(daemonDirectory, "daemon-" + port + ".properties");
+    }
+
+    private File getLogFile() {
+        if (!daemonDirectory.exists()) {
+            daemonDirectory.mkdirs();
+        }
+        return new File(daemonDirectory, "daemon-" + port + ".log");
+    }
+}
@@ -0,0 +1,346 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import fr.inria.lille.commons.synthesis.smt.solver.SolverFactory;
+import fr.inria.lille.repair.common.config.NopolContext;
+import fr.inria.lille.repair.common.synth.StatementType;
+
+import java.io.File;
+import java.io.Serializable;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything needed to build a {@link NopolContext} in another JVM.
+ * The context itself holds engine state, so only plain values travel between processes.
+ */
+public class RepairJob implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final File[] sourceFolders;
+    private final URL[] classpath;
+    private final String[] failingTests;
+    private List<String> testMethodsToIgnore = new ArrayList<>();
+    private List<String> testMethodsToValidate = new ArrayList<>();
+
+    private int complianceLevel = 7;
+    private String sourceEncoding;
+    private int timeoutTestExecution = 300;
+    private int maxTimeEachTypeOfFixInMinutes = 15;
+    private int maxTimeInMinutes = 10;
+    private NopolContext.NopolLocalizer localizer;
+    private NopolContext.NopolSynthesis synthesis;
+    private StatementType type;
+    private NopolContext.NopolSolver solver;
+    private String solverPath;
+    private boolean onlyOneSynthesisResult = true;
+    private int maxPatches = 1;
+    private boolean gzoltarDebug = true;
+    private int progressIntervalInSeconds = 30;
+    private int nbSuspiciousStatements = -1;
+
+    public RepairJob(String name, File[] sourceFolders, URL[] classpath, String[] failingTests) {
+        this.name = name;
+        this.sourceFolders = sourceFolders;
+        this.classpath = classpath;
+        this.failingTests = failingTests;
+    }
+
+    /**
+     * Creates a job with the same configuration but restricted to the given failing tests.
+     */
+    public RepairJob forTests(String name, String[] failingTests) {
+        RepairJob job = new RepairJob(name, sourceFolders, classpath, failingTests);
+        job.copyConfigurationFrom(this);
+        return job;
+    }
+
+    /**
+     * Creates a job with the same tests and configuration on other sources, e.g. a subset of the sources of this job.
+     */
+    public RepairJob forSourceFolders(String name, File[] sourceFolders) {
+        return forInputs(name, sourceFolders, classpath);
+    }
+
+    /**
+     * Creates a job with the same tests and configuration on other sources and classpath, e.g. copies of them on another host.
+     */
+    public RepairJob forInputs(String name, File[] sourceFolders, URL[] classpath) {
+        RepairJob job = new RepairJob(name, sourceFolders, classpath, failingTests);
+        job.copyConfigurationFrom(this);
+        return job;
+    }
+
+    /**
+     * Creates a job with the same tests but another engine configuration, given as colon separated values
+     * of the synthesis, the statement type, the localizer and the solver, in any order, e.g. <code>smt:z3:conditional</code>.
+     * The values that are not given are the ones of this job.
+     *
+     * @throws IllegalArgumentException if a value is not one of the engine
+     */
+    public RepairJob withConfiguration(String configuration) {
+        RepairJob job = new RepairJob(name + "-" + configuration, sourceFolders, classpath, failingTests);
+        job.copyConfigurationFrom(this);
+        for (String value : configuration.split(":")) {
+            String constant = value.trim().toUpperCase();
+            if (isConstantOf(NopolContext.NopolSynthesis.class, constant)) {
+                job.synthesis = NopolContext.NopolSynthesis.valueOf(constant);
+            } else if (isConstantOf(StatementType.class, constant)) {
+                job.type = StatementType.valueOf(constant);
+            } else if (isConstantOf(NopolContext.NopolLocalizer.class, constant)) {
+                job.localizer = NopolContext.NopolLocalizer.valueOf(constant);
+            } else if (isConstantOf(NopolContext.NopolSolver.class, constant)) {
+                job.solver = NopolContext.NopolSolver.valueOf(constant);
+            } else {
+                throw new IllegalArgumentException("\"" + value + "\" is not a synthesis, a statement type, a localizer or a solver");
+            }
+        }
+        return job;
+    }
+
+    private static <E extends Enum<E>> boolean isConstantOf(Class<E> enumType, String constant) {
+        for (E e : enumType.getEnumConstants()) {
+            if (e.name().equals(constant)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected void copyConfigurationFrom(RepairJob other) {
+        this.testMethodsToIgnore = other.testMethodsToIgnore;
+        this.testMethodsToValidate = other.testMethodsToValidate;
+        this.complianceLevel = other.complianceLevel;
+        this.sourceEncoding = other.sourceEncoding;
+        this.timeoutTestExecution = other.timeoutTestExecution;
+        this.maxTimeEachTypeOfFixInMinutes = other.maxTimeEachTypeOfFixInMinutes;
+        this.maxTimeInMinutes = other.maxTimeInMinutes;
+        this.localizer = other.localizer;
+        this.synthesis = other.synthesis;
+        this.type = other.type;
+        this.solver = other.solver;
+        this.solverPath = other.solverPath;
+        this.onlyOneSynthesisResult = other.onlyOneSynthesisResult;
+        this.maxPatches = other.maxPatches;
+        this.gzoltarDebug = other.gzoltarDebug;
+        this.progressIntervalInSeconds = other.progressIntervalInSeconds;
+        this.nbSuspiciousStatements = other.nbSuspiciousStatements;
+    }
+
+    /**
+     * Builds the engine context. Must be called in the JVM that runs the repair:
+     * the solver configuration is global to the engine.
+     */
+    public NopolContext toNopolContext() {
+        NopolContext nopolContext = new NopolContext(sourceFolders, classpath, failingTests, testMethodsToIgnore);
+        nopolContext.setComplianceLevel(complianceLevel);
+        nopolContext.setTimeoutTestExecution(timeoutTestExecution);
+        nopolContext.setMaxTimeEachTypeOfFixInMinutes(maxTimeEachTypeOfFixInMinutes);
+        nopolContext.setMaxTimeInMinutes(maxTimeInMinutes);
+        nopolContext.setLocalizer(localizer);
+        nopolContext.setSynthesis(synthesis);
+        nopolContext.setType(type);
+        nopolContext.setOnlyOneSynthesisResult(onlyOneSynthesisResult);
+        nopolContext.setJson(true);
+        nopolContext.setSolver(solver);
+
+        if (synthesis == NopolContext.NopolSynthesis.SMT) {
+            if (solver == NopolContext.NopolSolver.Z3) {
+                SolverFactory.setSolver(solver, solverPath);
+                nopolContext.setSolverPath(solverPath);
+            } else {
+                SolverFactory.setSolver(solver, null);
+            }
+        }
+        return nopolContext;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public File[] getSourceFolders() {
+        return sourceFolders;
+    }
+
+    public URL[] getClasspath() {
+        return classpath;
+    }
+
+    public String[] getFailingTests() {
+        return failingTests;
+    }
+
+    public List<String> getFailingTestList() {
+        List<String> tests = new ArrayList<>();
+        Collections.addAll(tests, failingTests);
+        return tests;
+    }
+
+    /**
+     * @return the test methods, in the <code>Class#method</code> form, that Nopol must not execute
+     */
+    public List<String> getTestMethodsToIgnore() {
+        return testMethodsToIgnore;
+    }
+
+    public void setTestMethodsToIgnore(List<String> testMethodsToIgnore) {
+        this.testMethodsToIgnore = new ArrayList<>(testMethodsToIgnore);
+    }
+
+    /**
+     * @return the ignored test methods that the validation of the patches executes anyway, e.g. the passing test
+     * methods of the failing test classes, which Nopol neither runs nor instruments
+     */
+    public List<String> getTestMethodsToValidate() {
+        return testMethodsToValidate;
+    }
+
+    public void setTestMethodsToValidate(List<String> testMethodsToValidate) {
+        this.testMethodsToValidate = new ArrayList<>(testMethodsToValidate);
+    }
+
+    public int getComplianceLevel() {
+        return complianceLevel;
+    }
+
+    public void setComplianceLevel(int complianceLevel) {
+        this.complianceLevel = complianceLevel;
+    }
+
+    /**
+     * @return the encoding of the source files, null for the default one of the platform
+     */
+    public String getSourceEncoding() {
+        return sourceEncoding;
+    }
+
+    public void setSourceEncoding(String sourceEncoding) {
+        this.sourceEncoding = sourceEncoding;
+    }
+
+    /**
+     * @return the charset of the source files, the default one of the platform if the encoding is not set
+     * @throws java.nio.charset.UnsupportedCharsetException if the encoding is not supported by this JVM
+     */
+    public Charset getSourceCharset() {
+        return sourceEncoding == null || sourceEncoding.isEmpty() ? Charset.defaultCharset() : Charset.forName(sourceEncoding);
+    }
+
+    public int getTimeoutTestExecution() {
+        return timeoutTestExecution;
+    }
+
+    public void setTimeoutTestExecution(int timeoutTestExecution) {
+        this.timeoutTestExecution = timeoutTestExecution;
+    }
+
+    public int getMaxTimeEachTypeOfFixInMinutes() {
+        return maxTimeEachTypeOfFixInMinutes;
+    }
+
+    public void setMaxTimeEachTypeOfFixInMinutes(int maxTimeEachTypeOfFixInMinutes) {
+        this.maxTimeEachTypeOfFixInMinutes = maxTimeEachTypeOfFixInMinutes;
+    }
+
+    public int getMaxTimeInMinutes() {
+        return maxTimeInMinutes;
+    }
+
+    public void setMaxTimeInMinutes(int maxTimeInMinutes) {
+        this.maxTimeInMinutes = maxTimeInMinutes;
+    }
+
+    public NopolContext.NopolLocalizer getLocalizer() {
+        return localizer;
+    }
+
+    public void setLocalizer(NopolContext.NopolLocalizer localizer) {
+        this.localizer = localizer;
+    }
+
+    public NopolContext.NopolSynthesis getSynthesis() {
+        return synthesis;
+    }
+
+    public void setSynthesis(NopolContext.NopolSynthesis synthesis) {
+        this.synthesis = synthesis;
+    }
+
+    public StatementType getType() {
+        return type;
+    }
+
+    public void setType(StatementType type) {
+        this.type = type;
+    }
+
+    public NopolContext.NopolSolver getSolver() {
+        return solver;
+    }
+
+    public void setSolver(NopolContext.NopolSolver solver) {
+        this.solver = solver;
+    }
+
+    public String getSolverPath() {
+        return solverPath;
+    }
+
+    public void setSolverPath(String solverPath) {
+        this.solverPath = solverPath;
+    }
+
+    public boolean isOnlyOneSynthesisResult() {
+        return onlyOneSynthesisResult;
+    }
+
+    public void setOnlyOneSynthesisResult(boolean onlyOneSynthesisResult) {
+        this.onlyOneSynthesisResult = onlyOneSynthesisResult;
+    }
+
+    /**
+     * @return the number of candidate patches of the engine that are validated
+     */
+    public int getMaxPatches() {
+        return maxPatches;
+    }
+
+    public void setMaxPatches(int maxPatches) {
+        this.maxPatches = maxPatches;
+    }
+
+    public boolean isGzoltarDebug() {
+        return gzoltarDebug;
+    }
+
+    public void setGzoltarDebug(boolean gzoltarDebug) {
+        this.gzoltarDebug = gzoltarDebug;
+    }
+
+    /**
+     * @return the interval between two progress lines of the running job, 0 to disable them
+     */
+    public int getProgressIntervalInSeconds() {
+        return progressIntervalInSeconds;
+    }
+
+    public void setProgressIntervalInSeconds(int progressIntervalInSeconds) {
+        this.progressIntervalInSeconds = progressIntervalInSeconds;
+    }
+
+    /**
+     * @return the number of statements executed by the failing tests, -1 if the coverage was not computed
+     */
+    public int getNbSuspiciousStatements() {
+        return nbSuspiciousStatements;
+    }
+
+    public void setNbSuspiciousStatements(int nbSuspiciousStatements) {
+        this.nbSuspiciousStatements = nbSuspiciousStatements;
+    }
+}
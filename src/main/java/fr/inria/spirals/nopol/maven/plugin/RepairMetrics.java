@@ -0,0 +1,135 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall and CPU time of the phases of a repair, with the peak heap of the JVM that ran them.
+ *
+ * The CPU time is the one of the thread running the phase, threads started by the engine are not counted.
+ * A phase measured several times, e.g. once per module, is accumulated.
+ * The phases of the engine itself are only known by sampling its thread, they have a wall time but no CPU time,
+ * and are kept apart with the counts of the events seen while sampling.
+ */
+public class RepairMetrics implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    private final Map<String, long[]> phases = new LinkedHashMap<>();
+    private final Map<String, Long> enginePhases = new LinkedHashMap<>();
+    private final Map<String, Long> engineEvents = new LinkedHashMap<>();
+    private long peakHeapInBytes;
+
+    /**
+     * @return a running phase, to be stopped once the phase is over
+     */
+    public Phase start(String name) {
+        return new Phase(name);
+    }
+
+    public synchronized void add(String phase, long wallTimeInMillis, long cpuTimeInMillis) {
+        long[] times = phases.get(phase);
+        if (times == null) {
+            times = new long[2];
+            phases.put(phase, times);
+        }
+        times[0] += wallTimeInMillis;
+        times[1] += cpuTimeInMillis;
+    }
+
+    /**
+     * @return the phases in start order, each with its wall then CPU time in milliseconds
+     */
+    public synchronized Map<String, long[]> getPhases() {
+        Map<String, long[]> result = new LinkedHashMap<>();
+        for (Map.Entry<String, long[]> entry : phases.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().clone());
+        }
+        return result;
+    }
+
+    public synchronized void addEnginePhase(String phase, long wallTimeInMillis) {
+        Long time = enginePhases.get(phase);
+        enginePhases.put(phase, (time == null ? 0 : time) + wallTimeInMillis);
+    }
+
+    public synchronized void addEngineEvents(String event, long count) {
+        Long total = engineEvents.get(event);
+        engineEvents.put(event, (total == null ? 0 : total) + count);
+    }
+
+    /**
+     * @return the sampled phases of the engine in the order they were first seen, each with its wall time in milliseconds
+     */
+    public synchronized Map<String, Long> getEnginePhases() {
+        return new LinkedHashMap<>(enginePhases);
+    }
+
+    /**
+     * @return the number of each event of the engine, lower bounds as they are counted by sampling
+     */
+    public synchronized Map<String, Long> getEngineEvents() {
+        return new LinkedHashMap<>(engineEvents);
+    }
+
+    /**
+     * Records the peak heap usage of this JVM, as the sum of the peaks of its heap pools.
+     */
+    public synchronized void recordPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        peakHeapInBytes = Math.max(peakHeapInBytes, peak);
+    }
+
+    /**
+     * Starts a new peak heap measure, for a JVM running several repairs.
+     */
+    public static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    public synchronized long getPeakHeapInBytes() {
+        return peakHeapInBytes;
+    }
+
+    private static long getCurrentThreadCpuTime() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!threadMXBean.isCurrentThreadCpuTimeSupported()) {
+            return 0;
+        }
+        return threadMXBean.getCurrentThreadCpuTime();
+    }
+
+    public class Phase {
+
+        private final String name;
+        private final long wallStart = System.nanoTime();
+        private final long cpuStart = getCurrentThreadCpuTime();
+
+        private Phase(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Must be called by the thread that started the phase.
+         */
+        public void stop() {
+            add(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wallStart),
+                    TimeUnit.NANOSECONDS.toMillis(getCurrentThreadCpuTime() - cpuStart));
+        }
+    }
+}
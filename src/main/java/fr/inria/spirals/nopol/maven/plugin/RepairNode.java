@@ -0,0 +1,240 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repair worker node of a {@link RepairCluster}, possibly on another host: repairs the work units sent by the coordinator
+ * in forked {@link RepairWorker}s, at most <code>slots</code> at a time.
+ *
+ * A node is stateless apart from its cache of the sources and classpath of the units, rebuilt from their contents
+ * with {@link FileManifest}. The coordinator sends the shared token then a {@link Request}, the node answers with the
+ * hashes of the contents it is missing, receives them as byte arrays, then sends the {@link RepairOutcome}.
+ * The coordinator closes the connection to cancel a unit, which kills its worker.
+ *
+ * The node runs with the classpath of the plugin and of the engine, the one of its forked workers, which share
+ * the classes of a {@link ClassDataSharing} archive kept in the cache.
+ *
+ * The token is read as a plain string, no object is deserialized before it is checked.
+ *
+ * Usage: <code>RepairNode &lt;port&gt; &lt;cache directory&gt; &lt;token file&gt; [slots [bind address]]</code>,
+ * the node listens on all the interfaces without bind address.
+ */
+public class RepairNode {
+
+    private static final int HANDSHAKE_TIMEOUT_IN_MILLIS = 60000;
+    private static final int BACKLOG = 50;
+
+    private final File cacheDirectory;
+    private final String token;
+    private final ForkedRepairLauncher launcher;
+
+    RepairNode(File cacheDirectory, String token, ForkedRepairLauncher launcher) {
+        this.cacheDirectory = cacheDirectory;
+        this.token = token;
+        this.launcher = launcher;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: " + RepairNode.class.getName() + " <port> <cache directory> <token file> [slots [bind address]]");
+            System.exit(2);
+        }
+        int port = Integer.parseInt(args[0]);
+        File cacheDirectory = new File(args[1]).getAbsoluteFile();
+        String token = readToken(new File(args[2]));
+        int slots = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        InetAddress bindAddress = args.length > 4 ? InetAddress.getByName(args[4]) : null;
+
+        List<URL> classpath = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            try {
+                classpath.add(new File(entry).toURI().toURL());
+            } catch (MalformedURLException e) {
+                e.printStackTrace();
+            }
+        }
+        ForkedRepairLauncher launcher = new ForkedRepairLauncher(classpath, new File(cacheDirectory, "jobs"), false);
+        launcher.enableClassDataSharing(new File(cacheDirectory, "cds"));
+        RepairNode node = new RepairNode(cacheDirectory, token, launcher);
+        ServerSocket serverSocket = new ServerSocket(port, BACKLOG, bindAddress);
+        System.out.println("Repair node listening on " + serverSocket.getLocalSocketAddress() + " with " + slots + " slots, cache in " + cacheDirectory);
+        node.serve(serverSocket, slots);
+    }
+
+    /**
+     * @return the first line of the file, the secret shared by the coordinator and its nodes
+     */
+    static String readToken(File tokenFile) throws IOException {
+        List<String> lines = Files.readAllLines(tokenFile.toPath(), StandardCharsets.UTF_8);
+        if (lines.isEmpty() || lines.get(0).trim().isEmpty()) {
+            throw new IOException("No token in " + tokenFile);
+        }
+        return lines.get(0).trim();
+    }
+
+    void serve(ServerSocket serverSocket, int slots) throws IOException {
+        // the units beyond the slots wait in the queue of the pool, the coordinator waits for their outcome
+        ExecutorService executor = Executors.newFixedThreadPool(slots);
+        try {
+            while (!serverSocket.isClosed()) {
+                final Socket socket = serverSocket.accept();
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    void handle(final Socket socket) {
+        try (Socket client = socket) {
+            client.setSoTimeout(HANDSHAKE_TIMEOUT_IN_MILLIS);
+            InputStream input = new BufferedInputStream(client.getInputStream());
+            if (!Tokens.check(input, token)) {
+                System.err.println("Rejected a coordinator with a wrong token from " + client.getRemoteSocketAddress());
+                return;
+            }
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(client.getOutputStream()));
+            out.flush();
+            ObjectInputStream in = new ObjectInputStream(input);
+            Request request = (Request) in.readObject();
+            List<String> missing = request.getInputs().getMissingHashes(cacheDirectory);
+            out.writeObject(new ArrayList<>(missing));
+            out.flush();
+            client.setSoTimeout(0);
+            for (String hash : missing) {
+                FileManifest.store(cacheDirectory, hash, (byte[]) in.readObject());
+            }
+            RepairJob job = request.toLocalJob(request.getInputs().materialize(cacheDirectory));
+            System.out.println("Repairing " + job.getName() + " for " + client.getRemoteSocketAddress()
+                    + ", " + missing.size() + " files received.");
+
+            // the coordinator sends nothing more: the end of the stream cancels the unit
+            final Thread handler = Thread.currentThread();
+            final boolean[] done = new boolean[1];
+            Thread watcher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        socket.getInputStream().read();
+                    } catch (IOException e) {
+                        // closed
+                    }
+                    synchronized (done) {
+                        if (!done[0]) {
+                            handler.interrupt();
+                        }
+                    }
+                }
+            }, "nopol-node-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+
+            RepairOutcome outcome;
+            try {
+                outcome = launcher.launch(job, TimeUnit.MINUTES.toMillis(job.getMaxTimeInMinutes() + 1));
+            } catch (InterruptedException e) {
+                System.out.println("Cancelled " + job.getName());
+                return;
+            } finally {
+                synchronized (done) {
+                    done[0] = true;
+                }
+                // the watcher may have interrupted the launch just after it ended
+                Thread.interrupted();
+            }
+            System.out.println(job.getName() + ": " + outcome.getStatus() + ", " + outcome.getPatches().size() + " patches.");
+            out.writeObject(outcome);
+            out.flush();
+        } catch (ClassNotFoundException | ClassCastException | IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * A work unit: a job with the contents of its sources, classpath and solver.
+     */
+    public static class Request implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RepairJob job;
+        private final FileManifest inputs;
+
+        private Request(RepairJob job, FileManifest inputs) {
+            this.job = job;
+            this.inputs = inputs;
+        }
+
+        /**
+         * @throws IOException if an input of the job cannot be read
+         */
+        public static Request of(RepairJob job) throws IOException {
+            return new Request(job, FileManifest.of(getInputFiles(job)));
+        }
+
+        /**
+         * @return the source folders, the classpath entries then the solver, if any
+         */
+        static List<File> getInputFiles(RepairJob job) {
+            List<File> files = new ArrayList<>();
+            for (File sourceFolder : job.getSourceFolders()) {
+                files.add(sourceFolder);
+            }
+            for (URL url : job.getClasspath()) {
+                files.add(new File(url.getPath()));
+            }
+            if (job.getSolverPath() != null) {
+                files.add(new File(job.getSolverPath()));
+            }
+            return files;
+        }
+
+        public RepairJob getJob() {
+            return job;
+        }
+
+        public FileManifest getInputs() {
+            return inputs;
+        }
+
+        /**
+         * @param files the local copies of the input files, in order
+         */
+        RepairJob toLocalJob(List<File> files) throws MalformedURLException {
+            File[] sourceFolders = files.subList(0, job.getSourceFolders().length).toArray(new File[0]);
+            URL[] classpath = new URL[job.getClasspath().length];
+            for (int i = 0; i < classpath.length; i++) {
+                classpath[i] = files.get(sourceFolders.length + i).toURI().toURL();
+            }
+            RepairJob localJob = job.forInputs(job.getName(), sourceFolders, classpath);
+            if (job.getSolverPath() != null) {
+                localJob.setSolverPath(files.get(files.size() - 1).getAbsolutePath());
+            }
+            return localJob;
+        }
+    }
+}
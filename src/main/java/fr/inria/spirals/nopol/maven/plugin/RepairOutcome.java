@@ -0,0 +1,125 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import fr.inria.lille.repair.common.patch.Patch;
+import fr.inria.lille.repair.nopol.NopolResult;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serializable summary of a {@link NopolResult}, so results can come back from a forked worker.
+ */
+public class RepairOutcome implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String jobName;
+    private final String status;
+    private final long durationInMilliseconds;
+    private final int nbAngelicValues;
+    private final int nbStatements;
+    private final List<String> patches;
+    private final String error;
+    private List<PatchCandidate> candidates;
+    private List<PatchValidation> validations;
+    private RepairMetrics metrics;
+    // set when read back from the result cache, not stored
+    private transient boolean cached;
+
+    public RepairOutcome(String jobName, String status, long durationInMilliseconds, int nbAngelicValues, int nbStatements, List<String> patches, String error) {
+        this.jobName = jobName;
+        this.status = status;
+        this.durationInMilliseconds = durationInMilliseconds;
+        this.nbAngelicValues = nbAngelicValues;
+        this.nbStatements = nbStatements;
+        this.patches = patches;
+        this.error = error;
+    }
+
+    public static RepairOutcome from(String jobName, NopolResult result) {
+        List<String> patches = new ArrayList<>();
+        List<PatchCandidate> candidates = new ArrayList<>();
+        for (Patch patch : result.getPatches()) {
+            patches.add(patch.asString());
+            candidates.add(PatchCandidate.from(patch));
+        }
+        RepairOutcome outcome = new RepairOutcome(jobName, String.valueOf(result.getNopolStatus()), result.getDurationInMilliseconds(),
+                result.getNbAngelicValues(), result.getNbStatements(), patches, null);
+        outcome.candidates = candidates;
+        return outcome;
+    }
+
+    public static RepairOutcome failure(String jobName, String status, long durationInMilliseconds, String error) {
+        return new RepairOutcome(jobName, status, durationInMilliseconds, 0, 0, new ArrayList<String>(), error);
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public long getDurationInMilliseconds() {
+        return durationInMilliseconds;
+    }
+
+    public int getNbAngelicValues() {
+        return nbAngelicValues;
+    }
+
+    public int getNbStatements() {
+        return nbStatements;
+    }
+
+    public List<String> getPatches() {
+        return patches;
+    }
+
+    public boolean hasPatches() {
+        return !patches.isEmpty();
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return the patches with their location, in the order of the engine, empty for the outcomes without location
+     */
+    public List<PatchCandidate> getCandidates() {
+        return candidates == null ? new ArrayList<PatchCandidate>() : candidates;
+    }
+
+    /**
+     * @return the ranked validations of the candidates, null if they were not validated
+     */
+    public List<PatchValidation> getValidations() {
+        return validations;
+    }
+
+    public void setValidations(List<PatchValidation> validations) {
+        this.validations = validations;
+    }
+
+    /**
+     * @return the phases measured in the JVM that ran the engine, null if the engine did not report them
+     */
+    public RepairMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(RepairMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    void setCached(boolean cached) {
+        this.cached = cached;
+    }
+}
@@ -0,0 +1,108 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Races jobs differing only by their engine configuration in forked workers, at most <code>nbWorkers</code> at a time,
+ * all of them within the time budget of the race. The race stops at the first job whose outcome is a fix: the other
+ * workers are killed and the jobs not started are dropped.
+ */
+public class RepairPortfolio {
+
+    public static final String CANCELLED = "CANCELLED";
+
+    private static final long KILL_TIMEOUT_IN_MILLIS = 10000;
+
+    private final ForkedRepairLauncher launcher;
+    private final int nbWorkers;
+    private final long timeoutInMillis;
+    private final long budgetInMillis;
+
+    /**
+     * @param timeoutInMillis the time of each job
+     * @param budgetInMillis the time of the whole race, a job is given at most the time left
+     */
+    public RepairPortfolio(ForkedRepairLauncher launcher, int nbWorkers, long timeoutInMillis, long budgetInMillis) {
+        this.launcher = launcher;
+        this.nbWorkers = nbWorkers;
+        this.timeoutInMillis = timeoutInMillis;
+        this.budgetInMillis = budgetInMillis;
+    }
+
+    /**
+     * @return whether the outcome of the job stops the race, by default when it has patches
+     */
+    protected boolean isFix(RepairJob job, RepairOutcome outcome) {
+        return outcome.hasPatches();
+    }
+
+    /**
+     * @param jobs the jobs, in the order they must be started
+     * @return the outcomes in the order of the jobs, with the CANCELLED status for the jobs stopped by the winner
+     */
+    public List<RepairOutcome> race(List<RepairJob> jobs) throws InterruptedException {
+        final long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(nbWorkers, jobs.size())));
+        CompletionService<RepairOutcome> completionService = new ExecutorCompletionService<>(executor);
+        Map<Future<RepairOutcome>, Integer> indexes = new HashMap<>();
+        RepairOutcome[] outcomes = new RepairOutcome[jobs.size()];
+        try {
+            for (int i = 0; i < jobs.size(); i++) {
+                final RepairJob job = jobs.get(i);
+                indexes.put(completionService.submit(new Callable<RepairOutcome>() {
+                    @Override
+                    public RepairOutcome call() throws Exception {
+                        long remaining = start + budgetInMillis - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            return RepairOutcome.failure(job.getName(), "TIMEOUT", 0, "Portfolio budget exhausted before the start");
+                        }
+                        return launcher.launch(job, Math.min(timeoutInMillis, remaining));
+                    }
+                }), i);
+            }
+
+            for (int i = 0; i < jobs.size(); i++) {
+                Future<RepairOutcome> future = completionService.take();
+                int index = indexes.remove(future);
+                RepairOutcome outcome;
+                try {
+                    outcome = future.get();
+                } catch (ExecutionException e) {
+                    outcome = RepairOutcome.failure(jobs.get(index).getName(), "ERROR", System.currentTimeMillis() - start, String.valueOf(e.getCause()));
+                }
+                outcomes[index] = outcome;
+                if (isFix(jobs.get(index), outcome)) {
+                    break;
+                }
+            }
+        } finally {
+            // interrupting a launch kills its worker
+            for (Future<RepairOutcome> future : indexes.keySet()) {
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+            executor.awaitTermination(KILL_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        List<RepairOutcome> result = new ArrayList<>();
+        for (int i = 0; i < outcomes.length; i++) {
+            if (outcomes[i] == null) {
+                // an error keeps the outcome out of the result cache
+                outcomes[i] = RepairOutcome.failure(jobs.get(i).getName(), CANCELLED, System.currentTimeMillis() - start, "Stopped, another configuration found a patch");
+            }
+            result.add(outcomes[i]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,359 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Progress of a running repair, observed by sampling the stack of the thread running the engine:
+ * the phase is given by the packages of the engine on the stack. A statement is examined each time the engine
+ * starts collecting angelic values, a solver invocation or a test execution is counted each time one starts.
+ * An invocation shorter than the sampling interval may be missed, the counts are lower bounds.
+ *
+ * The progress is exposed as an MBean and logged periodically. A forked worker also saves it to a file,
+ * mirrored in the Maven JVM by {@link ForkedRepairLauncher}.
+ */
+public class RepairProgress implements RepairProgressMBean {
+
+    static final long SAMPLE_INTERVAL_IN_MILLIS = 50;
+    private static final long WRITE_INTERVAL_IN_MILLIS = 1000;
+
+    static final String SOLVER = "solver";
+    static final String LOCALIZATION = "localization";
+    static final String SYNTHESIS = "synthesis";
+    static final String ANGELIC_VALUES = "angelic-values";
+    static final String TEST_EXECUTION = "test-execution";
+    static final String MODEL_BUILDING = "model-building";
+    static final String RUNNING = "running";
+
+    static final String STATEMENTS_EXAMINED = "statements-examined";
+    static final String SOLVER_INVOCATIONS = "solver-invocations";
+    static final String TEST_EXECUTIONS = "test-executions";
+
+    /**
+     * The phases with the packages of their frames, the first phase with a frame on the stack wins:
+     * the tests run to collect the angelic values are part of the collection.
+     */
+    private static final String[][] PHASES = {
+            {SOLVER, "org.smtlib.", "fr.inria.lille.commons.synthesis.smt.solver."},
+            {LOCALIZATION, "com.gzoltar.", "fr.inria.lille.localization."},
+            {SYNTHESIS, "fr.inria.lille.commons.synthesis.", "fr.inria.lille.repair.synthesis."},
+            {ANGELIC_VALUES, "fr.inria.lille.repair.nopol.synth.", "fr.inria.lille.commons.trace."},
+            {TEST_EXECUTION, "xxl.java.junit.", "org.junit.runner.", "junit.framework."},
+            {MODEL_BUILDING, "spoon.", "org.eclipse.jdt."}
+    };
+
+    private static final String[] TEST_PACKAGES = {"xxl.java.junit.", "org.junit.runner.", "junit.framework."};
+
+    private final String jobName;
+    private final long budgetInMillis;
+    private final int statementsTotal;
+    private final Map<String, Long> phaseTimes = new LinkedHashMap<>();
+    private final long startTime = System.currentTimeMillis();
+    private long lastSampleTime = startTime;
+    private long elapsedInMillis;
+    private String phase = RUNNING;
+    private boolean runningTests;
+    private int statementsExamined;
+    private int solverInvocations;
+    private int testExecutions;
+    private Timer timer;
+
+    public RepairProgress(String jobName, long budgetInMillis, int statementsTotal) {
+        this.jobName = jobName;
+        this.budgetInMillis = budgetInMillis;
+        this.statementsTotal = statementsTotal;
+    }
+
+    /**
+     * Starts sampling the thread running the job every {@value #SAMPLE_INTERVAL_IN_MILLIS} ms and registers the MBean.
+     * The progress is logged every {@link RepairJob#getProgressIntervalInSeconds()} and, if a file is given, saved to it every second.
+     */
+    public static RepairProgress monitor(final Thread thread, RepairJob job, final File file) {
+        final RepairProgress progress = new RepairProgress(job.getName(), TimeUnit.MINUTES.toMillis(job.getMaxTimeInMinutes()), job.getNbSuspiciousStatements());
+        final long logInterval = TimeUnit.SECONDS.toMillis(job.getProgressIntervalInSeconds());
+        progress.register();
+        progress.timer = new Timer("nopol-progress", true);
+        progress.timer.schedule(new TimerTask() {
+            private long nextLog = logInterval;
+            private long nextWrite = WRITE_INTERVAL_IN_MILLIS;
+
+            @Override
+            public void run() {
+                progress.sample(thread.getStackTrace(), System.currentTimeMillis());
+                long elapsed = progress.getElapsedInMillis();
+                if (logInterval > 0 && elapsed >= nextLog) {
+                    System.out.println(progress);
+                    nextLog += logInterval;
+                }
+                if (file != null && elapsed >= nextWrite) {
+                    progress.write(file);
+                    nextWrite = elapsed + WRITE_INTERVAL_IN_MILLIS;
+                }
+            }
+        }, SAMPLE_INTERVAL_IN_MILLIS, SAMPLE_INTERVAL_IN_MILLIS);
+        return progress;
+    }
+
+    /**
+     * Stops the sampling, if any, and unregisters the MBean.
+     */
+    public void stop() {
+        if (timer != null) {
+            timer.cancel();
+        }
+        unregister();
+    }
+
+    /**
+     * Adds the sampled time of each phase and the counts of the engine events to the metrics of the job.
+     */
+    synchronized void recordTo(RepairMetrics metrics) {
+        for (Map.Entry<String, Long> entry : phaseTimes.entrySet()) {
+            metrics.addEnginePhase(entry.getKey(), entry.getValue());
+        }
+        metrics.addEngineEvents(STATEMENTS_EXAMINED, statementsExamined);
+        metrics.addEngineEvents(SOLVER_INVOCATIONS, solverInvocations);
+        metrics.addEngineEvents(TEST_EXECUTIONS, testExecutions);
+    }
+
+    /**
+     * @return the phase of the first frame of the stack in the package of a phase, {@link #RUNNING} if none is
+     */
+    static String getPhase(StackTraceElement[] stack) {
+        for (String[] phase : PHASES) {
+            for (int i = 1; i < phase.length; i++) {
+                if (hasFrameIn(stack, phase[i])) {
+                    return phase[0];
+                }
+            }
+        }
+        return RUNNING;
+    }
+
+    private static boolean hasFrameIn(StackTraceElement[] stack, String packageName) {
+        for (StackTraceElement element : stack) {
+            if (element.getClassName().startsWith(packageName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized void sample(StackTraceElement[] stack, long time) {
+        String current = getPhase(stack);
+        Long phaseTime = phaseTimes.get(current);
+        phaseTimes.put(current, (phaseTime == null ? 0 : phaseTime) + time - lastSampleTime);
+        if (!current.equals(phase)) {
+            if (SOLVER.equals(current)) {
+                solverInvocations++;
+            } else if (ANGELIC_VALUES.equals(current)) {
+                statementsExamined++;
+            }
+        }
+        boolean tests = false;
+        for (String testPackage : TEST_PACKAGES) {
+            tests |= hasFrameIn(stack, testPackage);
+        }
+        if (tests && !runningTests) {
+            testExecutions++;
+        }
+        runningTests = tests;
+        phase = current;
+        lastSampleTime = time;
+        elapsedInMillis = time - startTime;
+    }
+
+    synchronized Properties toProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("phase", phase);
+        properties.setProperty("elapsed", String.valueOf(elapsedInMillis));
+        properties.setProperty("statementsExamined", String.valueOf(statementsExamined));
+        properties.setProperty("solverInvocations", String.valueOf(solverInvocations));
+        properties.setProperty("testExecutions", String.valueOf(testExecutions));
+        StringBuilder phases = new StringBuilder();
+        for (Map.Entry<String, Long> entry : phaseTimes.entrySet()) {
+            phases.append(phases.length() > 0 ? "," : "").append(entry.getKey());
+            properties.setProperty("time." + entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        // in the order of the phases
+        properties.setProperty("phases", phases.toString());
+        return properties;
+    }
+
+    /**
+     * Replaces the progress by the one saved by a worker.
+     */
+    synchronized void update(Properties properties) {
+        phase = properties.getProperty("phase", RUNNING);
+        elapsedInMillis = parseLong(properties.getProperty("elapsed"));
+        statementsExamined = (int) parseLong(properties.getProperty("statementsExamined"));
+        solverInvocations = (int) parseLong(properties.getProperty("solverInvocations"));
+        testExecutions = (int) parseLong(properties.getProperty("testExecutions"));
+        phaseTimes.clear();
+        for (String name : properties.getProperty("phases", "").split(",")) {
+            if (!name.isEmpty()) {
+                phaseTimes.put(name, parseLong(properties.getProperty("time." + name)));
+            }
+        }
+    }
+
+    void write(File file) {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmpFile)) {
+            toProperties().store(out, null);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if (!tmpFile.renameTo(file)) {
+            file.delete();
+            tmpFile.renameTo(file);
+        }
+    }
+
+    /**
+     * @return the progress saved in the file, null if there is none yet
+     */
+    static Properties read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+        return properties;
+    }
+
+    void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private ObjectName getObjectName() throws JMException {
+        return new ObjectName("fr.inria.spirals.nopol:type=RepairProgress,name=" + ObjectName.quote(jobName));
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value == null ? 0 : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    synchronized long getElapsedInMillis() {
+        return elapsedInMillis;
+    }
+
+    @Override
+    public String getJobName() {
+        return jobName;
+    }
+
+    @Override
+    public synchronized String getPhase() {
+        return phase;
+    }
+
+    @Override
+    public synchronized long getElapsedSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(elapsedInMillis);
+    }
+
+    @Override
+    public synchronized long getRemainingSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(Math.max(0, budgetInMillis - elapsedInMillis));
+    }
+
+    @Override
+    public synchronized int getStatementsExamined() {
+        return statementsExamined;
+    }
+
+    @Override
+    public int getStatementsTotal() {
+        return statementsTotal;
+    }
+
+    @Override
+    public synchronized long getAngelicValuesTimeInMillis() {
+        Long time = phaseTimes.get(ANGELIC_VALUES);
+        return time == null ? 0 : time;
+    }
+
+    @Override
+    public synchronized int getSolverInvocations() {
+        return solverInvocations;
+    }
+
+    @Override
+    public synchronized long getSolverTimeInMillis() {
+        Long time = phaseTimes.get(SOLVER);
+        return time == null ? 0 : time;
+    }
+
+    @Override
+    public synchronized long getAverageSolverLatencyInMillis() {
+        return solverInvocations == 0 ? 0 : getSolverTimeInMillis() / solverInvocations;
+    }
+
+    @Override
+    public synchronized int getTestExecutions() {
+        return testExecutions;
+    }
+
+    @Override
+    public synchronized String getPhaseTimes() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : phaseTimes.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey()).append('=').append(entry.getValue()).append("ms");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return jobName + ": " + phase + ", statements " + statementsExamined + "/" + (statementsTotal < 0 ? "?" : statementsTotal)
+                + ", solver " + solverInvocations + " calls (" + getAverageSolverLatencyInMillis() + " ms avg)"
+                + ", " + testExecutions + " test executions, " + getElapsedSeconds() + " s elapsed, " + getRemainingSeconds() + " s left";
+    }
+}
@@ -0,0 +1,44 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+/**
+ * Management interface of a running repair, registered under
+ * <code>fr.inria.spirals.nopol:type=RepairProgress,name=&lt;job name&gt;</code>.
+ *
+ * @see RepairProgress
+ */
+public interface RepairProgressMBean {
+
+    String getJobName();
+
+    /**
+     * @return the current phase of the engine: model-building, localization, test-execution,
+     * angelic-values, synthesis, solver, or running when none is recognized
+     */
+    String getPhase();
+
+    long getElapsedSeconds();
+
+    long getRemainingSeconds();
+
+    int getStatementsExamined();
+
+    /**
+     * @return the number of suspicious statements of the job, -1 if the coverage was not computed
+     */
+    int getStatementsTotal();
+
+    long getAngelicValuesTimeInMillis();
+
+    int getSolverInvocations();
+
+    long getSolverTimeInMillis();
+
+    long getAverageSolverLatencyInMillis();
+
+    int getTestExecutions();
+
+    /**
+     * @return the time spent in each phase, e.g. <code>localization=1200ms, solver=300ms</code>
+     */
+    String getPhaseTimes();
+}
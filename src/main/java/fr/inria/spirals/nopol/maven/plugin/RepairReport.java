@@ -0,0 +1,321 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Machine readable results of a run, written in the result directory:
+ * <ul>
+ *     <li><code>results.jsonl</code>, appended with one <code>job</code> line per repair job and one <code>run</code> line per run,</li>
+ *     <li><code>nopol.prom</code>, replaced at each run, in the Prometheus text format for a node exporter textfile collector.</li>
+ * </ul>
+ * The phases of a job are the ones measured in the JVM that ran the engine, the phases of the run are the ones of the plugin.
+ */
+public class RepairReport {
+
+    static final String RESULTS_FILE = "results.jsonl";
+    static final String METRICS_FILE = "nopol.prom";
+
+    private final File directory;
+    private final long timestamp;
+    private final List<RepairOutcome> outcomes = new ArrayList<>();
+    private final List<Integer> nbTestMethods = new ArrayList<>();
+
+    public RepairReport(File directory, long timestamp) {
+        this.directory = directory;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @param nbTestMethods the number of test methods the engine executes for the job
+     */
+    public void add(RepairOutcome outcome, int nbTestMethods) {
+        this.outcomes.add(outcome);
+        this.nbTestMethods.add(nbTestMethods);
+    }
+
+    public void write(RepairMetrics runMetrics, long durationInMilliseconds) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(new File(directory, RESULTS_FILE), true), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < outcomes.size(); i++) {
+                writer.write(toJson(outcomes.get(i), nbTestMethods.get(i)));
+                writer.write('\n');
+            }
+            writer.write(toJson(runMetrics, durationInMilliseconds));
+            writer.write('\n');
+        }
+
+        // the collector must never read a partially written file
+        File metricsFile = new File(directory, METRICS_FILE);
+        File tmpFile = new File(directory, METRICS_FILE + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+            writer.write(toPrometheus(runMetrics, durationInMilliseconds));
+        }
+        if (!tmpFile.renameTo(metricsFile)) {
+            metricsFile.delete();
+            tmpFile.renameTo(metricsFile);
+        }
+    }
+
+    String toJson(RepairOutcome outcome, int nbTestMethods) {
+        StringBuilder sb = new StringBuilder("{");
+        appendField(sb, "type", "job").append(',');
+        appendField(sb, "timestamp", timestamp).append(',');
+        appendField(sb, "job", outcome.getJobName()).append(',');
+        appendField(sb, "status", outcome.getStatus()).append(',');
+        appendField(sb, "cached", outcome.isCached()).append(',');
+        appendField(sb, "durationInMilliseconds", outcome.getDurationInMilliseconds()).append(',');
+        appendField(sb, "angelicValues", outcome.getNbAngelicValues()).append(',');
+        appendField(sb, "statements", outcome.getNbStatements()).append(',');
+        appendField(sb, "testMethods", nbTestMethods).append(',');
+        appendString(sb, "patches").append(":[");
+        for (int i = 0; i < outcome.getPatches().size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendString(sb, outcome.getPatches().get(i));
+        }
+        sb.append("],");
+        if (outcome.getValidations() != null) {
+            appendValidations(sb, outcome.getValidations()).append(',');
+        }
+        appendField(sb, "error", outcome.getError());
+        RepairMetrics metrics = outcome.getMetrics();
+        if (metrics != null) {
+            sb.append(',');
+            appendPhases(sb, metrics).append(',');
+            if (!metrics.getEnginePhases().isEmpty()) {
+                appendEnginePhases(sb, metrics).append(',');
+            }
+            if (!metrics.getEngineEvents().isEmpty()) {
+                appendEngineEvents(sb, metrics).append(',');
+            }
+            appendField(sb, "peakHeapInBytes", metrics.getPeakHeapInBytes());
+        }
+        return sb.append('}').toString();
+    }
+
+    String toJson(RepairMetrics runMetrics, long durationInMilliseconds) {
+        int nbPatched = 0;
+        for (RepairOutcome outcome : outcomes) {
+            if (outcome.hasPatches()) {
+                nbPatched++;
+            }
+        }
+        StringBuilder sb = new StringBuilder("{");
+        appendField(sb, "type", "run").append(',');
+        appendField(sb, "timestamp", timestamp).append(',');
+        appendField(sb, "durationInMilliseconds", durationInMilliseconds).append(',');
+        appendField(sb, "jobs", outcomes.size()).append(',');
+        appendField(sb, "patched", nbPatched).append(',');
+        appendPhases(sb, runMetrics).append(',');
+        appendField(sb, "peakHeapInBytes", runMetrics.getPeakHeapInBytes());
+        return sb.append('}').toString();
+    }
+
+    String toPrometheus(RepairMetrics runMetrics, long durationInMilliseconds) {
+        Map<String, Integer> statuses = new LinkedHashMap<>();
+        for (RepairOutcome outcome : outcomes) {
+            Integer count = statuses.get(outcome.getStatus());
+            statuses.put(outcome.getStatus(), count == null ? 1 : count + 1);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        header(sb, "nopol_run_timestamp_seconds", "Start time of the last run.");
+        sb.append("nopol_run_timestamp_seconds ").append(seconds(timestamp)).append('\n');
+        header(sb, "nopol_run_duration_seconds", "Wall time of the last run.");
+        sb.append("nopol_run_duration_seconds ").append(seconds(durationInMilliseconds)).append('\n');
+
+        header(sb, "nopol_jobs", "Repair jobs of the last run by status.");
+        for (Map.Entry<String, Integer> entry : statuses.entrySet()) {
+            sb.append("nopol_jobs{status=\"").append(label(entry.getKey())).append("\"} ").append(entry.getValue()).append('\n');
+        }
+        header(sb, "nopol_job_patches", "Patches found by each repair job of the last run.");
+        for (RepairOutcome outcome : outcomes) {
+            sb.append("nopol_job_patches{job=\"").append(label(outcome.getJobName())).append("\"} ").append(outcome.getPatches().size()).append('\n');
+        }
+        header(sb, "nopol_job_test_methods", "Test methods executed by the engine for each repair job of the last run.");
+        for (int i = 0; i < outcomes.size(); i++) {
+            sb.append("nopol_job_test_methods{job=\"").append(label(outcomes.get(i).getJobName())).append("\"} ").append(nbTestMethods.get(i)).append('\n');
+        }
+
+        header(sb, "nopol_phase_wall_seconds", "Wall time of each phase of the last run.");
+        appendPhaseSamples(sb, "nopol_phase_wall_seconds", runMetrics, 0);
+        header(sb, "nopol_phase_cpu_seconds", "CPU time of the thread running each phase of the last run.");
+        appendPhaseSamples(sb, "nopol_phase_cpu_seconds", runMetrics, 1);
+
+        header(sb, "nopol_engine_phase_wall_seconds", "Wall time of each phase of the engine, sampled, for each repair job of the last run.");
+        for (RepairOutcome outcome : outcomes) {
+            if (outcome.getMetrics() == null) {
+                continue;
+            }
+            for (Map.Entry<String, Long> phase : outcome.getMetrics().getEnginePhases().entrySet()) {
+                sb.append("nopol_engine_phase_wall_seconds{job=\"").append(label(outcome.getJobName())).append("\",phase=\"").append(label(phase.getKey())).append("\"} ")
+                        .append(seconds(phase.getValue())).append('\n');
+            }
+        }
+        header(sb, "nopol_engine_events", "Events of the engine, counted by sampling, for each repair job of the last run.");
+        for (RepairOutcome outcome : outcomes) {
+            if (outcome.getMetrics() == null) {
+                continue;
+            }
+            for (Map.Entry<String, Long> event : outcome.getMetrics().getEngineEvents().entrySet()) {
+                sb.append("nopol_engine_events{job=\"").append(label(outcome.getJobName())).append("\",event=\"").append(label(event.getKey())).append("\"} ")
+                        .append(event.getValue()).append('\n');
+            }
+        }
+
+        header(sb, "nopol_peak_heap_bytes", "Peak heap of the plugin JVM and of the engine JVM of each job.");
+        sb.append("nopol_peak_heap_bytes{job=\"\"} ").append(runMetrics.getPeakHeapInBytes()).append('\n');
+        for (RepairOutcome outcome : outcomes) {
+            if (outcome.getMetrics() != null) {
+                sb.append("nopol_peak_heap_bytes{job=\"").append(label(outcome.getJobName())).append("\"} ").append(outcome.getMetrics().getPeakHeapInBytes()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private void appendPhaseSamples(StringBuilder sb, String name, RepairMetrics runMetrics, int index) {
+        // the phases of the plugin have an empty job label
+        for (Map.Entry<String, long[]> phase : runMetrics.getPhases().entrySet()) {
+            sb.append(name).append("{job=\"\",phase=\"").append(label(phase.getKey())).append("\"} ").append(seconds(phase.getValue()[index])).append('\n');
+        }
+        for (RepairOutcome outcome : outcomes) {
+            if (outcome.getMetrics() == null) {
+                continue;
+            }
+            for (Map.Entry<String, long[]> phase : outcome.getMetrics().getPhases().entrySet()) {
+                sb.append(name).append("{job=\"").append(label(outcome.getJobName())).append("\",phase=\"").append(label(phase.getKey())).append("\"} ")
+                        .append(seconds(phase.getValue()[index])).append('\n');
+            }
+        }
+    }
+
+    private static void header(StringBuilder sb, String name, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" gauge\n");
+    }
+
+    private static String seconds(long millis) {
+        return String.format(Locale.ENGLISH, "%.3f", millis / 1000.0);
+    }
+
+    private static String label(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static StringBuilder appendPhases(StringBuilder sb, RepairMetrics metrics) {
+        appendString(sb, "phases").append(":{");
+        boolean first = true;
+        for (Map.Entry<String, long[]> phase : metrics.getPhases().entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            appendString(sb, phase.getKey()).append(":{");
+            appendField(sb, "wallTimeInMilliseconds", phase.getValue()[0]).append(',');
+            appendField(sb, "cpuTimeInMilliseconds", phase.getValue()[1]).append('}');
+        }
+        return sb.append('}');
+    }
+
+    private static StringBuilder appendEnginePhases(StringBuilder sb, RepairMetrics metrics) {
+        appendString(sb, "enginePhases").append(":{");
+        boolean first = true;
+        for (Map.Entry<String, Long> phase : metrics.getEnginePhases().entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            appendString(sb, phase.getKey()).append(":{");
+            appendField(sb, "wallTimeInMilliseconds", phase.getValue()).append('}');
+        }
+        return sb.append('}');
+    }
+
+    private static StringBuilder appendEngineEvents(StringBuilder sb, RepairMetrics metrics) {
+        appendString(sb, "engineEvents").append(":{");
+        boolean first = true;
+        for (Map.Entry<String, Long> event : metrics.getEngineEvents().entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            appendField(sb, event.getKey(), event.getValue());
+        }
+        return sb.append('}');
+    }
+
+    private static StringBuilder appendValidations(StringBuilder sb, List<PatchValidation> validations) {
+        appendString(sb, "validations").append(":[");
+        for (int i = 0; i < validations.size(); i++) {
+            PatchValidation validation = validations.get(i);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('{');
+            appendField(sb, "patch", validation.getCandidate().getExpression()).append(',');
+            appendField(sb, "class", validation.getCandidate().getClassName()).append(',');
+            appendField(sb, "line", validation.getCandidate().getLineNumber()).append(',');
+            appendField(sb, "status", validation.getStatus()).append(',');
+            appendField(sb, "tests", validation.getNbTests()).append(',');
+            appendField(sb, "failures", validation.getNbFailures()).append(',');
+            appendField(sb, "durationInMilliseconds", validation.getDurationInMilliseconds()).append(',');
+            appendField(sb, "diff", validation.getDiff()).append('}');
+        }
+        return sb.append(']');
+    }
+
+    static StringBuilder appendField(StringBuilder sb, String name, Object value) {
+        appendString(sb, name).append(':');
+        if (value == null || value instanceof Number || value instanceof Boolean) {
+            return sb.append(value);
+        }
+        return appendString(sb, String.valueOf(value));
+    }
+
+    static StringBuilder appendString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"');
+    }
+}
@@ -0,0 +1,179 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Persistent cache of {@link RepairOutcome}s keyed by a hash of everything the repair depends on:
+ * the sources, the classpath, the tests and the engine configuration.
+ * Entries are evicted by age, then by total size, least recently used first.
+ */
+public class RepairResultCache {
+
+    private static final String EXTENSION = ".outcome";
+
+    private final File directory;
+    private final long maxSizeInBytes;
+    private final long maxAgeInMillis;
+
+    public RepairResultCache(File directory, long maxSizeInBytes, long maxAgeInMillis) {
+        this.directory = directory;
+        this.maxSizeInBytes = maxSizeInBytes;
+        this.maxAgeInMillis = maxAgeInMillis;
+    }
+
+    /**
+     * Hashes the content of the source folders and of the classpath.
+     * Directories are hashed file by file, jars by path, size and modification date.
+     */
+    public static String fingerprint(File[] sourceFolders, URL[] classpath) throws IOException {
+        MessageDigest digest = Hashes.newDigest();
+        for (File sourceFolder : sourceFolders) {
+            Hashes.update(digest, "source:" + sourceFolder.getAbsolutePath());
+            hashDirectory(digest, sourceFolder);
+        }
+        for (URL url : classpath) {
+            File file = new File(url.getPath());
+            Hashes.update(digest, "classpath:" + file.getAbsolutePath());
+            if (file.isDirectory()) {
+                hashDirectory(digest, file);
+            } else if (file.exists()) {
+                Hashes.update(digest, file.length() + ":" + file.lastModified());
+            }
+        }
+        return Hashes.toHex(digest.digest());
+    }
+
+    /**
+     * @return the cache key of the job given the fingerprint of its sources and classpath
+     */
+    public static String keyOf(String fingerprint, RepairJob job) {
+        MessageDigest digest = Hashes.newDigest();
+        Hashes.update(digest, fingerprint);
+        List<String> tests = job.getFailingTestList();
+        Collections.sort(tests);
+        Hashes.update(digest, "tests:" + tests);
+        List<String> ignored = new ArrayList<>(job.getTestMethodsToIgnore());
+        Collections.sort(ignored);
+        Hashes.update(digest, "ignored:" + ignored);
+        if (!job.getTestMethodsToValidate().isEmpty()) {
+            // the same engine run, other validations
+            List<String> validated = new ArrayList<>(job.getTestMethodsToValidate());
+            Collections.sort(validated);
+            Hashes.update(digest, "validated:" + validated);
+        }
+        Hashes.update(digest, "config:" + job.getType() + "," + job.getSynthesis() + "," + job.getSolver() + "," + job.getLocalizer()
+                + "," + job.getComplianceLevel() + "," + job.getMaxTimeInMinutes() + "," + job.getMaxTimeEachTypeOfFixInMinutes()
+                + "," + job.getTimeoutTestExecution() + "," + job.isOnlyOneSynthesisResult() + "," + job.getMaxPatches());
+        return Hashes.toHex(digest.digest());
+    }
+
+    public RepairOutcome get(String key) {
+        File file = new File(directory, key + EXTENSION);
+        if (!file.exists()) {
+            return null;
+        }
+        if (System.currentTimeMillis() - file.lastModified() > maxAgeInMillis) {
+            file.delete();
+            return null;
+        }
+        try {
+            RepairOutcome outcome = RepairWorker.readObject(file, RepairOutcome.class);
+            file.setLastModified(System.currentTimeMillis());
+            outcome.setCached(true);
+            return outcome;
+        } catch (IOException | ClassNotFoundException e) {
+            // written by another version of the plugin
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the outcome, unless the repair itself failed to run.
+     */
+    public void put(String key, RepairOutcome outcome) {
+        if (outcome.getError() != null) {
+            return;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            System.err.println("Unable to create the cache directory " + directory);
+            return;
+        }
+        File file = new File(directory, key + EXTENSION);
+        File tmpFile = new File(directory, key + EXTENSION + ".tmp");
+        try {
+            RepairWorker.writeObject(tmpFile, outcome);
+            if (!tmpFile.renameTo(file)) {
+                file.delete();
+                tmpFile.renameTo(file);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmpFile.delete();
+        }
+        evict();
+    }
+
+    void evict() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<File> entries = new ArrayList<>();
+        long totalSize = 0;
+        for (File file : files) {
+            if (!file.getName().endsWith(EXTENSION)) {
+                continue;
+            }
+            if (now - file.lastModified() > maxAgeInMillis) {
+                file.delete();
+            } else {
+                entries.add(file);
+                totalSize += file.length();
+            }
+        }
+        Collections.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+        for (int i = 0; i < entries.size() && totalSize > maxSizeInBytes; i++) {
+            totalSize -= entries.get(i).length();
+            entries.get(i).delete();
+        }
+    }
+
+    private static void hashDirectory(final MessageDigest digest, final File directory) throws IOException {
+        if (!directory.isDirectory()) {
+            return;
+        }
+        final List<Path> files = new ArrayList<>();
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(files);
+        for (Path file : files) {
+            Hashes.update(digest, directory.toPath().relativize(file).toString());
+            Hashes.update(digest, new FileInputStream(file.toFile()));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import fr.inria.lille.repair.common.synth.StatementType;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Engine timeouts derived from the test durations of the surefire reports and from the time budget of the job,
+ * instead of constants sized for the slowest projects.
+ */
+public class RepairTimeouts {
+
+    private final double factor;
+    private final int minTimeoutInSeconds;
+    private final int maxTimeoutInSeconds;
+
+    /**
+     * @param factor multiple of the measured duration given to a test execution
+     * @param minTimeoutInSeconds floor of the test execution timeout, for the class loading and the instrumentation
+     * @param maxTimeoutInSeconds cap of the test execution timeout
+     */
+    public RepairTimeouts(double factor, int minTimeoutInSeconds, int maxTimeoutInSeconds) {
+        this.factor = factor;
+        this.minTimeoutInSeconds = minTimeoutInSeconds;
+        this.maxTimeoutInSeconds = Math.max(minTimeoutInSeconds, maxTimeoutInSeconds);
+    }
+
+    /**
+     * Sets the test execution timeout and the budget of each type of fix of the job.
+     */
+    public void apply(RepairJob job, List<TestCaseResult> testResults) {
+        job.setTimeoutTestExecution(getTestExecutionTimeout(job, testResults));
+        job.setMaxTimeEachTypeOfFixInMinutes(getMaxTimeEachTypeOfFix(job.getType(), job.getMaxTimeInMinutes()));
+    }
+
+    /**
+     * The engine runs the tests of a job in one execution bounded by this timeout, so it is based
+     * on the total duration of the test methods of the job that are not ignored.
+     *
+     * @return the timeout in seconds
+     */
+    public int getTestExecutionTimeout(RepairJob job, List<TestCaseResult> testResults) {
+        Set<String> classes = new HashSet<>(job.getFailingTestList());
+        Set<String> ignored = new HashSet<>(job.getTestMethodsToIgnore());
+        double duration = 0;
+        for (TestCaseResult testResult : testResults) {
+            if (classes.contains(testResult.getClassName()) && !ignored.contains(testResult.getId())) {
+                duration += testResult.getTimeInSeconds();
+            }
+        }
+        long timeout = (long) Math.ceil(duration * factor);
+        return (int) Math.min(maxTimeoutInSeconds, Math.max(minTimeoutInSeconds, timeout));
+    }
+
+    /**
+     * Splits the budget of the job between the types of fix the engine tries one after the other.
+     *
+     * @return the budget of each type of fix in minutes
+     */
+    public static int getMaxTimeEachTypeOfFix(StatementType type, int maxTimeInMinutes) {
+        int nbTypes = type != null && type.name().contains("_THEN_") ? 2 : 1;
+        return Math.max(1, maxTimeInMinutes / nbTypes);
+    }
+}
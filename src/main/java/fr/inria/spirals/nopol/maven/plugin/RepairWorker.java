@@ -0,0 +1,100 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import fr.inria.lille.repair.nopol.NoPol;
+import fr.inria.lille.repair.nopol.NopolResult;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry point of a forked repair JVM: reads a serialized {@link RepairJob},
+ * runs Nopol on it and writes back a {@link RepairOutcome}.
+ *
+ * Usage: <code>RepairWorker &lt;job file&gt; &lt;outcome file&gt; [&lt;progress file&gt;]</code>
+ *
+ * @see RepairProgress
+ */
+public class RepairWorker {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: " + RepairWorker.class.getName() + " <job file> <outcome file> [<progress file>]");
+            System.exit(2);
+        }
+        RepairMetrics metrics = new RepairMetrics();
+        metrics.add("worker-startup", System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime(),
+                TimeUnit.NANOSECONDS.toMillis(ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime()));
+        RepairJob job = readObject(new File(args[0]), RepairJob.class);
+        RepairOutcome outcome = repair(job, metrics, args.length == 3 ? new File(args[2]) : null);
+        writeObject(new File(args[1]), outcome);
+        // the engine may leave non daemon threads behind
+        System.exit(0);
+    }
+
+    public static RepairOutcome repair(RepairJob job) {
+        return repair(job, new RepairMetrics(), null);
+    }
+
+    /**
+     * Runs the job, recording the setup and the execution of the engine in the given metrics.
+     * The progress of the engine is monitored and saved to the progress file, if any, and its sampled phases
+     * and events are added to the metrics once the engine is done.
+     */
+    static RepairOutcome repair(RepairJob job, RepairMetrics metrics, File progressFile) {
+        long start = System.currentTimeMillis();
+        // the JVM may have run other repairs
+        RepairMetrics.resetPeakHeap();
+        RepairOutcome outcome;
+        RepairProgress progress = RepairProgress.monitor(Thread.currentThread(), job, progressFile);
+        try {
+            setGzoltarDebug(job.isGzoltarDebug());
+            RepairMetrics.Phase phase = metrics.start("engine-setup");
+            NoPol nopol = new NoPol(job.toNopolContext());
+            phase.stop();
+            phase = metrics.start("engine");
+            NopolResult result = nopol.build();
+            phase.stop();
+            outcome = RepairOutcome.from(job.getName(), result);
+        } catch (Exception e) {
+            e.printStackTrace();
+            outcome = RepairOutcome.failure(job.getName(), "ERROR", System.currentTimeMillis() - start, String.valueOf(e));
+        } finally {
+            progress.stop();
+        }
+        progress.recordTo(metrics);
+        metrics.recordPeakHeap();
+        outcome.setMetrics(metrics);
+        return outcome;
+    }
+
+    static void setGzoltarDebug(boolean debugValue) {
+        try {
+            Field debug = com.gzoltar.core.agent.Launcher.class.getDeclaredField("debug");
+            debug.setAccessible(true);
+            debug.setBoolean(null, debugValue);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            e.printStackTrace();
+        }
+    }
+
+    static <T> T readObject(File file, Class<T> type) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return type.cast(in.readObject());
+        }
+    }
+
+    static void writeObject(File file, Object object) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeObject(object);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.jar.JarEntry;
+
+/**
+ * Extracts a solver binary shipped as a classpath resource once per content and platform,
+ * in a directory shared by all builds of the machine.
+ *
+ * The binary lives in <code>&lt;directory&gt;/&lt;platform&gt;/&lt;content key&gt;/</code>. When the resource comes
+ * from a jar, the content key is the CRC and size of the jar entry, so a cache hit does not read the resource.
+ * Extraction is done under a file lock and published with an atomic move, so concurrent builds never see
+ * a partially written binary.
+ */
+public class SolverBinaryCache {
+
+    private static final Object LOCK = new Object();
+
+    private final File directory;
+
+    public SolverBinaryCache(File directory) {
+        this.directory = directory;
+    }
+
+    public File extract(ClassLoader classLoader, String resourcePath) throws IOException {
+        URL resource = classLoader.getResource(resourcePath);
+        if (resource == null) {
+            throw new IOException("Resource not found: " + resourcePath);
+        }
+
+        long expectedSize = -1;
+        String contentKey = null;
+        URLConnection connection = resource.openConnection();
+        if (connection instanceof JarURLConnection) {
+            JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+            if (entry != null && entry.getCrc() != -1 && entry.getSize() != -1) {
+                expectedSize = entry.getSize();
+                contentKey = "crc32-" + Long.toHexString(entry.getCrc()) + "-" + expectedSize;
+            }
+        }
+        if (contentKey == null) {
+            contentKey = "sha256-" + Hashes.sha256(resource.openStream());
+        }
+
+        String fileName = new File(resourcePath).getName();
+        File targetDirectory = new File(new File(directory, getPlatform()), contentKey);
+        File target = new File(targetDirectory, fileName);
+        if (isValid(target, expectedSize)) {
+            return target;
+        }
+
+        // FileLock only excludes other processes, threads of this JVM are serialized by the monitor
+        synchronized (LOCK) {
+            if (!targetDirectory.exists() && !targetDirectory.mkdirs() && !targetDirectory.exists()) {
+                throw new IOException("Unable to create " + targetDirectory);
+            }
+            Path lockPath = new File(targetDirectory, ".lock").toPath();
+            try (FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = channel.lock()) {
+                if (isValid(target, expectedSize)) {
+                    return target;
+                }
+                Path tmpFile = Files.createTempFile(targetDirectory.toPath(), fileName, ".tmp");
+                try {
+                    try (InputStream in = resource.openStream()) {
+                        Files.copy(in, tmpFile, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    if (expectedSize != -1 && Files.size(tmpFile) != expectedSize) {
+                        throw new IOException("Truncated extraction of " + resourcePath);
+                    }
+                    tmpFile.toFile().setExecutable(true);
+                    Files.move(tmpFile, target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(tmpFile);
+                }
+            }
+        }
+        return target;
+    }
+
+    private static boolean isValid(File file, long expectedSize) {
+        return file.isFile() && file.canExecute() && (expectedSize == -1 || file.length() == expectedSize);
+    }
+
+    static String getPlatform() {
+        String os = System.getProperty("os.name").toLowerCase(Locale.ENGLISH).replaceAll("[^a-z0-9]", "");
+        String arch = System.getProperty("os.arch").toLowerCase(Locale.ENGLISH).replaceAll("[^a-z0-9_]", "");
+        return os + "-" + arch;
+    }
+}
@@ -0,0 +1,192 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Persistent index of the compilation units of the source folders: the top-level types each unit declares, so that
+ * a suspicious statement, e.g. <code>foo.A$1:5</code>, leads to its source file whatever the name of the file.
+ *
+ * An entry is keyed by the hash of the content of the unit and by the compliance level it is parsed with, only new
+ * or changed units are parsed again, without attribution. The entries are in
+ * <code>&lt;directory&gt;/&lt;2 first hash digits&gt;/&lt;hash&gt;-&lt;compliance level&gt;</code>, one type per line.
+ */
+public class SourceIndex {
+
+    // units parsed by the same compiler task, bounding the trees held at once
+    private static final int PARSE_BATCH_SIZE = 500;
+
+    private final File directory;
+    private final int complianceLevel;
+    private int nbParsedUnits;
+
+    public SourceIndex(File directory, int complianceLevel) {
+        this.directory = directory;
+        this.complianceLevel = complianceLevel;
+    }
+
+    /**
+     * @return the compilation unit of each top-level type of the source folders, the first folder winning
+     * @throws IOException if a unit cannot be read or the JVM has no Java compiler
+     */
+    public Map<String, File> getTypes(File[] sourceFolders) throws IOException {
+        Map<File, String> hashes = new LinkedHashMap<>();
+        Map<File, List<String>> types = new HashMap<>();
+        List<File> toParse = new ArrayList<>();
+        for (File file : SourceView.getJavaFiles(sourceFolders)) {
+            String hash;
+            try (FileInputStream in = new FileInputStream(file)) {
+                hash = Hashes.sha256(in);
+            }
+            hashes.put(file, hash);
+            File entry = getEntry(hash);
+            if (entry.isFile()) {
+                types.put(file, Files.readAllLines(entry.toPath(), StandardCharsets.UTF_8));
+            } else {
+                toParse.add(file);
+            }
+        }
+        for (int i = 0; i < toParse.size(); i += PARSE_BATCH_SIZE) {
+            Map<File, List<String>> parsed = parse(toParse.subList(i, Math.min(toParse.size(), i + PARSE_BATCH_SIZE)));
+            for (Map.Entry<File, List<String>> unit : parsed.entrySet()) {
+                types.put(unit.getKey(), unit.getValue());
+                store(getEntry(hashes.get(unit.getKey())), unit.getValue());
+            }
+            nbParsedUnits += parsed.size();
+        }
+
+        Map<String, File> result = new HashMap<>();
+        for (File file : hashes.keySet()) {
+            List<String> unitTypes = types.get(file);
+            if (unitTypes == null) {
+                continue;
+            }
+            for (String type : unitTypes) {
+                if (!type.isEmpty() && !result.containsKey(type)) {
+                    result.put(type, file);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param statements the statements, <code>Class:line</code>, most suspicious first
+     * @return the compilation units of the statements, in the order of their most suspicious statement
+     * @throws IOException if a unit cannot be read or the JVM has no Java compiler
+     */
+    public List<File> getUnits(File[] sourceFolders, Collection<String> statements) throws IOException {
+        Map<String, File> types = getTypes(sourceFolders);
+        Set<File> units = new LinkedHashSet<>();
+        for (String statement : statements) {
+            String className = TestCoverage.getClassName(statement);
+            if (className.contains("$")) {
+                className = className.substring(0, className.indexOf('$'));
+            }
+            File unit = types.get(className);
+            if (unit != null) {
+                units.add(unit);
+            }
+        }
+        return new ArrayList<>(units);
+    }
+
+    /**
+     * @return the number of units parsed by this index, the others being read from the cache
+     */
+    public int getNbParsedUnits() {
+        return nbParsedUnits;
+    }
+
+    private File getEntry(String hash) {
+        return new File(new File(directory, hash.substring(0, 2)), hash + "-" + complianceLevel);
+    }
+
+    /**
+     * @return the top-level types of each unit, qualified by its package
+     */
+    private Map<File, List<String>> parse(List<File> files) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IOException("No Java compiler in " + System.getProperty("java.home"));
+        }
+        Map<File, List<String>> result = new HashMap<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            List<JavaFileObject> units = new ArrayList<>();
+            Map<URI, File> unitFiles = new HashMap<>();
+            for (File file : files) {
+                for (JavaFileObject unit : fileManager.getJavaFileObjects(file)) {
+                    units.add(unit);
+                    unitFiles.put(unit.toUri(), file);
+                }
+            }
+            JavacTask task;
+            try {
+                task = (JavacTask) compiler.getTask(null, fileManager, new DiagnosticCollector<JavaFileObject>(),
+                        Arrays.asList("-proc:none", "-source", String.valueOf(complianceLevel)), null, units);
+            } catch (IllegalArgumentException e) {
+                // a level this compiler does not support any more, the default one parses a superset of it
+                task = (JavacTask) compiler.getTask(null, fileManager, new DiagnosticCollector<JavaFileObject>(),
+                        Arrays.asList("-proc:none"), null, units);
+            }
+            for (CompilationUnitTree unit : task.parse()) {
+                String prefix = unit.getPackageName() == null ? "" : unit.getPackageName() + ".";
+                List<String> types = new ArrayList<>();
+                for (Tree type : unit.getTypeDecls()) {
+                    if (type instanceof ClassTree) {
+                        types.add(prefix + ((ClassTree) type).getSimpleName());
+                    }
+                }
+                result.put(unitFiles.get(unit.getSourceFile().toUri()), types);
+            }
+        }
+        return result;
+    }
+
+    private static void store(File entry, List<String> types) {
+        File parent = entry.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            System.err.println("Unable to create the source index directory " + parent);
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String type : types) {
+            sb.append(type).append('\n');
+        }
+        File tmpFile = new File(parent, entry.getName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.write(tmpFile.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+            if (!tmpFile.renameTo(entry)) {
+                // stored by another run in the meantime
+                tmpFile.delete();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmpFile.delete();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Copies of a subset of the source files of a job, laid out as source folders, so the engine only builds
+ * and repairs the model of these files while the compiled classes of the others stay on the classpath.
+ */
+final class SourceView {
+
+    private SourceView() {
+    }
+
+    /**
+     * Copies the Java files of each source folder among <code>files</code> to a subdirectory of <code>directory</code>,
+     * at the same path relative to the subdirectory as to the source folder. The directory is emptied first.
+     *
+     * @return the subdirectories with at least one file, in the order of the source folders
+     */
+    static File[] create(File[] sourceFolders, Collection<File> files, File directory) throws IOException {
+        delete(directory);
+        List<File> view = new ArrayList<>();
+        for (int i = 0; i < sourceFolders.length; i++) {
+            String sourceFolder = sourceFolders[i].getCanonicalPath() + File.separator;
+            File viewFolder = new File(directory, String.valueOf(i));
+            for (File file : files) {
+                String path = file.getCanonicalPath();
+                if (!path.endsWith(".java") || !path.startsWith(sourceFolder) || !file.isFile()) {
+                    continue;
+                }
+                File copy = new File(viewFolder, path.substring(sourceFolder.length()));
+                if (!copy.getParentFile().exists() && !copy.getParentFile().mkdirs()) {
+                    throw new IOException("Unable to create " + copy.getParentFile());
+                }
+                Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                if (!view.contains(viewFolder)) {
+                    view.add(viewFolder);
+                }
+            }
+        }
+        return view.toArray(new File[0]);
+    }
+
+    /**
+     * @return the Java files of the source folders, sorted by path in each folder
+     */
+    static List<File> getJavaFiles(File[] sourceFolders) {
+        List<File> files = new ArrayList<>();
+        for (File sourceFolder : sourceFolders) {
+            addJavaFiles(sourceFolder, files);
+        }
+        return files;
+    }
+
+    private static void addJavaFiles(File directory, List<File> files) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory()) {
+                addJavaFiles(child, files);
+            } else if (child.getName().endsWith(".java")) {
+                files.add(child);
+            }
+        }
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
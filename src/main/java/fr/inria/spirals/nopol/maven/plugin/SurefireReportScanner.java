@@ -0,0 +1,187 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the test case verdicts of surefire XML reports with a streaming parser, several files at a time.
+ *
+ * Only the <code>testcase</code> elements and the presence of a <code>failure</code> or <code>error</code>
+ * child are kept: messages, stack traces and captured outputs are skipped without being materialized,
+ * so the memory used does not depend on the size of the reports. The files and the verdicts are the ones
+ * the surefire report parser returns.
+ */
+public class SurefireReportScanner {
+
+    private static final FilenameFilter REPORT_FILTER = new FilenameFilter() {
+        @Override
+        public boolean accept(File dir, String name) {
+            return name.endsWith(".xml")
+                    && !name.equals("testng-failed.xml")
+                    && !name.equals("testng-failures.xml")
+                    && !name.equals("testng-results.xml")
+                    && !name.startsWith("failsafe-summary");
+        }
+    };
+
+    private final int nbThreads;
+    private final XMLInputFactory factory;
+
+    public SurefireReportScanner(int nbThreads) {
+        this.nbThreads = nbThreads;
+        this.factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * @return the test cases of all the reports of the directories, in directory then file name order
+     */
+    public List<TestCaseResult> scan(List<File> reportDirectories) throws IOException {
+        List<File> reports = new ArrayList<>();
+        for (File reportDirectory : reportDirectories) {
+            File[] files = reportDirectory.listFiles(REPORT_FILTER);
+            if (files != null) {
+                Arrays.sort(files);
+                reports.addAll(Arrays.asList(files));
+            }
+        }
+
+        List<TestCaseResult> result = new ArrayList<>();
+        if (reports.isEmpty()) {
+            return result;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(nbThreads, reports.size())));
+        try {
+            List<Future<List<TestCaseResult>>> futures = new ArrayList<>();
+            for (final File report : reports) {
+                futures.add(executor.submit(new Callable<List<TestCaseResult>>() {
+                    @Override
+                    public List<TestCaseResult> call() throws Exception {
+                        return scan(report);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    result.addAll(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    System.err.println("Unable to read the test report " + reports.get(i) + ": " + e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading the test reports", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    List<TestCaseResult> scan(File report) throws IOException, XMLStreamException {
+        List<TestCaseResult> result = new ArrayList<>();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(report))) {
+            XMLStreamReader reader;
+            // the factories are not guaranteed to be thread safe, the readers are used by one thread each
+            synchronized (factory) {
+                reader = factory.createXMLStreamReader(in);
+            }
+            try {
+                String suiteName = null;
+                String className = null;
+                String methodName = null;
+                double time = 0;
+                boolean failing = false;
+                boolean inTestCase = false;
+                int depth = 0;
+
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        depth++;
+                        String element = reader.getLocalName();
+                        if ("testsuite".equals(element) && suiteName == null) {
+                            suiteName = reader.getAttributeValue(null, "name");
+                        } else if ("testcase".equals(element)) {
+                            inTestCase = true;
+                            className = reader.getAttributeValue(null, "classname");
+                            if (className == null) {
+                                className = suiteName;
+                            }
+                            methodName = reader.getAttributeValue(null, "name");
+                            time = parseTime(reader.getAttributeValue(null, "time"));
+                            failing = false;
+                        } else if (inTestCase) {
+                            if ("failure".equals(element) || "error".equals(element)) {
+                                failing = true;
+                            }
+                            // messages, stack traces, outputs and reruns
+                            skipElement(reader);
+                            depth--;
+                        } else if ("system-out".equals(element) || "system-err".equals(element)) {
+                            skipElement(reader);
+                            depth--;
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        depth--;
+                        if ("testcase".equals(reader.getLocalName()) && inTestCase) {
+                            result.add(new TestCaseResult(className, methodName, time, failing));
+                            inTestCase = false;
+                        }
+                        if (depth == 0) {
+                            // end of the root element, nothing else of interest
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Moves the reader to the end of the current element without reading its text.
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static double parseTime(String time) {
+        if (time == null || time.isEmpty()) {
+            return 0;
+        }
+        try {
+            // surefire writes the time with the English grouping separator
+            return Double.parseDouble(time.replace(",", ""));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
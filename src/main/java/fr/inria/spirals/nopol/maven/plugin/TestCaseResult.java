@@ -0,0 +1,51 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.Serializable;
+
+/**
+ * Verdict of one test method as recorded in a surefire report.
+ */
+public class TestCaseResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String className;
+    private final String methodName;
+    private final double timeInSeconds;
+    private final boolean failing;
+
+    public TestCaseResult(String className, String methodName, double timeInSeconds, boolean failing) {
+        this.className = className;
+        this.methodName = methodName;
+        this.timeInSeconds = timeInSeconds;
+        this.failing = failing;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public double getTimeInSeconds() {
+        return timeInSeconds;
+    }
+
+    public boolean isFailing() {
+        return failing;
+    }
+
+    /**
+     * @return the test identifier in the <code>Class#method</code> form used by Nopol
+     */
+    public String getId() {
+        return className + "#" + methodName;
+    }
+
+    @Override
+    public String toString() {
+        return getId() + (failing ? " (failing)" : "");
+    }
+}
@@ -0,0 +1,282 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The statements, in the <code>Class:line</code> form, covered by each test method, in the <code>Class#method</code> form, of a project.
+ *
+ * The bytecode hashes of each test class and of the classes it executes are kept with its coverage,
+ * so that a later run only recomputes the coverage of the test classes whose bytecode or executed classes changed.
+ */
+public class TestCoverage implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    private final Map<String, Set<String>> coveredStatements = new HashMap<>();
+    // test class -> hash of the bytecode of the test class and of the classes it executes
+    private final Map<String, Map<String, String>> classHashes = new HashMap<>();
+
+    public void addTest(String testId, Collection<String> statements) {
+        Set<String> covered = coveredStatements.get(testId);
+        if (covered == null) {
+            covered = new HashSet<>();
+            coveredStatements.put(testId, covered);
+        }
+        covered.addAll(statements);
+    }
+
+    public Set<String> getCoveredStatements(String testId) {
+        Set<String> covered = coveredStatements.get(testId);
+        return covered == null ? Collections.<String>emptySet() : covered;
+    }
+
+    public int getNbTests() {
+        return coveredStatements.size();
+    }
+
+    /**
+     * @return the test classes among the given ones without coverage, or whose coverage may have changed since it was computed
+     */
+    public Set<String> getOutdatedTestClasses(Collection<String> testClasses, URL[] classpath) {
+        Map<String, String> currentHashes = new HashMap<>();
+        Set<String> result = new TreeSet<>();
+        for (String testClass : testClasses) {
+            Map<String, String> hashes = classHashes.get(testClass);
+            if (hashes == null) {
+                result.add(testClass);
+                continue;
+            }
+            for (Map.Entry<String, String> entry : hashes.entrySet()) {
+                // an unreadable class has no hash, its coverage is recomputed
+                if (entry.getValue() == null || !entry.getValue().equals(getHash(entry.getKey(), classpath, currentHashes))) {
+                    result.add(testClass);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the coverage of the given test classes by the one of the update,
+     * and records the current bytecode of the classes they execute.
+     */
+    public void update(TestCoverage update, Collection<String> testClasses, URL[] classpath) {
+        Set<String> replaced = new HashSet<>(testClasses);
+        for (Iterator<String> iterator = coveredStatements.keySet().iterator(); iterator.hasNext();) {
+            if (replaced.contains(getTestClassName(iterator.next()))) {
+                iterator.remove();
+            }
+        }
+        Map<String, Set<String>> executedClasses = new HashMap<>();
+        for (String testClass : replaced) {
+            executedClasses.put(testClass, new HashSet<>(Collections.singleton(testClass)));
+        }
+        for (Map.Entry<String, Set<String>> entry : update.coveredStatements.entrySet()) {
+            addTest(entry.getKey(), entry.getValue());
+            Set<String> classes = executedClasses.get(getTestClassName(entry.getKey()));
+            if (classes != null) {
+                for (String statement : entry.getValue()) {
+                    classes.add(getClassName(statement));
+                }
+            }
+        }
+
+        Map<String, String> currentHashes = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : executedClasses.entrySet()) {
+            Map<String, String> hashes = new HashMap<>();
+            for (String className : entry.getValue()) {
+                hashes.put(className, getHash(className, classpath, currentHashes));
+            }
+            classHashes.put(entry.getKey(), hashes);
+        }
+    }
+
+    /**
+     * Ranks the statements executed by the failing tests with the Ochiai formula.
+     *
+     * @return the suspiciousness of each statement, most suspicious first
+     */
+    public Map<String, Double> getSuspiciousStatements(List<TestCaseResult> testResults) {
+        // statement -> number of failing and passing tests executing it
+        Map<String, int[]> spectrum = new HashMap<>();
+        int nbFailing = 0;
+        for (TestCaseResult testResult : testResults) {
+            if (testResult.isFailing()) {
+                nbFailing++;
+                for (String statement : getCoveredStatements(testResult.getId())) {
+                    int[] counts = spectrum.get(statement);
+                    if (counts == null) {
+                        counts = new int[2];
+                        spectrum.put(statement, counts);
+                    }
+                    counts[0]++;
+                }
+            }
+        }
+        for (TestCaseResult testResult : testResults) {
+            if (!testResult.isFailing()) {
+                for (String statement : getCoveredStatements(testResult.getId())) {
+                    int[] counts = spectrum.get(statement);
+                    if (counts != null) {
+                        counts[1]++;
+                    }
+                }
+            }
+        }
+
+        final Map<String, Double> scores = new HashMap<>();
+        for (Map.Entry<String, int[]> entry : spectrum.entrySet()) {
+            int failed = entry.getValue()[0];
+            int passed = entry.getValue()[1];
+            scores.put(entry.getKey(), failed / Math.sqrt((double) nbFailing * (failed + passed)));
+        }
+        List<String> statements = new ArrayList<>(scores.keySet());
+        Collections.sort(statements, new Comparator<String>() {
+            @Override
+            public int compare(String s1, String s2) {
+                int compare = Double.compare(scores.get(s2), scores.get(s1));
+                return compare != 0 ? compare : s1.compareTo(s2);
+            }
+        });
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (String statement : statements) {
+            result.put(statement, scores.get(statement));
+        }
+        return result;
+    }
+
+    /**
+     * Selects the tests validating a patch of the statements executed by the failing tests of the job:
+     * the failing test classes, then the passing test classes with at least one method covering such a statement,
+     * each group ordered by increasing duration. The non covering methods of the added classes are ignored,
+     * the covering methods of the failing classes are executed.
+     *
+     * When the failing tests have no coverage, e.g. when they cannot be loaded by the coverage run,
+     * the job is kept as is.
+     *
+     * @return the job with the selected tests, or the job itself if nothing can be selected
+     */
+    public RepairJob selectTests(RepairJob job, List<TestCaseResult> testResults) {
+        Set<String> failingClasses = new LinkedHashSet<>(job.getFailingTestList());
+        final Map<String, Double> durations = new HashMap<>();
+        Set<String> suspiciousStatements = new HashSet<>();
+        for (TestCaseResult testResult : testResults) {
+            Double duration = durations.get(testResult.getClassName());
+            durations.put(testResult.getClassName(), (duration == null ? 0 : duration) + testResult.getTimeInSeconds());
+            if (testResult.isFailing() && failingClasses.contains(testResult.getClassName())) {
+                suspiciousStatements.addAll(getCoveredStatements(testResult.getId()));
+            }
+        }
+        if (suspiciousStatements.isEmpty()) {
+            return job;
+        }
+
+        Set<String> coveringClasses = new HashSet<>();
+        Set<String> coveringMethods = new HashSet<>();
+        List<String> nonCoveringMethods = new ArrayList<>();
+        for (TestCaseResult testResult : testResults) {
+            if (testResult.isFailing()) {
+                continue;
+            }
+            if (Collections.disjoint(getCoveredStatements(testResult.getId()), suspiciousStatements)) {
+                nonCoveringMethods.add(testResult.getId());
+            } else {
+                coveringMethods.add(testResult.getId());
+                if (!failingClasses.contains(testResult.getClassName())) {
+                    coveringClasses.add(testResult.getClassName());
+                }
+            }
+        }
+
+        Comparator<String> byDuration = new Comparator<String>() {
+            @Override
+            public int compare(String c1, String c2) {
+                return Double.compare(getDuration(durations, c1), getDuration(durations, c2));
+            }
+        };
+        List<String> tests = new ArrayList<>(failingClasses);
+        Collections.sort(tests, byDuration);
+        List<String> covering = new ArrayList<>(coveringClasses);
+        Collections.sort(covering, byDuration);
+        tests.addAll(covering);
+
+        // the covering methods of the failing classes are executed even if the job ignores them
+        List<String> testMethodsToIgnore = new ArrayList<>();
+        for (String testId : job.getTestMethodsToIgnore()) {
+            if (!coveringMethods.contains(testId)) {
+                testMethodsToIgnore.add(testId);
+            }
+        }
+        for (String testId : nonCoveringMethods) {
+            if (coveringClasses.contains(getTestClassName(testId))) {
+                testMethodsToIgnore.add(testId);
+            }
+        }
+
+        RepairJob selected = job.forTests(job.getName(), tests.toArray(new String[0]));
+        selected.setTestMethodsToIgnore(testMethodsToIgnore);
+        return selected;
+    }
+
+    private static double getDuration(Map<String, Double> durations, String testClass) {
+        Double duration = durations.get(testClass);
+        return duration == null ? 0 : duration;
+    }
+
+    static String getClassName(String statement) {
+        int index = statement.lastIndexOf(':');
+        return index < 0 ? statement : statement.substring(0, index);
+    }
+
+    private static String getTestClassName(String testId) {
+        int index = testId.indexOf('#');
+        return index < 0 ? testId : testId.substring(0, index);
+    }
+
+    private static String getHash(String className, URL[] classpath, Map<String, String> hashes) {
+        String hash = hashes.get(className);
+        if (hash == null) {
+            hash = hashClass(className, classpath);
+            hashes.put(className, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * @return the hash of the class file in the directories of the classpath, an empty string if it is not in one of them,
+     * null if it cannot be read
+     */
+    static String hashClass(String className, URL[] classpath) {
+        String path = className.replace('.', '/') + ".class";
+        for (URL url : classpath) {
+            File classFile = new File(url.getPath(), path);
+            if (classFile.isFile()) {
+                try {
+                    return Hashes.sha256(new FileInputStream(classFile));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return null;
+                }
+            }
+        }
+        return "";
+    }
+}
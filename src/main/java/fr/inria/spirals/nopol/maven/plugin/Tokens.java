@@ -0,0 +1,36 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Shared secret handshake of the sockets of the plugin. The token is exchanged as a plain string before any
+ * object stream is read, so that no object of an unauthenticated peer is ever deserialized.
+ */
+final class Tokens {
+
+    private Tokens() {
+    }
+
+    /**
+     * Writes the token, the stream is not flushed.
+     */
+    static void write(OutputStream out, String token) throws IOException {
+        new DataOutputStream(out).writeUTF(token);
+    }
+
+    /**
+     * Reads a token, at most 64 KB, from the stream without reading beyond it.
+     *
+     * @return whether it is the expected token, compared in constant time
+     */
+    static boolean check(InputStream in, String token) throws IOException {
+        String received = new DataInputStream(in).readUTF();
+        return MessageDigest.isEqual(received.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,74 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unified diff of a file changed in one region, which is the case of the patches of the engine:
+ * a single hunk around the lines between the common prefix and the common suffix.
+ */
+public final class UnifiedDiff {
+
+    static final int CONTEXT = 3;
+
+    private UnifiedDiff() {
+    }
+
+    /**
+     * @param path the path of the file in the <code>a/</code> and <code>b/</code> headers
+     * @return the diff, empty if the contents are equal
+     */
+    public static String diff(String path, String original, String revised) {
+        List<String> originalLines = Arrays.asList(original.split("\n", -1));
+        List<String> revisedLines = Arrays.asList(revised.split("\n", -1));
+        int prefix = 0;
+        while (prefix < originalLines.size() && prefix < revisedLines.size()
+                && originalLines.get(prefix).equals(revisedLines.get(prefix))) {
+            prefix++;
+        }
+        if (prefix == originalLines.size() && prefix == revisedLines.size()) {
+            return "";
+        }
+        int suffix = 0;
+        while (suffix < originalLines.size() - prefix && suffix < revisedLines.size() - prefix
+                && originalLines.get(originalLines.size() - 1 - suffix).equals(revisedLines.get(revisedLines.size() - 1 - suffix))) {
+            suffix++;
+        }
+
+        int start = Math.max(0, prefix - CONTEXT);
+        int originalEnd = Math.min(originalLines.size(), originalLines.size() - suffix + CONTEXT);
+        int revisedEnd = Math.min(revisedLines.size(), revisedLines.size() - suffix + CONTEXT);
+        // the empty string after a final newline is not a line
+        if (original.endsWith("\n") && originalEnd == originalLines.size()) {
+            originalEnd--;
+        }
+        if (revised.endsWith("\n") && revisedEnd == revisedLines.size()) {
+            revisedEnd--;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        String normalizedPath = path.replace('\\', '/');
+        sb.append("--- a/").append(normalizedPath).append('\n');
+        sb.append("+++ b/").append(normalizedPath).append('\n');
+        sb.append("@@ -").append(range(start, originalEnd)).append(" +").append(range(start, revisedEnd)).append(" @@\n");
+        for (int i = start; i < prefix; i++) {
+            sb.append(' ').append(originalLines.get(i)).append('\n');
+        }
+        for (int i = prefix; i < originalLines.size() - suffix && i < originalEnd; i++) {
+            sb.append('-').append(originalLines.get(i)).append('\n');
+        }
+        for (int i = prefix; i < revisedLines.size() - suffix && i < revisedEnd; i++) {
+            sb.append('+').append(revisedLines.get(i)).append('\n');
+        }
+        for (int i = originalLines.size() - suffix; i < originalEnd; i++) {
+            sb.append(' ').append(originalLines.get(i)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String range(int start, int end) {
+        int length = end - start;
+        // an empty range starts at the line before it
+        return (length == 0 ? start : start + 1) + "," + length;
+    }
+}
@@ -0,0 +1,192 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.notification.Failure;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Entry point of a forked JVM validating one {@link PatchCandidate}: the patch is applied to a copy of its source file
+ * in memory, only this compilation unit is compiled, in memory, against the classpath of the job, and the tests of the job
+ * are run with the patched classes replacing the ones of the classpath. The unified diff of the patch comes with the validation.
+ *
+ * Usage: <code>ValidationWorker &lt;request file&gt; &lt;validation file&gt;</code>
+ */
+public class ValidationWorker {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: " + ValidationWorker.class.getName() + " <request file> <validation file>");
+            System.exit(2);
+        }
+        Request request = RepairWorker.readObject(new File(args[0]), Request.class);
+        PatchValidation validation = validate(request);
+        System.out.println(validation);
+        RepairWorker.writeObject(new File(args[1]), validation);
+        // the tests may leave non daemon threads behind
+        System.exit(0);
+    }
+
+    static PatchValidation validate(Request request) throws IOException {
+        long start = System.currentTimeMillis();
+        PatchCandidate candidate = request.candidate;
+        RepairJob job = request.job;
+
+        File sourceFile = findSourceFile(job, candidate, request.sourceIndexDirectory);
+        if (sourceFile == null) {
+            return PatchValidation.failure(candidate, PatchValidation.Status.NOT_APPLICABLE, System.currentTimeMillis() - start, "No source file " + candidate.getSourcePath());
+        }
+        String source = new String(Files.readAllBytes(sourceFile.toPath()), job.getSourceCharset());
+        String patchedSource;
+        try {
+            patchedSource = candidate.apply(source);
+        } catch (IllegalArgumentException e) {
+            return PatchValidation.failure(candidate, PatchValidation.Status.NOT_APPLICABLE, System.currentTimeMillis() - start, e.getMessage());
+        }
+        String diff = UnifiedDiff.diff(getDiffPath(request.baseDirectory, sourceFile), source, patchedSource);
+
+        InMemoryCompiler compiler = new InMemoryCompiler(job.getClasspath(), job.getComplianceLevel());
+        if (!compiler.compile(getUnitClassName(candidate, sourceFile), patchedSource)) {
+            PatchValidation validation = PatchValidation.failure(candidate, PatchValidation.Status.COMPILATION_ERROR, System.currentTimeMillis() - start, compiler.getMessages());
+            validation.setDiff(diff);
+            return validation;
+        }
+
+        int nbTests = 0;
+        List<String> failures = new ArrayList<>();
+        try (URLClassLoader classLoader = compiler.newClassLoader(ValidationWorker.class.getClassLoader())) {
+            Thread.currentThread().setContextClassLoader(classLoader);
+            JUnitCore jUnitCore = new JUnitCore();
+            Set<String> ignored = new HashSet<>(job.getTestMethodsToIgnore());
+            ignored.removeAll(job.getTestMethodsToValidate());
+            Filter filter = new IgnoredTestsFilter(ignored);
+            for (String testClass : job.getFailingTests()) {
+                Result result;
+                try {
+                    result = jUnitCore.run(org.junit.runner.Request.aClass(classLoader.loadClass(testClass)).filterWith(filter));
+                } catch (ClassNotFoundException | LinkageError e) {
+                    nbTests++;
+                    failures.add(testClass + ": " + e);
+                    continue;
+                }
+                nbTests += result.getRunCount();
+                for (Failure failure : result.getFailures()) {
+                    failures.add(failure.getTestHeader());
+                }
+            }
+        }
+        long duration = System.currentTimeMillis() - start;
+        PatchValidation validation;
+        if (failures.isEmpty()) {
+            validation = new PatchValidation(candidate, PatchValidation.Status.PASSED, nbTests, 0, duration, null);
+        } else {
+            validation = new PatchValidation(candidate, PatchValidation.Status.FAILED, nbTests, failures.size(), duration, "failing: " + failures);
+        }
+        validation.setDiff(diff);
+        return validation;
+    }
+
+    /**
+     * @return the unit declaring the top level class of the candidate, looked up in the index of the sources when
+     * it is not named after the class, e.g. a non public class declared in the file of another class
+     */
+    static File findSourceFile(RepairJob job, PatchCandidate candidate, File sourceIndexDirectory) throws IOException {
+        for (File sourceFolder : job.getSourceFolders()) {
+            File sourceFile = new File(sourceFolder, candidate.getSourcePath());
+            if (sourceFile.isFile()) {
+                return sourceFile;
+            }
+        }
+        if (sourceIndexDirectory == null) {
+            return null;
+        }
+        SourceIndex index = new SourceIndex(sourceIndexDirectory, job.getComplianceLevel());
+        return index.getTypes(job.getSourceFolders()).get(candidate.getSourceClassName());
+    }
+
+    /**
+     * @return the name of the class the unit is named after, in the package of the class of the candidate
+     */
+    static String getUnitClassName(PatchCandidate candidate, File sourceFile) {
+        String className = candidate.getSourceClassName();
+        String unitName = sourceFile.getName().substring(0, sourceFile.getName().length() - ".java".length());
+        int lastDot = className.lastIndexOf('.');
+        return lastDot < 0 ? unitName : className.substring(0, lastDot + 1) + unitName;
+    }
+
+    /**
+     * @return the path of the source file relative to the base directory, or absolute if it is not under it
+     */
+    private static String getDiffPath(File baseDirectory, File sourceFile) {
+        Path base = baseDirectory.getAbsoluteFile().toPath().normalize();
+        Path file = sourceFile.getAbsoluteFile().toPath().normalize();
+        return file.startsWith(base) ? base.relativize(file).toString() : file.toString();
+    }
+
+    /**
+     * Skips the test methods the job ignores.
+     */
+    private static class IgnoredTestsFilter extends Filter {
+
+        private final Set<String> ignored;
+
+        IgnoredTestsFilter(Collection<String> ignored) {
+            this.ignored = new HashSet<>(ignored);
+        }
+
+        @Override
+        public boolean shouldRun(Description description) {
+            if (description.isTest()) {
+                return !ignored.contains(description.getClassName() + "#" + description.getMethodName());
+            }
+            for (Description child : description.getChildren()) {
+                if (shouldRun(child)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String describe() {
+            return "without the ignored test methods";
+        }
+    }
+
+    /**
+     * The candidate to validate, the job giving its sources, classpath and tests, and the directory the paths of the diff are relative to.
+     */
+    public static class Request implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RepairJob job;
+        private final PatchCandidate candidate;
+        private final File baseDirectory;
+        private final File sourceIndexDirectory;
+
+        public Request(RepairJob job, PatchCandidate candidate, File baseDirectory, File sourceIndexDirectory) {
+            this.job = job;
+            this.candidate = candidate;
+            this.baseDirectory = baseDirectory;
+            this.sourceIndexDirectory = sourceIndexDirectory;
+        }
+
+        PatchCandidate getCandidate() {
+            return candidate;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchStateTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testManifest() throws Exception {
+		File manifest = folder.newFile("manifest.txt");
+		Files.write(manifest.toPath(), Arrays.asList("# bugs", "", "projects/math", "Lang-1\t/tmp/lang_1"), StandardCharsets.UTF_8);
+
+		List<BatchManifest.Entry> entries = BatchManifest.read(manifest);
+		assertEquals(2, entries.size());
+		assertEquals("math", entries.get(0).getId());
+		assertEquals(new File(folder.getRoot(), "projects/math"), entries.get(0).getDirectory());
+		assertEquals("Lang-1", entries.get(1).getId());
+		assertEquals(new File("/tmp/lang_1"), entries.get(1).getDirectory());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateEntry() throws Exception {
+		File manifest = folder.newFile("manifest.txt");
+		Files.write(manifest.toPath(), Arrays.asList("a/math", "b/math"), StandardCharsets.UTF_8);
+		BatchManifest.read(manifest);
+	}
+
+	@Test
+	public void testResume() throws Exception {
+		File stateFile = new File(folder.getRoot(), "batch/" + NopolBatchMojo.STATE_FILE);
+		BatchState state = new BatchState(stateFile);
+		state.record("math", new RepairOutcome("math", "PATCH", 1500, 3, 2, Arrays.asList("a < b"), null));
+
+		// another invocation
+		state = new BatchState(stateFile);
+		assertTrue(state.isDone("math"));
+		assertFalse(state.isDone("lang"));
+		state.record("lang", RepairOutcome.failure("lang", "TIMEOUT", 60000, "Worker killed"));
+		assertEquals(2, new BatchState(stateFile).getNbDone());
+
+		List<BatchManifest.Entry> entries = Arrays.asList(new BatchManifest.Entry("math", new File("math")),
+				new BatchManifest.Entry("lang", new File("lang")), new BatchManifest.Entry("time", new File("time")));
+		File summaryFile = new File(folder.getRoot(), NopolBatchMojo.SUMMARY_FILE);
+		assertEquals(1, state.writeSummary(entries, summaryFile));
+		assertEquals("{\"jobs\":3,\"finished\":2,\"patched\":1,\"durationInMilliseconds\":61500,\"statuses\":{\"PATCH\":1,\"TIMEOUT\":1},"
+				+ "\"results\":[{\"id\":\"math\",\"directory\":\"math\",\"status\":\"PATCH\",\"patches\":1,\"durationInMilliseconds\":1500},"
+				+ "{\"id\":\"lang\",\"directory\":\"lang\",\"status\":\"TIMEOUT\",\"patches\":0,\"durationInMilliseconds\":60000}]}\n",
+				new String(Files.readAllBytes(summaryFile.toPath()), StandardCharsets.UTF_8));
+	}
+}
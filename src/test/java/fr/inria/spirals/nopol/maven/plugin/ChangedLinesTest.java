@@ -0,0 +1,165 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class ChangedLinesTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testParse() {
+		String diff = "diff --git a/src/main/java/foo/Bar.java b/src/main/java/foo/Bar.java\n"
+				+ "index 1111111..2222222 100644\n"
+				+ "--- a/src/main/java/foo/Bar.java\n"
+				+ "+++ b/src/main/java/foo/Bar.java\n"
+				+ "@@ -3 +3 @@ public class Bar {\n"
+				+ "-        return a;\n"
+				+ "+        return b;\n"
+				+ "@@ -10,2 +10,0 @@ public class Bar {\n"
+				+ "-    }\n"
+				+ "-\n"
+				+ "@@ -20,0 +19,2 @@\n"
+				+ "+    int c;\n"
+				+ "+    int d;\n"
+				+ "diff --git a/Removed.java b/Removed.java\n"
+				+ "deleted file mode 100644\n"
+				+ "--- a/Removed.java\n"
+				+ "+++ /dev/null\n"
+				+ "@@ -1,2 +0,0 @@\n"
+				+ "-class Removed {\n"
+				+ "-}\n";
+		Map<String, SortedSet<Integer>> lines = ChangedLines.parse(diff);
+		assertEquals(1, lines.size());
+		assertEquals(new TreeSet<>(Arrays.asList(3, 10, 11, 19, 20)), lines.get("src/main/java/foo/Bar.java"));
+	}
+
+	@Test
+	public void testSourceView() throws Exception {
+		File root = folder.newFolder("repo");
+		File sourceFolder = new File(root, "src/main/java");
+		write(new File(sourceFolder, "foo/Bar.java"), "class Bar {}");
+		write(new File(sourceFolder, "foo/Baz.java"), "class Baz {}");
+		write(new File(root, "src/test/java/foo/BarTest.java"), "class BarTest {}");
+
+		Map<String, SortedSet<Integer>> lines = ChangedLines.parse("+++ b/src/main/java/foo/Bar.java\n@@ -1 +1 @@\n"
+				+ "+++ b/src/test/java/foo/BarTest.java\n@@ -1 +1 @@\n");
+		ChangedLines changes = new ChangedLines(root, lines);
+		assertEquals(2, changes.getNbChangedLines());
+
+		File viewDirectory = new File(folder.getRoot(), "view");
+		File[] view = changes.createSourceView(new File[] {new File(root, "src/main/resources"), sourceFolder}, viewDirectory);
+		assertEquals(1, view.length);
+		assertEquals(new File(viewDirectory, "1"), view[0]);
+		assertTrue(new File(view[0], "foo/Bar.java").isFile());
+		assertFalse(new File(view[0], "foo/Baz.java").exists());
+
+		// no changed source file
+		changes = new ChangedLines(root, ChangedLines.parse("+++ b/src/test/java/foo/BarTest.java\n@@ -1 +1 @@\n"));
+		assertEquals(0, changes.createSourceView(new File[] {sourceFolder}, viewDirectory).length);
+		assertFalse(new File(view[0], "foo/Bar.java").exists());
+	}
+
+	@Test
+	public void testComputeInRepository() throws Exception {
+		File root = newRepository();
+		File bar = write(new File(root, "src/main/java/foo/Bar.java"), "class Bar {\n    int a;\n}\n");
+		File baz = write(new File(root, "src/main/java/foo/Baz Qux.java"), "class Baz {\n    int a;\n}\n");
+		commit(root);
+
+		write(bar, "class Bar {\n    int b;\n}\n");
+		write(baz, "class Baz {\n    int a;\n    int b;\n}\n");
+		File untracked = write(new File(root, "src/main/java/foo/New.java"), "class New {}\n");
+
+		ChangedLines changes = ChangedLines.compute(new File(root, "src"), "HEAD");
+		assertEquals(canonical(Arrays.asList(bar, baz, untracked)), canonical(changes.getChangedFiles()));
+		assertEquals(2, changes.getNbChangedLines());
+	}
+
+	@Test
+	public void testComputeNonAsciiPaths() throws Exception {
+		try {
+			Paths.get("Caf\u00e9");
+		} catch (InvalidPathException e) {
+			assumeTrue("the file system encoding of the JVM cannot represent the paths", false);
+		}
+		File root = newRepository();
+		File cafe = write(new File(root, "src/main/java/foo/Caf\u00e9.java"), "class Cafe {\n    int a;\n}\n");
+		commit(root);
+
+		write(cafe, "class Cafe {\n    int b;\n}\n");
+		File untracked = write(new File(root, "src/main/java/foo/\u00c9t\u00e9.java"), "class Ete {}\n");
+
+		ChangedLines changes = ChangedLines.compute(root, "HEAD");
+		assertEquals(canonical(Arrays.asList(cafe, untracked)), canonical(changes.getChangedFiles()));
+		assertEquals(1, changes.getNbChangedLines());
+	}
+
+	@Test
+	public void testUnquote() {
+		assertEquals("foo/Bar.java", ChangedLines.unquote("foo/Bar.java"));
+		assertEquals("b/foo/Caf\u00e9.java", ChangedLines.unquote("\"b/foo/Caf\\303\\251.java\""));
+		assertEquals("b/a\"b\tc\\d", ChangedLines.unquote("\"b/a\\\"b\\tc\\\\d\""));
+	}
+
+	private static Set<File> canonical(List<File> files) throws Exception {
+		Set<File> result = new HashSet<>();
+		for (File file : files) {
+			result.add(file.getCanonicalFile());
+		}
+		return result;
+	}
+
+	/**
+	 * @return a repository with the configurations changing the paths of the diffs
+	 */
+	private File newRepository() throws Exception {
+		File root = folder.newFolder("repo");
+		git(root, "init", "-q");
+		git(root, "config", "user.email", "nopol@example.com");
+		git(root, "config", "user.name", "Nopol");
+		git(root, "config", "diff.mnemonicPrefix", "true");
+		git(root, "config", "core.quotePath", "true");
+		return root;
+	}
+
+	private static void commit(File root) throws Exception {
+		git(root, "add", ".");
+		git(root, "commit", "-q", "-m", "base");
+	}
+
+	private static void git(File directory, String... arguments) throws Exception {
+		List<String> command = new ArrayList<>();
+		command.add("git");
+		command.addAll(Arrays.asList(arguments));
+		Process process = new ProcessBuilder(command).directory(directory).inheritIO().start();
+		assertEquals(0, process.waitFor());
+	}
+
+	private static File write(File file, String content) throws Exception {
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
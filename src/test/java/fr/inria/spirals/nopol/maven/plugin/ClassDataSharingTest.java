@@ -0,0 +1,93 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ClassDataSharingTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testGetJavaVersion() {
+		assertEquals(8, ClassDataSharing.getJavaVersion("1.8"));
+		assertEquals(11, ClassDataSharing.getJavaVersion("11"));
+		assertEquals(17, ClassDataSharing.getJavaVersion("17.0"));
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		File jar = folder.newFile("engine.jar");
+		assertNull(ClassDataSharing.getDisabledReason(jar.getPath(), 17));
+		assertTrue(ClassDataSharing.getDisabledReason(jar.getPath(), 8).contains("Java 8"));
+
+		// the classes of a directory cannot be archived, an empty one is fine
+		File classes = folder.newFolder("classes");
+		assertNull(ClassDataSharing.getDisabledReason(jar.getPath() + File.pathSeparator + classes.getPath(), 17));
+		Files.write(new File(classes, "A.class").toPath(), new byte[] {1});
+		assertTrue(ClassDataSharing.getDisabledReason(jar.getPath() + File.pathSeparator + classes.getPath(), 17).contains(classes.getPath()));
+
+		ClassDataSharing.Session session = new ClassDataSharing(folder.newFolder("cds"), jar.getPath(), 8).start(true);
+		assertEquals(Collections.<String>emptyList(), session.getArguments());
+	}
+
+	@Test
+	public void testCreateThenUse() throws Exception {
+		File jar = folder.newFile("engine.jar");
+		ClassDataSharing sharing = new ClassDataSharing(folder.newFolder("cds"), jar.getPath(), 17);
+
+		// the first repair worker creates the archive at its exit, the others run without meanwhile
+		ClassDataSharing.Session training = sharing.start(true);
+		String option = training.getArguments().get(0);
+		assertTrue(option.startsWith("-XX:ArchiveClassesAtExit="));
+		assertEquals(Collections.<String>emptyList(), sharing.start(true).getArguments());
+		assertEquals(Collections.<String>emptyList(), sharing.start(false).getArguments());
+
+		Files.write(new File(option.substring(option.indexOf('=') + 1)).toPath(), "archive".getBytes(StandardCharsets.UTF_8));
+		training.finish(0);
+		assertEquals("archive created", training.getStatus());
+		assertTrue(sharing.getArchive().isFile());
+
+		ClassDataSharing.Session session = sharing.start(false);
+		assertEquals(Arrays.asList("-Xshare:auto", "-XX:SharedArchiveFile=" + sharing.getArchive().getAbsolutePath()), session.getArguments());
+		assertEquals("archive used", session.getStatus());
+	}
+
+	@Test
+	public void testFailedTraining() throws Exception {
+		File jar = folder.newFile("engine.jar");
+		ClassDataSharing sharing = new ClassDataSharing(folder.newFolder("cds"), jar.getPath(), 11);
+
+		ClassDataSharing.Session training = sharing.start(true);
+		assertTrue(training.getArguments().get(0).startsWith("-XX:DumpLoadedClassList="));
+		// killed
+		training.finish(null);
+		assertEquals("archive not created", training.getStatus());
+		assertFalse(sharing.getArchive().exists());
+
+		// the next repair worker tries again
+		assertEquals(1, sharing.start(true).getArguments().size());
+	}
+
+	@Test
+	public void testNewClasspathNewArchive() throws Exception {
+		File jar = folder.newFile("engine.jar");
+		File cds = folder.newFolder("cds");
+		File archive = new ClassDataSharing(cds, jar.getPath(), 17).getArchive();
+		Files.write(jar.toPath(), "new version".getBytes(StandardCharsets.UTF_8));
+		assertNotEquals(archive, new ClassDataSharing(cds, jar.getPath(), 17).getArchive());
+	}
+}
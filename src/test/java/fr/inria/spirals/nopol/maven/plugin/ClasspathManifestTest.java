@@ -0,0 +1,78 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ClasspathManifestTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testStoreAndLoad() throws Exception {
+		URL a = folder.newFile("a.jar").toURI().toURL();
+		URL b = folder.newFolder("classes").toURI().toURL();
+		ClasspathManifest manifest = new ClasspathManifest(folder.newFolder("manifests"));
+
+		assertNull(manifest.load("key"));
+		manifest.store("key", Arrays.asList(a, b), Collections.<File>emptyList());
+		assertEquals(Arrays.asList(a, b), manifest.load("key"));
+		assertNull(manifest.load("other"));
+	}
+
+	@Test
+	public void testMissingEntry() throws Exception {
+		File jar = folder.newFile("a.jar");
+		ClasspathManifest manifest = new ClasspathManifest(folder.newFolder("manifests"));
+		manifest.store("key", Arrays.asList(jar.toURI().toURL()), Collections.<File>emptyList());
+
+		jar.delete();
+		assertNull(manifest.load("key"));
+	}
+
+	@Test
+	public void testChangedPom() throws Exception {
+		URL jar = folder.newFile("a.jar").toURI().toURL();
+		File pom = write(folder.newFile("a.pom"), "<project><version>1.0-SNAPSHOT</version></project>");
+		File missingPom = new File(folder.getRoot(), "missing.pom");
+		ClasspathManifest manifest = new ClasspathManifest(folder.newFolder("manifests"));
+		// a POM that does not exist, e.g. of an artifact without one, is not recorded
+		manifest.store("key", Arrays.asList(jar), Arrays.asList(pom, missingPom));
+		assertEquals(Arrays.asList(jar), manifest.load("key"));
+
+		// e.g. a SNAPSHOT republished with another dependency
+		write(pom, "<project><version>1.0-SNAPSHOT</version><dependencies/></project>");
+		assertNull(manifest.load("key"));
+
+		manifest.store("key", Arrays.asList(jar), Arrays.asList(pom));
+		assertEquals(Arrays.asList(jar), manifest.load("key"));
+		pom.delete();
+		assertNull(manifest.load("key"));
+	}
+
+	@Test
+	public void testDeduplicate() throws Exception {
+		URL a = new File(folder.getRoot(), "a.jar").toURI().toURL();
+		URL b = new File(folder.getRoot(), "b.jar").toURI().toURL();
+		List<URL> classpath = Arrays.asList(a, b, a, b, new File(folder.getRoot(), "a.jar").toURI().toURL());
+		assertEquals(Arrays.asList(a, b), ClasspathManifest.deduplicate(classpath));
+	}
+
+	private static File write(File file, String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
@@ -0,0 +1,75 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ForkedRepairLauncherTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * A worker that never ends by itself.
+	 */
+	public static class SleepingWorker {
+
+		public static void main(String[] args) throws InterruptedException {
+			Thread.sleep(60000);
+		}
+	}
+
+	private static Process startSleepingWorker() throws Exception {
+		return new ProcessBuilder(ForkedRepairLauncher.getJavaExecutable(), "-cp", System.getProperty("java.class.path"),
+				SleepingWorker.class.getName()).start();
+	}
+
+	@Test
+	public void testKill() throws Exception {
+		Process process = startSleepingWorker();
+		ForkedRepairLauncher.kill(process);
+		// exited once killed, exitValue() throws otherwise
+		process.exitValue();
+		assertFalse(Thread.currentThread().isInterrupted());
+	}
+
+	@Test
+	public void testKillKeepsInterrupt() throws Exception {
+		Process process = startSleepingWorker();
+		Thread.currentThread().interrupt();
+		ForkedRepairLauncher.kill(process);
+		process.exitValue();
+		// cleared to not disturb the next tests
+		assertTrue(Thread.interrupted());
+	}
+
+	@Test
+	public void testWorkerError() throws Exception {
+		// no worker class on the classpath
+		ForkedRepairLauncher launcher = new ForkedRepairLauncher(new ArrayList<URL>(), folder.newFolder("jobs"), false);
+		RepairJob job = new RepairJob("job", new File[0], new URL[0], new String[] {"foo.FooTest"});
+
+		RepairOutcome outcome = launcher.launch(job, 60000);
+
+		assertEquals("ERROR", outcome.getStatus());
+		assertTrue(outcome.getError(), outcome.getError().startsWith("Worker exited with code 1, see "));
+		assertTrue(new File(launcher.getWorkDirectory(), "job.log").isFile());
+	}
+
+	@Test
+	public void testClasspathString() throws Exception {
+		URL a = folder.newFile("a.jar").toURI().toURL();
+		URL b = folder.newFolder("classes").toURI().toURL();
+		assertEquals(new File(a.getPath()).getAbsolutePath() + File.pathSeparator + new File(b.getPath()).getAbsolutePath(),
+				ForkedRepairLauncher.toClasspathString(Arrays.asList(a, b, a)));
+	}
+}
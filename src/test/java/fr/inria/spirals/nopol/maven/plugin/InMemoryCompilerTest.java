@@ -0,0 +1,48 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InMemoryCompilerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testPatchedClassReplacesTheClasspathOne() throws Exception {
+		File classes = folder.newFolder("classes");
+		File classFile = new File(classes, "foo/Foo.class");
+		classFile.getParentFile().mkdirs();
+		try (OutputStream out = new FileOutputStream(classFile)) {
+			// not a class, it must never be loaded
+			out.write(0);
+		}
+		URL[] classpath = new URL[] {classes.toURI().toURL()};
+
+		InMemoryCompiler compiler = new InMemoryCompiler(classpath, 7);
+		assertTrue(compiler.getMessages(), compiler.compile("foo.Foo",
+				"package foo;\npublic class Foo {\n    public String toString() {\n        return new Object() { public String toString() { return \"patched\"; } }.toString();\n    }\n}\n"));
+		assertEquals(2, compiler.getClasses().size());
+		try (URLClassLoader classLoader = compiler.newClassLoader(getClass().getClassLoader())) {
+			assertEquals("patched", classLoader.loadClass("foo.Foo").newInstance().toString());
+		}
+	}
+
+	@Test
+	public void testCompilationError() throws Exception {
+		InMemoryCompiler compiler = new InMemoryCompiler(new URL[0], 7);
+		assertFalse(compiler.compile("foo.Foo", "package foo;\npublic class Foo {\n    int bar() { return \"\"; }\n}\n"));
+		assertTrue(compiler.getMessages(), compiler.getMessages().startsWith("line 3: "));
+	}
+}
@@ -0,0 +1,81 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ModuleRepairTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testModuleTestResults() throws Exception {
+		MavenProject core = newModule("core", "core.CoreTest", true);
+		MavenProject api = newModule("api", "api.ApiTest", false);
+		MavenProject app = newModule("app", "app.AppTest", true);
+
+		Map<MavenProject, List<TestCaseResult>> results = NopolMojo.getModuleTestResults(Arrays.asList(core, api, app));
+
+		// every module, in the reactor order, with only the results of its own reports
+		assertEquals(Arrays.asList(core, api, app), new ArrayList<>(results.keySet()));
+		assertEquals(Arrays.asList("core.CoreTest"), NopolMojo.getFailingTests(results.get(core)));
+		assertTrue(NopolMojo.getFailingTests(results.get(api)).isEmpty());
+		assertEquals(1, results.get(api).size());
+		assertEquals(Arrays.asList("app.AppTest"), NopolMojo.getFailingTests(results.get(app)));
+		assertEquals(Arrays.asList("app.AppTest#passing"),
+				NopolMojo.getPassingTestMethods(results.get(app), NopolMojo.getFailingTests(results.get(app))));
+	}
+
+	@Test
+	public void testModuleWithoutReports() throws Exception {
+		MavenProject module = newModule("empty", null, false);
+		Map<MavenProject, List<TestCaseResult>> results = NopolMojo.getModuleTestResults(Collections.singletonList(module));
+		assertTrue(results.get(module).isEmpty());
+	}
+
+	@Test
+	public void testUnsupportedParameters() {
+		assertTrue(NopolMojo.getUnsupportedParameters(true, false, null, null).isEmpty());
+		assertTrue(NopolMojo.getUnsupportedParameters(true, false, " ", "").isEmpty());
+		assertEquals(Arrays.asList("fork=false", "daemon", "nodes", "portfolio"),
+				NopolMojo.getUnsupportedParameters(false, true, "localhost:8918", "dynamoth"));
+		assertEquals(Arrays.asList("nodes"), NopolMojo.getUnsupportedParameters(true, false, "localhost:8918", null));
+	}
+
+	private MavenProject newModule(String artifactId, String testClass, boolean failing) throws IOException {
+		File directory = folder.newFolder(artifactId, "target");
+		if (testClass != null) {
+			File reports = new File(directory, "surefire-reports");
+			reports.mkdirs();
+			String report = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+					+ "<testsuite name=\"" + testClass + "\">\n"
+					+ "<testcase name=\"passing\" classname=\"" + testClass + "\" time=\"0.1\"/>\n"
+					+ (failing ? "<testcase name=\"failing\" classname=\"" + testClass + "\" time=\"0.1\"><failure type=\"java.lang.AssertionError\"/></testcase>\n" : "")
+					+ "</testsuite>\n";
+			Files.write(new File(reports, "TEST-" + testClass + ".xml").toPath(), report.getBytes(StandardCharsets.UTF_8));
+		}
+		Build build = new Build();
+		build.setDirectory(directory.getAbsolutePath());
+		Model model = new Model();
+		model.setArtifactId(artifactId);
+		model.setBuild(build);
+		return new MavenProject(model);
+	}
+}
@@ -0,0 +1,83 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelRepairTest {
+
+	private static final List<TestCaseResult> RESULTS = Arrays.asList(
+			new TestCaseResult("foo.BarTest", "passing", 0.5, false),
+			new TestCaseResult("foo.BarTest", "failing", 1, true),
+			new TestCaseResult("foo.QuxTest", "failing", 0.2, true),
+			new TestCaseResult("foo.QuxTest", "otherFailing", 0.2, true));
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private RepairJob newJob() throws Exception {
+		RepairJob job = new RepairJob("module", new File[] {folder.newFolder("src")},
+				new URL[] {folder.newFolder("classes").toURI().toURL()}, new String[] {"foo.BarTest", "foo.QuxTest"});
+		job.setTestMethodsToIgnore(NopolMojo.getPassingTestMethods(RESULTS, job.getFailingTestList()));
+		job.setMaxTimeInMinutes(7);
+		job.setSourceEncoding("UTF-8");
+		return job;
+	}
+
+	@Test
+	public void testSplitByTestClass() throws Exception {
+		RepairJob job = newJob();
+		List<RepairJob> jobs = NopolMojo.splitByTestClass(job);
+
+		assertEquals(2, jobs.size());
+		assertEquals("foo.BarTest", jobs.get(0).getName());
+		assertArrayEquals(new String[] {"foo.BarTest"}, jobs.get(0).getFailingTests());
+		assertEquals("foo.QuxTest", jobs.get(1).getName());
+		assertArrayEquals(new String[] {"foo.QuxTest"}, jobs.get(1).getFailingTests());
+		for (RepairJob subJob : jobs) {
+			// same sources, classpath and configuration
+			assertSame(job.getSourceFolders(), subJob.getSourceFolders());
+			assertSame(job.getClasspath(), subJob.getClasspath());
+			assertEquals(Arrays.asList("foo.BarTest#passing"), subJob.getTestMethodsToIgnore());
+			assertEquals(7, subJob.getMaxTimeInMinutes());
+			assertEquals("UTF-8", subJob.getSourceEncoding());
+		}
+	}
+
+	@Test
+	public void testMergedReport() throws Exception {
+		List<RepairJob> jobs = NopolMojo.splitByTestClass(newJob());
+		List<RepairOutcome> outcomes = Arrays.asList(
+				new RepairOutcome("foo.BarTest", "PATCH", 1500, 3, 2, Arrays.asList("a < b"), null),
+				RepairOutcome.failure("foo.QuxTest", "TIMEOUT", 60000, "Worker killed"));
+
+		File directory = new File(folder.getRoot(), "results");
+		RepairReport report = new RepairReport(directory, 1000);
+		for (int i = 0; i < jobs.size(); i++) {
+			report.add(outcomes.get(i), NopolMojo.countTestMethods(jobs.get(i), RESULTS));
+		}
+		report.write(new RepairMetrics(), 62000);
+
+		// one line per failing test class, then the run
+		List<String> lines = Files.readAllLines(new File(directory, RepairReport.RESULTS_FILE).toPath(), StandardCharsets.UTF_8);
+		assertEquals(3, lines.size());
+		assertTrue(lines.get(0).contains("\"job\":\"foo.BarTest\",\"status\":\"PATCH\""));
+		assertTrue(lines.get(0).contains("\"testMethods\":1,"));
+		assertTrue(lines.get(1).contains("\"job\":\"foo.QuxTest\",\"status\":\"TIMEOUT\""));
+		assertTrue(lines.get(1).contains("\"testMethods\":2,"));
+		assertTrue(lines.get(2).contains("\"type\":\"run\""));
+		assertTrue(lines.get(2).contains("\"jobs\":2,\"patched\":1,"));
+	}
+}
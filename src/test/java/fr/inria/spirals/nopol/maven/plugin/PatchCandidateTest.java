@@ -0,0 +1,93 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PatchCandidateTest {
+
+	private static final String SOURCE = "package foo;\n"
+			+ "public class Foo {\n"
+			+ "    int bar(int a) {\n"
+			+ "        if (a > count(\")\") && (a < 10)) {\n"
+			+ "            return 1;\n"
+			+ "        }\n"
+			+ "        a++;\n"
+			+ "        return a;\n"
+			+ "    }\n"
+			+ "}\n";
+
+	@Test
+	public void testApplyConditional() {
+		PatchCandidate candidate = new PatchCandidate("foo.Foo", 4, "CONDITIONAL", "a >= 0");
+		assertEquals(SOURCE.replace("a > count(\")\") && (a < 10)", "a >= 0"), candidate.apply(SOURCE));
+	}
+
+	@Test
+	public void testApplyPrecondition() {
+		PatchCandidate candidate = new PatchCandidate("foo.Foo", 7, "PRECONDITION", "a != 3");
+		assertEquals(SOURCE.replace("        a++;", "        if (a != 3) a++;"), candidate.apply(SOURCE));
+	}
+
+	@Test
+	public void testNotApplicable() {
+		try {
+			new PatchCandidate("foo.Foo", 5, "CONDITIONAL", "true").apply(SOURCE);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// no if at this line
+		}
+	}
+
+	@Test
+	public void testConditionAfterCommentsAndLiterals() {
+		String source = "class Foo {\n"
+				+ "    void bar(int a) {\n"
+				+ "        /* if (a) */ log(\"if (b)\", 'i'); if (a > 0 /* ) */) { // if (c)\n"
+				+ "        }\n"
+				+ "    }\n"
+				+ "}\n";
+		PatchCandidate candidate = new PatchCandidate("Foo", 3, "CONDITIONAL", "a >= 0");
+		assertEquals(source.replace("if (a > 0 /* ) */)", "if (a >= 0)"), candidate.apply(source));
+	}
+
+	@Test
+	public void testIfInComment() {
+		String source = "class Foo {\n"
+				+ "    /*\n"
+				+ "     * if (a > 0) {\n"
+				+ "     */\n"
+				+ "    String bar = \"if (a > 0)\"; // if (a > 0)\n"
+				+ "}\n";
+		for (int line = 3; line <= 5; line++) {
+			try {
+				new PatchCandidate("Foo", line, "CONDITIONAL", "true").apply(source);
+				fail();
+			} catch (IllegalArgumentException e) {
+				// the if is in a comment or a literal
+			}
+		}
+	}
+
+	@Test
+	public void testSourcePath() {
+		assertEquals("foo" + File.separator + "Foo.java", new PatchCandidate("foo.Foo$Inner", 1, "CONDITIONAL", "true").getSourcePath());
+	}
+
+	@Test
+	public void testRank() {
+		PatchValidation failed = new PatchValidation(new PatchCandidate("foo.Foo", 4, "CONDITIONAL", "a == 1"), PatchValidation.Status.FAILED, 3, 1, 10, null);
+		PatchValidation longPassed = new PatchValidation(new PatchCandidate("foo.Foo", 4, "CONDITIONAL", "a >= 0 && a < 100"), PatchValidation.Status.PASSED, 3, 0, 10, null);
+		PatchValidation shortPassed = new PatchValidation(new PatchCandidate("foo.Foo", 4, "CONDITIONAL", "a >= 0"), PatchValidation.Status.PASSED, 3, 0, 10, null);
+		PatchValidation moreFailures = new PatchValidation(new PatchCandidate("foo.Foo", 4, "CONDITIONAL", "a"), PatchValidation.Status.FAILED, 3, 2, 10, null);
+		PatchValidation timeout = PatchValidation.failure(new PatchCandidate("foo.Foo", 7, "PRECONDITION", "a"), PatchValidation.Status.TIMEOUT, 10, null);
+
+		List<PatchValidation> ranked = PatchValidation.rank(Arrays.asList(timeout, failed, longPassed, moreFailures, shortPassed));
+		assertEquals(Arrays.asList(shortPassed, longPassed, failed, moreFailures, timeout), ranked);
+	}
+}
@@ -0,0 +1,70 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PatchValidatorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSlotsSharedByJobs() throws Exception {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		ForkedRepairLauncher launcher = new ForkedRepairLauncher(new ArrayList<URL>(), folder.newFolder("jobs"), false) {
+			@Override
+			public PatchValidation validate(ValidationWorker.Request request, String name, long timeoutInMillis) throws IOException, InterruptedException {
+				int nbRunning = running.incrementAndGet();
+				synchronized (maxRunning) {
+					maxRunning.set(Math.max(maxRunning.get(), nbRunning));
+				}
+				Thread.sleep(50);
+				running.decrementAndGet();
+				return new PatchValidation(request.getCandidate(), PatchValidation.Status.PASSED, 1, 0, 50, null);
+			}
+		};
+		Semaphore slots = new Semaphore(2);
+		final List<PatchCandidate> candidates = Arrays.asList(
+				new PatchCandidate("foo.Foo", 4, "CONDITIONAL", "a > 0"),
+				new PatchCandidate("foo.Foo", 4, "CONDITIONAL", "a > 1"),
+				new PatchCandidate("foo.Foo", 4, "CONDITIONAL", "a > 2"));
+		final RepairJob job = new RepairJob("job", new File[0], new URL[0], new String[] {"foo.FooTest"});
+
+		// two jobs validated at the same time, each with more candidates than the slots
+		final PatchValidator validator = new PatchValidator(launcher, folder.getRoot(), folder.newFolder("sources"), slots, TimeUnit.MINUTES.toMillis(1));
+		final List<PatchValidation> otherValidations = new ArrayList<>();
+		Thread other = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					otherValidations.addAll(validator.validate(job, candidates));
+				} catch (InterruptedException e) {
+					// the test fails on the count
+				}
+			}
+		});
+		other.start();
+		List<PatchValidation> validations = validator.validate(job, candidates);
+		other.join();
+
+		assertEquals(3, validations.size());
+		assertEquals(3, otherValidations.size());
+		assertTrue(maxRunning.get() <= 2);
+		assertEquals(2, slots.availablePermits());
+	}
+}
@@ -0,0 +1,33 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class PortfolioHistoryTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRank() throws Exception {
+		List<String> configurations = Arrays.asList("dynamoth:pre_then_cond", "smt:conditional", "smt:precondition");
+		PortfolioHistory history = new PortfolioHistory(folder.getRoot(), "org.example:project");
+		assertEquals(configurations, history.rank(configurations));
+
+		history.recordWin("smt:precondition");
+		history.recordWin("smt:precondition");
+		history.recordWin("smt:conditional");
+
+		PortfolioHistory reloaded = new PortfolioHistory(folder.getRoot(), "org.example:project");
+		assertEquals(2, reloaded.getWins("smt:precondition"));
+		assertEquals(Arrays.asList("smt:precondition", "smt:conditional", "dynamoth:pre_then_cond"), reloaded.rank(configurations));
+		// other projects have their own history
+		assertEquals(configurations, new PortfolioHistory(folder.getRoot(), "org.example:other").rank(configurations));
+	}
+}
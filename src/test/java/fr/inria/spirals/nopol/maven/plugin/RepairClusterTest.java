@@ -0,0 +1,172 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RepairClusterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private RepairJob newJob() throws Exception {
+		File sourceFolder = folder.newFolder("src");
+		write(new File(sourceFolder, "foo/A.java"), "package foo; class A {}");
+		write(new File(sourceFolder, "foo/B.java"), "package foo; class B {}");
+		write(new File(sourceFolder, "foo/C.java"), "package foo; class C {}");
+		File classes = folder.newFolder("classes");
+		write(new File(classes, "foo/A.class"), "bytecode");
+		return new RepairJob("job", new File[] {sourceFolder}, new URL[] {classes.toURI().toURL()}, new String[] {"foo.ATest"});
+	}
+
+	@Test
+	public void testSplit() throws Exception {
+		RepairJob job = newJob();
+		File shards = new File(folder.getRoot(), "shards");
+
+		// without ranking, all the source files
+		List<RepairJob> units = RepairCluster.split(job, null, 2, shards);
+		assertEquals(2, units.size());
+		assertEquals("job-shard-1", units.get(0).getName());
+		assertTrue(new File(units.get(0).getSourceFolders()[0], "foo/A.java").isFile());
+		assertTrue(new File(units.get(0).getSourceFolders()[0], "foo/C.java").isFile());
+		assertTrue(new File(units.get(1).getSourceFolders()[0], "foo/B.java").isFile());
+
+		// only the files of the suspicious statements, the most suspicious first
+		Map<String, Double> ranking = new LinkedHashMap<>();
+		ranking.put("foo.C:3", 1.0);
+		ranking.put("foo.A$1:5", 0.5);
+		ranking.put("foo.C:4", 0.2);
+		units = RepairCluster.split(job, ranking, 1, shards);
+		assertEquals(2, units.size());
+		assertTrue(new File(units.get(0).getSourceFolders()[0], "foo/C.java").isFile());
+		assertTrue(new File(units.get(1).getSourceFolders()[0], "foo/A.java").isFile());
+		assertEquals(1, SourceView.getJavaFiles(units.get(1).getSourceFolders()).size());
+	}
+
+	@Test
+	public void testRace() throws Exception {
+		final File cacheDirectory = folder.newFolder("cache");
+		final CountDownLatch cancelled = new CountDownLatch(1);
+		// repairs the shard of foo.A, blocks on the others until cancelled
+		ForkedRepairLauncher launcher = new ForkedRepairLauncher(new ArrayList<URL>(), folder.newFolder("jobs"), false) {
+			@Override
+			public RepairOutcome launch(RepairJob job, long timeoutInMillis) throws IOException, InterruptedException {
+				File sourceFolder = job.getSourceFolders()[0];
+				assertTrue(sourceFolder.getCanonicalPath().startsWith(cacheDirectory.getCanonicalPath()));
+				if (new File(sourceFolder, "foo/A.java").isFile()) {
+					return new RepairOutcome(job.getName(), "PATCH", 1, 0, 0, Arrays.asList("a > 0"), null);
+				}
+				try {
+					Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+				} catch (InterruptedException e) {
+					cancelled.countDown();
+					throw e;
+				}
+				return RepairOutcome.failure(job.getName(), "NO_PATCH", 1, null);
+			}
+		};
+		final RepairNode node = new RepairNode(cacheDirectory, "secret", launcher);
+		final ServerSocket serverSocket = new ServerSocket(0);
+		Thread server = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					node.serve(serverSocket, 2);
+				} catch (IOException e) {
+					// closed
+				}
+			}
+		});
+		server.setDaemon(true);
+		server.start();
+
+		try {
+			Map<String, Double> ranking = new LinkedHashMap<>();
+			ranking.put("foo.C:3", 1.0);
+			ranking.put("foo.A:5", 0.5);
+			List<RepairJob> units = RepairCluster.split(newJob(), ranking, 1, new File(folder.getRoot(), "shards"));
+			// the node is listed once per slot
+			InetSocketAddress address = InetSocketAddress.createUnresolved("localhost", serverSocket.getLocalPort());
+			RepairCluster cluster = new RepairCluster(Arrays.asList(address, address), "secret", TimeUnit.MINUTES.toMillis(1));
+
+			List<RepairOutcome> outcomes = cluster.race(units);
+			assertEquals(RepairCluster.CANCELLED, outcomes.get(0).getStatus());
+			assertEquals(Arrays.asList("a > 0"), outcomes.get(1).getPatches());
+			assertTrue(cancelled.await(10, TimeUnit.SECONDS));
+
+			// the node keeps the contents it received
+			assertEquals(0, RepairNode.Request.of(units.get(1)).getInputs().getMissingHashes(cacheDirectory).size());
+		} finally {
+			serverSocket.close();
+		}
+	}
+
+	@Test
+	public void testWrongToken() throws Exception {
+		RepairNode node = new RepairNode(folder.newFolder("cache"), "secret", new ForkedRepairLauncher(new ArrayList<URL>(), folder.newFolder("jobs"), false));
+		ServerSocket serverSocket = new ServerSocket(0);
+		Socket client = new Socket("localhost", serverSocket.getLocalPort());
+		try (Socket socket = serverSocket.accept()) {
+			OutputStream out = client.getOutputStream();
+			Tokens.write(out, "guess");
+			// an object the node must not read
+			new ObjectOutputStream(out).writeObject(new ArrayList<String>());
+			out.flush();
+			node.handle(socket);
+			// closed without answer
+			assertEquals(-1, client.getInputStream().read());
+		} finally {
+			client.close();
+			serverSocket.close();
+		}
+	}
+
+	@Test
+	public void testCheckPath() throws Exception {
+		FileManifest.checkPath("foo/A.java");
+		for (String path : Arrays.asList("../A.java", "foo/../../A.java", "/etc/passwd", "foo\\..\\..\\A.java", "")) {
+			try {
+				FileManifest.checkPath(path);
+				fail(path);
+			} catch (IOException e) {
+				// rejected
+			}
+		}
+	}
+
+	@Test
+	public void testParseNodes() {
+		List<InetSocketAddress> nodes = RepairCluster.parseNodes("host1:7000, 10.0.0.2:7001,");
+		assertEquals(2, nodes.size());
+		assertEquals("host1", nodes.get(0).getHostString());
+		assertEquals(7001, nodes.get(1).getPort());
+	}
+
+	private static void write(File file, String content) throws IOException {
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,151 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RepairDaemonTest {
+
+	private static final String TOKEN = "secret";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final List<String> repaired = new ArrayList<>();
+
+	private RepairDaemon newDaemon(File daemonFile, ServerSocket serverSocket, int maxJobs) {
+		return new RepairDaemon(daemonFile, serverSocket, TOKEN, maxJobs) {
+			@Override
+			protected RepairOutcome repair(RepairJob job) {
+				synchronized (repaired) {
+					repaired.add(job.getName());
+				}
+				System.out.println("repairing " + job.getName());
+				return new RepairOutcome(job.getName(), "PATCH", 1, 0, 0, Arrays.asList("patch"), null);
+			}
+		};
+	}
+
+	private static Thread serve(final RepairDaemon daemon) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					daemon.serve();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * @return the messages of the daemon, the last one being its answer
+	 */
+	private static List<Object> send(ServerSocket serverSocket, String token, Object request) throws Exception {
+		List<Object> messages = new ArrayList<>();
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort())) {
+			socket.setSoTimeout(10000);
+			OutputStream output = new BufferedOutputStream(socket.getOutputStream());
+			Tokens.write(output, token);
+			ObjectOutputStream out = new ObjectOutputStream(output);
+			out.writeObject(request);
+			out.flush();
+			ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+			while (true) {
+				Object message = in.readObject();
+				messages.add(message);
+				if (!(message instanceof String) || RepairDaemon.SHUTDOWN.equals(message)) {
+					return messages;
+				}
+			}
+		}
+	}
+
+	private static RepairJob newJob(String name) {
+		return new RepairJob(name, new File[0], new URL[0], new String[] {"foo.FooTest"});
+	}
+
+	@Test
+	public void testWrongToken() throws Exception {
+		File daemonFile = folder.newFile("daemon.properties");
+		ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread thread = serve(newDaemon(daemonFile, serverSocket, 1));
+
+		try {
+			send(serverSocket, "wrong", newJob("rejected"));
+			fail("the daemon must not answer");
+		} catch (IOException e) {
+			// closed without an answer
+		}
+		assertTrue(repaired.isEmpty());
+
+		List<Object> messages = send(serverSocket, TOKEN, newJob("accepted"));
+		assertEquals(Arrays.asList("accepted"), repaired);
+		assertEquals("repairing accepted", messages.get(0));
+		assertEquals("PATCH", ((RepairOutcome) messages.get(1)).getStatus());
+		thread.join(10000);
+		assertFalse(thread.isAlive());
+	}
+
+	@Test
+	public void testShutdown() throws Exception {
+		File daemonFile = folder.newFile("daemon.properties");
+		ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread thread = serve(newDaemon(daemonFile, serverSocket, 10));
+
+		assertEquals(Arrays.<Object>asList(RepairDaemon.SHUTDOWN), send(serverSocket, TOKEN, RepairDaemon.SHUTDOWN));
+		thread.join(10000);
+		assertFalse(thread.isAlive());
+		assertTrue(repaired.isEmpty());
+	}
+
+	@Test
+	public void testIdleTimeout() throws Exception {
+		File daemonFile = folder.newFile("daemon.properties");
+		ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		serverSocket.setSoTimeout(200);
+		long start = System.currentTimeMillis();
+		newDaemon(daemonFile, serverSocket, 10).serve();
+		assertTrue(System.currentTimeMillis() - start < 10000);
+		assertTrue(repaired.isEmpty());
+	}
+
+	@Test
+	public void testRecycledAfterMaxJobs() throws Exception {
+		File daemonFile = folder.newFile("daemon.properties");
+		ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread thread = serve(newDaemon(daemonFile, serverSocket, 2));
+
+		send(serverSocket, TOKEN, newJob("first"));
+		assertTrue(daemonFile.exists());
+		send(serverSocket, TOKEN, newJob("second"));
+		// unpublished before the outcome of the last job, the next client starts a new daemon
+		assertFalse(daemonFile.exists());
+		assertTrue(serverSocket.isClosed());
+		assertEquals(Arrays.asList("first", "second"), repaired);
+		thread.join(10000);
+		assertFalse(thread.isAlive());
+	}
+}
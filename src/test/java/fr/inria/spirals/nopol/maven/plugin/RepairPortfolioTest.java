@@ -0,0 +1,81 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RepairPortfolioTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ForkedRepairLauncher newLauncher(final List<Long> timeouts) throws IOException {
+		return new ForkedRepairLauncher(new ArrayList<URL>(), folder.newFolder("jobs"), false) {
+			@Override
+			public RepairOutcome launch(RepairJob job, long timeoutInMillis) throws IOException, InterruptedException {
+				synchronized (timeouts) {
+					timeouts.add(timeoutInMillis);
+				}
+				if (job.getName().equals("slow")) {
+					Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+				}
+				if (job.getName().equals("wrong")) {
+					Thread.sleep(100);
+					return new RepairOutcome(job.getName(), "PATCH", 1, 0, 0, Arrays.asList("wrong"), null);
+				}
+				Thread.sleep(200);
+				return new RepairOutcome(job.getName(), "PATCH", 1, 0, 0, Arrays.asList("right"), null);
+			}
+		};
+	}
+
+	private static RepairJob newJob(String name) {
+		return new RepairJob(name, new File[0], new URL[0], new String[] {"foo.FooTest"});
+	}
+
+	@Test
+	public void testFirstFixWins() throws Exception {
+		List<Long> timeouts = new ArrayList<>();
+		RepairPortfolio portfolio = new RepairPortfolio(newLauncher(timeouts), 3, 1000, 5000) {
+			@Override
+			protected boolean isFix(RepairJob job, RepairOutcome outcome) {
+				// the patch of "wrong" does not pass its validation
+				return outcome.getPatches().contains("right");
+			}
+		};
+		List<RepairOutcome> outcomes = portfolio.race(Arrays.asList(newJob("wrong"), newJob("right"), newJob("slow")));
+		assertEquals(Arrays.asList("wrong"), outcomes.get(0).getPatches());
+		assertEquals(Arrays.asList("right"), outcomes.get(1).getPatches());
+		assertEquals(RepairPortfolio.CANCELLED, outcomes.get(2).getStatus());
+		assertEquals(Collections.nCopies(3, 1000L), timeouts);
+	}
+
+	@Test
+	public void testBudget() throws Exception {
+		List<Long> timeouts = new ArrayList<>();
+		// one worker, the second job starts when the budget is almost spent
+		RepairPortfolio portfolio = new RepairPortfolio(newLauncher(timeouts), 1, 1000, 300) {
+			@Override
+			protected boolean isFix(RepairJob job, RepairOutcome outcome) {
+				return false;
+			}
+		};
+		List<RepairOutcome> outcomes = portfolio.race(Arrays.asList(newJob("right"), newJob("other"), newJob("last")));
+		assertEquals(3, outcomes.size());
+		assertTrue(timeouts.get(0) <= 300);
+		assertTrue(timeouts.get(1) <= 100);
+		assertEquals("TIMEOUT", outcomes.get(2).getStatus());
+	}
+}
@@ -0,0 +1,83 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class RepairProgressTest {
+
+	private static StackTraceElement[] stack(String... classNames) {
+		StackTraceElement[] stack = new StackTraceElement[classNames.length];
+		for (int i = 0; i < classNames.length; i++) {
+			stack[i] = new StackTraceElement(classNames[i], "run", null, -1);
+		}
+		return stack;
+	}
+
+	@Test
+	public void testPhase() {
+		assertEquals(RepairProgress.RUNNING, RepairProgress.getPhase(stack("java.lang.Thread")));
+		assertEquals(RepairProgress.MODEL_BUILDING, RepairProgress.getPhase(stack("spoon.Launcher", "fr.inria.lille.repair.nopol.NoPol")));
+		assertEquals(RepairProgress.LOCALIZATION, RepairProgress.getPhase(stack("org.junit.runner.JUnitCore", "com.gzoltar.core.GZoltar")));
+		// the tests run to collect the angelic values
+		assertEquals(RepairProgress.ANGELIC_VALUES, RepairProgress.getPhase(stack("java.util.concurrent.FutureTask",
+				"xxl.java.junit.TestSuiteExecution", "fr.inria.lille.repair.nopol.synth.ConstraintModelBuilder")));
+		assertEquals(RepairProgress.SOLVER, RepairProgress.getPhase(stack("org.smtlib.impl.Response",
+				"fr.inria.lille.commons.synthesis.ConstraintBasedSynthesis", "fr.inria.lille.repair.nopol.synth.SMTNopolSynthesizer")));
+	}
+
+	@Test
+	public void testSample() {
+		RepairProgress progress = new RepairProgress("job", 60000, 10);
+		long start = System.currentTimeMillis();
+		progress.sample(stack("spoon.Launcher"), start + 100);
+		progress.sample(stack("xxl.java.junit.TestSuiteExecution", "fr.inria.lille.repair.nopol.synth.ConstraintModelBuilder"), start + 200);
+		progress.sample(stack("org.smtlib.impl.Response"), start + 300);
+		progress.sample(stack("org.smtlib.impl.Response"), start + 400);
+		progress.sample(stack("xxl.java.junit.TestSuiteExecution", "fr.inria.lille.repair.nopol.synth.ConstraintModelBuilder"), start + 500);
+		progress.sample(stack("org.smtlib.impl.Response"), start + 600);
+
+		assertEquals(RepairProgress.SOLVER, progress.getPhase());
+		assertEquals(2, progress.getStatementsExamined());
+		assertEquals(10, progress.getStatementsTotal());
+		assertEquals(2, progress.getSolverInvocations());
+		assertEquals(2, progress.getTestExecutions());
+		assertEquals(300, progress.getSolverTimeInMillis());
+		assertEquals(150, progress.getAverageSolverLatencyInMillis());
+		assertEquals(200, progress.getAngelicValuesTimeInMillis());
+
+		// mirrored from a worker
+		RepairProgress mirror = new RepairProgress("job", 60000, 10);
+		mirror.update(progress.toProperties());
+		assertEquals(progress.toString(), mirror.toString());
+		assertEquals(progress.getPhaseTimes(), mirror.getPhaseTimes());
+	}
+
+	@Test
+	public void testRecordTo() {
+		RepairProgress progress = new RepairProgress("job", 60000, 10);
+		long start = System.currentTimeMillis();
+		progress.sample(stack("com.gzoltar.core.GZoltar", "org.junit.runner.JUnitCore"), start + 100);
+		progress.sample(stack("xxl.java.junit.TestSuiteExecution", "fr.inria.lille.repair.nopol.synth.ConstraintModelBuilder"), start + 300);
+		progress.sample(stack("fr.inria.lille.repair.synthesis.Synthesizer"), start + 350);
+
+		RepairMetrics metrics = new RepairMetrics();
+		metrics.add("engine", 400, 300);
+		progress.recordTo(metrics);
+
+		Map<String, Long> phases = metrics.getEnginePhases();
+		assertEquals(Arrays.asList(RepairProgress.LOCALIZATION, RepairProgress.ANGELIC_VALUES, RepairProgress.SYNTHESIS), new ArrayList<>(phases.keySet()));
+		assertEquals(200, (long) phases.get(RepairProgress.ANGELIC_VALUES));
+		assertEquals(50, (long) phases.get(RepairProgress.SYNTHESIS));
+		assertEquals(1, (long) metrics.getEngineEvents().get(RepairProgress.STATEMENTS_EXAMINED));
+		assertEquals(0, (long) metrics.getEngineEvents().get(RepairProgress.SOLVER_INVOCATIONS));
+		// the tests keep running from the localization to the angelic values, a single execution
+		assertEquals(1, (long) metrics.getEngineEvents().get(RepairProgress.TEST_EXECUTIONS));
+		// the measured phases are kept
+		assertEquals(400, metrics.getPhases().get("engine")[0]);
+	}
+}
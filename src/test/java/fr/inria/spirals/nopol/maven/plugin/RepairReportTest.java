@@ -0,0 +1,87 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RepairReportTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testWrite() throws Exception {
+		RepairMetrics jobMetrics = new RepairMetrics();
+		jobMetrics.add("engine", 1500, 1200);
+		RepairOutcome patched = new RepairOutcome("module-a", "PATCH", 1500, 3, 2, Arrays.asList("a < \"b\"\n"), null);
+		patched.setMetrics(jobMetrics);
+		RepairOutcome failed = RepairOutcome.failure("module-b", "TIMEOUT", 60000, "Worker killed");
+
+		RepairMetrics runMetrics = new RepairMetrics();
+		runMetrics.add("test-discovery", 20, 10);
+		runMetrics.add("test-discovery", 5, 5);
+
+		File directory = new File(folder.getRoot(), "results");
+		for (int i = 0; i < 2; i++) {
+			RepairReport report = new RepairReport(directory, 1000);
+			report.add(patched, 4);
+			report.add(failed, 1);
+			report.write(runMetrics, 62000);
+		}
+
+		List<String> lines = Files.readAllLines(new File(directory, RepairReport.RESULTS_FILE).toPath(), StandardCharsets.UTF_8);
+		// appended at each run
+		assertEquals(6, lines.size());
+		assertEquals("{\"type\":\"job\",\"timestamp\":1000,\"job\":\"module-a\",\"status\":\"PATCH\",\"cached\":false,\"durationInMilliseconds\":1500,"
+				+ "\"angelicValues\":3,\"statements\":2,\"testMethods\":4,\"patches\":[\"a < \\\"b\\\"\\n\"],\"error\":null,"
+				+ "\"phases\":{\"engine\":{\"wallTimeInMilliseconds\":1500,\"cpuTimeInMilliseconds\":1200}},\"peakHeapInBytes\":0}", lines.get(0));
+		assertTrue(lines.get(1).contains("\"error\":\"Worker killed\""));
+		assertFalse(lines.get(1).contains("phases"));
+		assertEquals("{\"type\":\"run\",\"timestamp\":1000,\"durationInMilliseconds\":62000,\"jobs\":2,\"patched\":1,"
+				+ "\"phases\":{\"test-discovery\":{\"wallTimeInMilliseconds\":25,\"cpuTimeInMilliseconds\":15}},\"peakHeapInBytes\":0}", lines.get(2));
+
+		String metrics = new String(Files.readAllBytes(new File(directory, RepairReport.METRICS_FILE).toPath()), StandardCharsets.UTF_8);
+		assertTrue(metrics.contains("nopol_jobs{status=\"PATCH\"} 1\n"));
+		assertTrue(metrics.contains("nopol_jobs{status=\"TIMEOUT\"} 1\n"));
+		assertTrue(metrics.contains("nopol_phase_wall_seconds{job=\"\",phase=\"test-discovery\"} 0.025\n"));
+		assertTrue(metrics.contains("nopol_phase_cpu_seconds{job=\"module-a\",phase=\"engine\"} 1.200\n"));
+		assertTrue(metrics.contains("nopol_job_test_methods{job=\"module-b\"} 1\n"));
+		assertFalse(new File(directory, RepairReport.METRICS_FILE + ".tmp").exists());
+	}
+
+	@Test
+	public void testEngineMetrics() throws Exception {
+		RepairMetrics jobMetrics = new RepairMetrics();
+		jobMetrics.add("engine", 1500, 1200);
+		jobMetrics.addEnginePhase(RepairProgress.LOCALIZATION, 400);
+		jobMetrics.addEnginePhase(RepairProgress.SYNTHESIS, 900);
+		jobMetrics.addEngineEvents(RepairProgress.TEST_EXECUTIONS, 12);
+		RepairOutcome patched = new RepairOutcome("module-a", "PATCH", 1500, 3, 2, Arrays.asList("a < b"), null);
+		patched.setMetrics(jobMetrics);
+
+		File directory = new File(folder.getRoot(), "results");
+		RepairReport report = new RepairReport(directory, 1000);
+		report.add(patched, 4);
+		report.write(new RepairMetrics(), 2000);
+
+		List<String> lines = Files.readAllLines(new File(directory, RepairReport.RESULTS_FILE).toPath(), StandardCharsets.UTF_8);
+		assertTrue(lines.get(0).endsWith("\"phases\":{\"engine\":{\"wallTimeInMilliseconds\":1500,\"cpuTimeInMilliseconds\":1200}},"
+				+ "\"enginePhases\":{\"localization\":{\"wallTimeInMilliseconds\":400},\"synthesis\":{\"wallTimeInMilliseconds\":900}},"
+				+ "\"engineEvents\":{\"test-executions\":12},\"peakHeapInBytes\":0}"));
+
+		String metrics = new String(Files.readAllBytes(new File(directory, RepairReport.METRICS_FILE).toPath()), StandardCharsets.UTF_8);
+		assertTrue(metrics.contains("nopol_engine_phase_wall_seconds{job=\"module-a\",phase=\"localization\"} 0.400\n"));
+		assertTrue(metrics.contains("nopol_engine_phase_wall_seconds{job=\"module-a\",phase=\"synthesis\"} 0.900\n"));
+		assertTrue(metrics.contains("nopol_engine_events{job=\"module-a\",event=\"test-executions\"} 12\n"));
+	}
+}
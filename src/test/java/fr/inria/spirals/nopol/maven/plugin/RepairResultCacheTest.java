@@ -0,0 +1,87 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class RepairResultCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testFingerprintChangesWithSources() throws Exception {
+		File sources = folder.newFolder("src");
+		File file = new File(sources, "A.java");
+		Files.write(file.toPath(), "class A {}".getBytes(StandardCharsets.UTF_8));
+
+		String first = RepairResultCache.fingerprint(new File[] {sources}, new URL[0]);
+		assertEquals(first, RepairResultCache.fingerprint(new File[] {sources}, new URL[0]));
+
+		Files.write(file.toPath(), "class A { int a; }".getBytes(StandardCharsets.UTF_8));
+		assertNotEquals(first, RepairResultCache.fingerprint(new File[] {sources}, new URL[0]));
+	}
+
+	@Test
+	public void testKeyChangesWithConfiguration() {
+		RepairJob job = new RepairJob("job", new File[0], new URL[0], new String[] {"ATest"});
+		String key = RepairResultCache.keyOf("fingerprint", job);
+		assertEquals(key, RepairResultCache.keyOf("fingerprint", job.forTests("other", new String[] {"ATest"})));
+
+		job.setMaxTimeInMinutes(job.getMaxTimeInMinutes() + 1);
+		assertNotEquals(key, RepairResultCache.keyOf("fingerprint", job));
+	}
+
+	@Test
+	public void testKeyChangesWithValidationTests() {
+		RepairJob job = new RepairJob("job", new File[0], new URL[0], new String[] {"ATest"});
+		job.setTestMethodsToIgnore(Collections.singletonList("ATest#passing"));
+		String key = RepairResultCache.keyOf("fingerprint", job);
+		job.setTestMethodsToValidate(Collections.<String>emptyList());
+		assertEquals(key, RepairResultCache.keyOf("fingerprint", job));
+
+		// the engine ignores the method either way, only the validations differ
+		job.setTestMethodsToValidate(Collections.singletonList("ATest#passing"));
+		assertNotEquals(key, RepairResultCache.keyOf("fingerprint", job));
+		assertEquals(RepairResultCache.keyOf("fingerprint", job), RepairResultCache.keyOf("fingerprint", job.forTests("other", new String[] {"ATest"})));
+	}
+
+	@Test
+	public void testPutAndGet() throws Exception {
+		RepairResultCache cache = new RepairResultCache(folder.newFolder("cache"), 1024 * 1024, 60000);
+		RepairOutcome outcome = new RepairOutcome("job", "PATCH", 42, 3, 2, Collections.singletonList("a > 0"), null);
+
+		assertNull(cache.get("key"));
+		cache.put("key", outcome);
+		RepairOutcome cached = cache.get("key");
+		assertNotNull(cached);
+		assertEquals("PATCH", cached.getStatus());
+		assertEquals(Collections.singletonList("a > 0"), cached.getPatches());
+	}
+
+	@Test
+	public void testFailedRepairsAreNotCached() throws Exception {
+		RepairResultCache cache = new RepairResultCache(folder.newFolder("cache"), 1024 * 1024, 60000);
+		cache.put("key", RepairOutcome.failure("job", "TIMEOUT", 42, "killed"));
+		assertNull(cache.get("key"));
+	}
+
+	@Test
+	public void testEvictionBySize() throws Exception {
+		File directory = folder.newFolder("cache");
+		RepairResultCache cache = new RepairResultCache(directory, 1, 60000);
+		cache.put("key", new RepairOutcome("job", "PATCH", 42, 3, 2, Collections.<String>emptyList(), null));
+		assertNull(cache.get("key"));
+	}
+}
@@ -0,0 +1,52 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import fr.inria.lille.repair.common.synth.StatementType;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class RepairTimeoutsTest {
+
+	private final List<TestCaseResult> testResults = Arrays.asList(
+			new TestCaseResult("foo.FastTest", "failing", 0.005, true),
+			new TestCaseResult("foo.FastTest", "passing", 0.01, false),
+			new TestCaseResult("foo.SlowTest", "failing", 12.5, true),
+			new TestCaseResult("foo.SlowTest", "passing", 50, false),
+			new TestCaseResult("foo.OtherTest", "passing", 1000, false));
+
+	@Test
+	public void testTestExecutionTimeout() {
+		RepairTimeouts timeouts = new RepairTimeouts(10, 10, 300);
+
+		// floor
+		assertEquals(10, timeouts.getTestExecutionTimeout(newJob("foo.FastTest"), testResults));
+
+		// the passing methods run with the failing ones
+		RepairJob slowJob = newJob("foo.SlowTest");
+		assertEquals(300, timeouts.getTestExecutionTimeout(slowJob, testResults));
+		slowJob.setTestMethodsToIgnore(Collections.singletonList("foo.SlowTest#passing"));
+		assertEquals(125, timeouts.getTestExecutionTimeout(slowJob, testResults));
+
+		timeouts.apply(slowJob, testResults);
+		assertEquals(125, slowJob.getTimeoutTestExecution());
+	}
+
+	@Test
+	public void testMaxTimeEachTypeOfFix() {
+		assertEquals(5, RepairTimeouts.getMaxTimeEachTypeOfFix(StatementType.PRE_THEN_COND, 10));
+		assertEquals(10, RepairTimeouts.getMaxTimeEachTypeOfFix(StatementType.CONDITIONAL, 10));
+		assertEquals(1, RepairTimeouts.getMaxTimeEachTypeOfFix(StatementType.PRE_THEN_COND, 1));
+	}
+
+	private static RepairJob newJob(String testClass) {
+		RepairJob job = new RepairJob("job", new File[0], new URL[0], new String[] {testClass});
+		job.setType(StatementType.PRE_THEN_COND);
+		return job;
+	}
+}
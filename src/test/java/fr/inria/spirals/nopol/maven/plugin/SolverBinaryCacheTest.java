@@ -0,0 +1,45 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SolverBinaryCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testExtractOnceFromJar() throws Exception {
+		File jar = new File(folder.newFolder("lib"), "solver.jar");
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+			out.putNextEntry(new JarEntry("z3/z3_for_linux"));
+			out.write("#!/bin/sh\necho z3\n".getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+		}
+		SolverBinaryCache cache = new SolverBinaryCache(folder.newFolder("cache"));
+
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[] {jar.toURI().toURL()}, null)) {
+			File extracted = cache.extract(classLoader, "z3/z3_for_linux");
+			assertTrue(extracted.canExecute());
+			assertEquals("#!/bin/sh\necho z3\n", new String(Files.readAllBytes(extracted.toPath()), StandardCharsets.UTF_8));
+
+			long lastModified = extracted.lastModified();
+			File reused = cache.extract(classLoader, "z3/z3_for_linux");
+			assertEquals(extracted, reused);
+			assertEquals(lastModified, reused.lastModified());
+		}
+	}
+}
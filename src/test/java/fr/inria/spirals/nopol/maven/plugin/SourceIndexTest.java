@@ -0,0 +1,68 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class SourceIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testGetUnits() throws Exception {
+		File sourceFolder = folder.newFolder("src");
+		File a = write(new File(sourceFolder, "foo/A.java"), "package foo; public class A { Runnable r = new Runnable() { public void run() {} }; }\nclass Helper {}");
+		File b = write(new File(sourceFolder, "foo/B.java"), "package foo; enum B { X }");
+		write(new File(sourceFolder, "C.java"), "class C {}");
+		File[] sourceFolders = {sourceFolder};
+
+		SourceIndex index = new SourceIndex(folder.newFolder("index"), 7);
+		Map<String, File> types = index.getTypes(sourceFolders);
+		assertEquals(4, types.size());
+		assertEquals(a, types.get("foo.Helper"));
+		assertEquals(3, index.getNbParsedUnits());
+
+		// the units of the statements, most suspicious first, the anonymous and secondary classes in their unit
+		assertEquals(Arrays.asList(b, a), index.getUnits(sourceFolders, Arrays.asList("foo.B:1", "foo.Helper:2", "foo.A$1:1", "bar.Unknown:3")));
+	}
+
+	@Test
+	public void testOnlyChangedUnitsParsed() throws Exception {
+		File sourceFolder = folder.newFolder("src");
+		write(new File(sourceFolder, "foo/A.java"), "package foo; class A {}");
+		File b = write(new File(sourceFolder, "foo/B.java"), "package foo; class B {}");
+		File[] sourceFolders = {sourceFolder};
+		File directory = folder.newFolder("index");
+		new SourceIndex(directory, 7).getTypes(sourceFolders);
+
+		SourceIndex index = new SourceIndex(directory, 7);
+		index.getTypes(sourceFolders);
+		assertEquals(0, index.getNbParsedUnits());
+
+		write(b, "package foo; class B {} class B2 {}");
+		index = new SourceIndex(directory, 7);
+		assertEquals(b, index.getTypes(sourceFolders).get("foo.B2"));
+		assertEquals(1, index.getNbParsedUnits());
+
+		// another compliance level, other entries
+		index = new SourceIndex(directory, 8);
+		index.getTypes(sourceFolders);
+		assertEquals(2, index.getNbParsedUnits());
+	}
+
+	private static File write(File file, String content) throws IOException {
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
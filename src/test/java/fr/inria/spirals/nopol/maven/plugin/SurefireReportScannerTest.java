@@ -0,0 +1,63 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SurefireReportScannerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testVerdicts() throws Exception {
+		File reports = folder.newFolder("surefire-reports");
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(new File(reports, "TEST-foo.BarTest.xml")), StandardCharsets.UTF_8)) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			writer.write("<testsuite name=\"foo.BarTest\" tests=\"5\" failures=\"1\" errors=\"1\">\n");
+			writer.write("<properties><property name=\"a\" value=\"b\"/></properties>\n");
+			writer.write("<testcase name=\"passing\" classname=\"foo.BarTest\" time=\"0.5\">\n<system-out>");
+			for (int i = 0; i < 100000; i++) {
+				writer.write("some captured output &amp; more\n");
+			}
+			writer.write("</system-out>\n</testcase>\n");
+			writer.write("<testcase name=\"failing\" classname=\"foo.BarTest\" time=\"1,234.5\"><failure message=\"expected\" type=\"java.lang.AssertionError\">trace</failure></testcase>\n");
+			writer.write("<testcase name=\"crashing\" classname=\"foo.BarTest\" time=\"0.1\"><error type=\"java.lang.NullPointerException\">trace</error></testcase>\n");
+			writer.write("<testcase name=\"flaky\" classname=\"foo.BarTest\" time=\"0.1\"><flakyFailure type=\"java.lang.AssertionError\"><system-out>out</system-out></flakyFailure></testcase>\n");
+			writer.write("<testcase name=\"skipped\" classname=\"foo.BarTest\" time=\"0\"><skipped/></testcase>\n");
+			writer.write("</testsuite>\n");
+		}
+		// not a test report
+		new File(reports, "testng-results.xml").createNewFile();
+
+		List<TestCaseResult> results = new SurefireReportScanner(2).scan(Collections.singletonList(reports));
+
+		assertEquals(5, results.size());
+		assertEquals("foo.BarTest#passing", results.get(0).getId());
+		assertFalse(results.get(0).isFailing());
+		assertEquals(0.5, results.get(0).getTimeInSeconds(), 0.001);
+		assertTrue(results.get(1).isFailing());
+		assertEquals(1234.5, results.get(1).getTimeInSeconds(), 0.001);
+		assertTrue(results.get(2).isFailing());
+		assertFalse(results.get(3).isFailing());
+		assertFalse(results.get(4).isFailing());
+	}
+
+	@Test
+	public void testMissingDirectory() throws Exception {
+		List<TestCaseResult> results = new SurefireReportScanner(2).scan(Collections.singletonList(new File(folder.getRoot(), "missing")));
+		assertTrue(results.isEmpty());
+	}
+}
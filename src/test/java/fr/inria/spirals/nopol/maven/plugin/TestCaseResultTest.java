@@ -0,0 +1,45 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestCaseResultTest {
+
+	private static final List<TestCaseResult> RESULTS = Arrays.asList(
+			new TestCaseResult("foo.BarTest", "passing", 0.5, false),
+			new TestCaseResult("foo.BarTest", "failing", 1, true),
+			new TestCaseResult("foo.BazTest", "passing", 0.1, false),
+			new TestCaseResult("foo.QuxTest", "failing", 0.2, true),
+			new TestCaseResult("foo.QuxTest", "otherFailing", 0.2, true),
+			new TestCaseResult("foo.BarTest", "otherPassing", 0.3, false));
+
+	@Test
+	public void testId() {
+		assertEquals("foo.BarTest#passing", RESULTS.get(0).getId());
+		assertEquals("foo.BarTest#passing", RESULTS.get(0).toString());
+		assertEquals("foo.BarTest#failing (failing)", RESULTS.get(1).toString());
+	}
+
+	@Test
+	public void testFailingTests() {
+		// each class once, in report order
+		assertEquals(Arrays.asList("foo.BarTest", "foo.QuxTest"), NopolMojo.getFailingTests(RESULTS));
+		assertTrue(NopolMojo.getFailingTests(Collections.singletonList(RESULTS.get(0))).isEmpty());
+	}
+
+	@Test
+	public void testPassingTestMethods() {
+		// only the passing methods of the failing classes, not the ones of the passing classes
+		assertEquals(Arrays.asList("foo.BarTest#passing", "foo.BarTest#otherPassing"),
+				NopolMojo.getPassingTestMethods(RESULTS, NopolMojo.getFailingTests(RESULTS)));
+		assertEquals(Arrays.asList("foo.BazTest#passing"),
+				NopolMojo.getPassingTestMethods(RESULTS, Collections.singletonList("foo.BazTest")));
+		assertTrue(NopolMojo.getPassingTestMethods(RESULTS, Collections.singletonList("foo.QuxTest")).isEmpty());
+	}
+}
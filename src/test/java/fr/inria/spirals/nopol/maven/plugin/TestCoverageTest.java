@@ -0,0 +1,116 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestCoverageTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final List<TestCaseResult> testResults = Arrays.asList(
+			new TestCaseResult("foo.FailingTest", "failing", 0.1, true),
+			new TestCaseResult("foo.FailingTest", "covering", 0.1, false),
+			new TestCaseResult("foo.FailingTest", "other", 0.1, false),
+			new TestCaseResult("foo.SlowTest", "covering", 5, false),
+			new TestCaseResult("foo.SlowTest", "other", 1, false),
+			new TestCaseResult("foo.FastTest", "covering", 0.5, false),
+			new TestCaseResult("foo.UnrelatedTest", "other", 0.1, false));
+
+	@Test
+	public void testSelectTests() {
+		TestCoverage coverage = new TestCoverage();
+		coverage.addTest("foo.FailingTest#failing", Arrays.asList("Foo:10", "Foo:11"));
+		coverage.addTest("foo.FailingTest#covering", Arrays.asList("Foo:11"));
+		coverage.addTest("foo.FailingTest#other", Arrays.asList("Bar:1"));
+		coverage.addTest("foo.SlowTest#covering", Arrays.asList("Foo:10", "Bar:1"));
+		coverage.addTest("foo.SlowTest#other", Arrays.asList("Bar:1"));
+		coverage.addTest("foo.FastTest#covering", Arrays.asList("Foo:11"));
+		coverage.addTest("foo.UnrelatedTest#other", Arrays.asList("Bar:2"));
+
+		RepairJob job = new RepairJob("job", new File[0], new URL[0], new String[] {"foo.FailingTest"});
+		job.setTestMethodsToIgnore(Arrays.asList("foo.FailingTest#covering", "foo.FailingTest#other"));
+
+		RepairJob selected = coverage.selectTests(job, testResults);
+		assertEquals(Arrays.asList("foo.FailingTest", "foo.FastTest", "foo.SlowTest"), selected.getFailingTestList());
+		assertEquals(Arrays.asList("foo.FailingTest#other", "foo.SlowTest#other"), selected.getTestMethodsToIgnore());
+	}
+
+	@Test
+	public void testNoCoverage() {
+		RepairJob job = new RepairJob("job", new File[0], new URL[0], new String[] {"foo.FailingTest"});
+		job.setTestMethodsToIgnore(Collections.<String>emptyList());
+		assertSame(job, new TestCoverage().selectTests(job, testResults));
+	}
+
+	@Test
+	public void testOutdatedTestClasses() throws IOException {
+		File classes = folder.newFolder("classes");
+		writeClass(classes, "foo.Foo", 1);
+		writeClass(classes, "foo.Bar", 1);
+		writeClass(classes, "foo.FooTest", 1);
+		writeClass(classes, "foo.BarTest", 1);
+		URL[] classpath = new URL[] {classes.toURI().toURL()};
+		List<String> testClasses = Arrays.asList("foo.BarTest", "foo.FooTest");
+
+		TestCoverage coverage = new TestCoverage();
+		assertEquals(Arrays.asList("foo.BarTest", "foo.FooTest"), new ArrayList<>(coverage.getOutdatedTestClasses(testClasses, classpath)));
+
+		TestCoverage update = new TestCoverage();
+		update.addTest("foo.FooTest#test", Arrays.asList("foo.Foo:10", "foo.Bar:1"));
+		update.addTest("foo.BarTest#test", Arrays.asList("foo.Bar:2"));
+		coverage.update(update, testClasses, classpath);
+		assertTrue(coverage.getOutdatedTestClasses(testClasses, classpath).isEmpty());
+
+		writeClass(classes, "foo.Foo", 2);
+		assertEquals(Collections.singletonList("foo.FooTest"), new ArrayList<>(coverage.getOutdatedTestClasses(testClasses, classpath)));
+
+		update = new TestCoverage();
+		update.addTest("foo.FooTest#test", Arrays.asList("foo.Foo:11"));
+		coverage.update(update, Collections.singletonList("foo.FooTest"), classpath);
+		assertTrue(coverage.getOutdatedTestClasses(testClasses, classpath).isEmpty());
+		assertEquals(Collections.singleton("foo.Foo:11"), coverage.getCoveredStatements("foo.FooTest#test"));
+		assertEquals(Collections.singleton("foo.Bar:2"), coverage.getCoveredStatements("foo.BarTest#test"));
+
+		writeClass(classes, "foo.BarTest", 2);
+		assertEquals(Collections.singletonList("foo.BarTest"), new ArrayList<>(coverage.getOutdatedTestClasses(testClasses, classpath)));
+	}
+
+	@Test
+	public void testSuspiciousStatements() {
+		TestCoverage coverage = new TestCoverage();
+		coverage.addTest("foo.FailingTest#failing", Arrays.asList("Foo:10", "Foo:11"));
+		coverage.addTest("foo.FailingTest#covering", Arrays.asList("Foo:11"));
+		coverage.addTest("foo.SlowTest#covering", Arrays.asList("Foo:10", "Bar:1"));
+		coverage.addTest("foo.FastTest#covering", Arrays.asList("Foo:11"));
+
+		Map<String, Double> suspiciousStatements = coverage.getSuspiciousStatements(testResults);
+		assertEquals(Arrays.asList("Foo:10", "Foo:11"), new ArrayList<>(suspiciousStatements.keySet()));
+		assertEquals(1 / Math.sqrt(2), suspiciousStatements.get("Foo:10"), 1e-9);
+		assertEquals(1 / Math.sqrt(3), suspiciousStatements.get("Foo:11"), 1e-9);
+	}
+
+	private static void writeClass(File directory, String className, int content) throws IOException {
+		File file = new File(directory, className.replace('.', '/') + ".class");
+		file.getParentFile().mkdirs();
+		try (OutputStream out = new FileOutputStream(file)) {
+			out.write(content);
+		}
+	}
+}
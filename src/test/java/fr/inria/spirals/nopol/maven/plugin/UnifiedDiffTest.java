@@ -0,0 +1,38 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class UnifiedDiffTest {
+
+	private static final String ORIGINAL = "a\nb\nc\nd\ne\nf\ng\nh\ni\n";
+
+	@Test
+	public void testChangedLine() {
+		assertEquals("--- a/foo/Foo.java\n"
+				+ "+++ b/foo/Foo.java\n"
+				+ "@@ -2,7 +2,7 @@\n"
+				+ " b\n c\n d\n-e\n+E\n f\n g\n h\n",
+				UnifiedDiff.diff("foo/Foo.java", ORIGINAL, ORIGINAL.replace("e\n", "E\n")));
+	}
+
+	@Test
+	public void testAtTheEdges() {
+		assertEquals("--- a/Foo.java\n"
+				+ "+++ b/Foo.java\n"
+				+ "@@ -1,3 +1,4 @@\n"
+				+ "+x\n a\n b\n c\n",
+				UnifiedDiff.diff("Foo.java", ORIGINAL, "x\n" + ORIGINAL));
+		assertEquals("--- a/Foo.java\n"
+				+ "+++ b/Foo.java\n"
+				+ "@@ -6,4 +6,4 @@\n"
+				+ " f\n g\n h\n-i\n+I\n",
+				UnifiedDiff.diff("Foo.java", ORIGINAL, ORIGINAL.replace("i\n", "I\n")));
+	}
+
+	@Test
+	public void testEqual() {
+		assertEquals("", UnifiedDiff.diff("Foo.java", ORIGINAL, ORIGINAL));
+	}
+}
@@ -0,0 +1,44 @@
+package fr.inria.spirals.nopol.maven.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ValidationWorkerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testFindSourceFile() throws Exception {
+		File sources = folder.newFolder("src");
+		File foo = write(new File(sources, "foo/Foo.java"), "package foo;\npublic class Foo {\n}\nclass Helper {\n    int bar(int a) {\n        if (a > 0) {\n            return 1;\n        }\n        return 0;\n    }\n}\n");
+		RepairJob job = new RepairJob("job", new File[] {sources}, new URL[0], new String[] {"foo.FooTest"});
+		File index = folder.newFolder("sources");
+
+		// named after its class
+		assertEquals(foo, ValidationWorker.findSourceFile(job, new PatchCandidate("foo.Foo$1", 2, "CONDITIONAL", "true"), index));
+		// a non public class declared in the file of another class
+		PatchCandidate helper = new PatchCandidate("foo.Helper", 6, "CONDITIONAL", "a >= 0");
+		assertEquals(foo.getCanonicalFile(), ValidationWorker.findSourceFile(job, helper, index).getCanonicalFile());
+		assertNull(ValidationWorker.findSourceFile(job, helper, null));
+		assertNull(ValidationWorker.findSourceFile(job, new PatchCandidate("foo.Missing", 1, "CONDITIONAL", "true"), index));
+		assertEquals("foo.Foo", ValidationWorker.getUnitClassName(helper, foo));
+		assertEquals("Foo", ValidationWorker.getUnitClassName(new PatchCandidate("Helper", 6, "CONDITIONAL", "true"), foo));
+	}
+
+	private static File write(File file, String content) throws IOException {
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}